@@ -0,0 +1,231 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import spoon.Launcher;
+import spoon.reflect.code.BinaryOperatorKind;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtExpression;
+import spoon.reflect.code.CtReturn;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+
+/**
+ * The source corpora of the benchmarks. The synthetic corpora are generated
+ * with the {@link Factory} API and printed to a directory, so that they are
+ * reproducible from one run to another:
+ * <ul>
+ * <li>{@link #DEEP}: classes with deeply nested binary expressions,</li>
+ * <li>{@link #HUGE}: a single class with many methods calling each other,</li>
+ * <li>{@link #MANY}: many small classes.</li>
+ * </ul>
+ * The {@link #SPOON} corpus is the source code of Spoon itself, found in the
+ * directory given by the <code>spoon.sources</code> system property
+ * (<code>../src/main/java</code> by default).
+ */
+public final class Corpus {
+
+	public static final String DEEP = "deep";
+
+	public static final String HUGE = "huge";
+
+	public static final String MANY = "many";
+
+	public static final String SPOON = "spoon";
+
+	private static final String PACKAGE = "spoon.benchmarks.corpus";
+
+	private Corpus() {
+	}
+
+	/**
+	 * Gets the source directory of the given corpus, generating it in a
+	 * temporary directory if needed.
+	 */
+	public static File getSources(String corpus) throws IOException {
+		if (SPOON.equals(corpus)) {
+			File dir = new File(System.getProperty("spoon.sources",
+					"../src/main/java"));
+			if (!dir.isDirectory()) {
+				throw new IOException("Spoon sources not found in " + dir
+						+ " (set the spoon.sources system property)");
+			}
+			return dir;
+		}
+		File dir = File.createTempFile("spoon-corpus-" + corpus, "");
+		if (!dir.delete() || !dir.mkdirs()) {
+			throw new IOException("cannot create " + dir);
+		}
+		Factory factory = new Launcher().getFactory();
+		List<CtType<?>> types;
+		if (DEEP.equals(corpus)) {
+			types = deepExpressions(factory, 20, 200);
+		} else if (HUGE.equals(corpus)) {
+			types = hugeClass(factory, 2000);
+		} else if (MANY.equals(corpus)) {
+			types = manySmallClasses(factory, 1000);
+		} else {
+			throw new IllegalArgumentException("unknown corpus: " + corpus);
+		}
+		write(factory, types, dir);
+		return dir;
+	}
+
+	/**
+	 * Builds a Spoon model of the given corpus.
+	 */
+	public static Factory build(File sources) {
+		Launcher launcher = new Launcher();
+		launcher.getEnvironment().setNoClasspath(true);
+		launcher.addInputResource(sources.getPath());
+		launcher.buildModel();
+		return launcher.getFactory();
+	}
+
+	/**
+	 * Generates classes with one method each, returning an expression made
+	 * of nested binary operators.
+	 */
+	static List<CtType<?>> deepExpressions(Factory factory, int classes,
+			int depth) {
+		List<CtType<?>> types = new ArrayList<CtType<?>>();
+		CtTypeReference<Integer> intType = factory.Type().INTEGER_PRIMITIVE;
+		for (int i = 0; i < classes; i++) {
+			CtClass<?> c = factory.Class().create(PACKAGE + ".Deep" + i);
+			c.addModifier(ModifierKind.PUBLIC);
+			CtExpression<Integer> e = factory.Code().createLiteral(0);
+			for (int d = 1; d <= depth; d++) {
+				e = factory.Code().createBinaryOperator(
+						factory.Code().createLiteral(d), e,
+						d % 2 == 0 ? BinaryOperatorKind.PLUS
+								: BinaryOperatorKind.MINUS);
+			}
+			CtBlock<Integer> body = factory.Core().createBlock();
+			CtReturn<Integer> ret = factory.Core().createReturn();
+			ret.setReturnedExpression(e);
+			body.addStatement(ret);
+			factory.Method().create(c, EnumSet.of(ModifierKind.PUBLIC),
+					intType, "compute", null, null, body);
+			types.add(c);
+		}
+		return types;
+	}
+
+	/**
+	 * Generates a single class with the given number of methods, each one
+	 * calling the previous one.
+	 */
+	static List<CtType<?>> hugeClass(Factory factory, int methods) {
+		CtClass<?> c = factory.Class().create(PACKAGE + ".Huge");
+		c.addModifier(ModifierKind.PUBLIC);
+		CtTypeReference<Integer> intType = factory.Type().INTEGER_PRIMITIVE;
+		CtMethod<Integer> previous = null;
+		for (int i = 0; i < methods; i++) {
+			CtBlock<Integer> body = factory.Core().createBlock();
+			CtExpression<Integer> value = factory.Code().createLiteral(i);
+			if (previous != null) {
+				CtExpression<Integer> call = factory.Code().createInvocation(
+						factory.Code().createThisAccess(c.getReference()),
+						factory.Method().createReference(previous));
+				value = factory.Code().createBinaryOperator(call, value,
+						BinaryOperatorKind.PLUS);
+			}
+			body.addStatement(factory.Code().createLocalVariable(intType,
+					"v", value));
+			CtReturn<Integer> ret = factory.Core().createReturn();
+			ret.setReturnedExpression(factory.Code()
+					.<Integer> createCodeSnippetExpression("v * 2"));
+			body.addStatement(ret);
+			previous = factory.Method().create(c,
+					EnumSet.of(ModifierKind.PUBLIC), intType, "m" + i, null,
+					null, body);
+		}
+		List<CtType<?>> types = new ArrayList<CtType<?>>();
+		types.add(c);
+		return types;
+	}
+
+	/**
+	 * Generates many small classes, with a field, a getter and a setter.
+	 */
+	static List<CtType<?>> manySmallClasses(Factory factory, int classes) {
+		List<CtType<?>> types = new ArrayList<CtType<?>>();
+		CtTypeReference<String> stringType = factory.Type().STRING;
+		for (int i = 0; i < classes; i++) {
+			CtClass<?> c = factory.Class().create(PACKAGE + ".p" + (i % 10)
+					+ ".Small" + i);
+			c.addModifier(ModifierKind.PUBLIC);
+			factory.Field().create(c, EnumSet.of(ModifierKind.PRIVATE),
+					stringType, "value");
+
+			CtBlock<String> getterBody = factory.Core().createBlock();
+			CtReturn<String> ret = factory.Core().createReturn();
+			ret.setReturnedExpression(factory.Code()
+					.<String> createCodeSnippetExpression("value"));
+			getterBody.addStatement(ret);
+			factory.Method().create(c, EnumSet.of(ModifierKind.PUBLIC),
+					stringType, "getValue", null, null, getterBody);
+
+			CtBlock<Void> setterBody = factory.Core().createBlock();
+			setterBody.addStatement(factory.Code().createCodeSnippetStatement(
+					"this.value = value"));
+			CtMethod<Void> setter = factory.Method().create(c,
+					EnumSet.of(ModifierKind.PUBLIC),
+					factory.Type().VOID_PRIMITIVE, "setValue", null, null,
+					setterBody);
+			factory.Method().createParameter(setter, stringType, "value");
+			types.add(c);
+		}
+		return types;
+	}
+
+	private static void write(Factory factory, List<CtType<?>> types, File dir)
+			throws IOException {
+		for (CtType<?> t : types) {
+			DefaultJavaPrettyPrinter printer = new DefaultJavaPrettyPrinter(
+					factory.getEnvironment());
+			printer.calculate(null, Collections.<CtType<?>> singletonList(t));
+			File packageDir = new File(dir, t.getPackage().getQualifiedName()
+					.replace('.', File.separatorChar));
+			packageDir.mkdirs();
+			Writer out = new OutputStreamWriter(new FileOutputStream(new File(
+					packageDir, t.getSimpleName() + ".java")), "UTF-8");
+			try {
+				out.write(printer.getResult());
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+}
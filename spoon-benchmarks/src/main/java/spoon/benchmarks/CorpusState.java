@@ -0,0 +1,55 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+
+/**
+ * The benchmark state: the sources of a corpus and a model built from them
+ * once per trial, shared by the benchmarks that do not build the model
+ * themselves.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+	@Param({ Corpus.DEEP, Corpus.HUGE, Corpus.MANY, Corpus.SPOON })
+	public String corpus;
+
+	public File sources;
+
+	public Factory factory;
+
+	public List<CtType<?>> types;
+
+	@Setup
+	public void setup() throws IOException {
+		sources = Corpus.getSources(corpus);
+		factory = Corpus.build(sources);
+		types = factory.Type().getAll();
+	}
+
+}
@@ -0,0 +1,114 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spoon.processing.AbstractProcessor;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+import spoon.reflect.visitor.Query;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.QueueProcessingManager;
+
+/**
+ * The benchmarks of the main operations of Spoon, on each corpus of
+ * {@link CorpusState}: building a model with JDT
+ * ({@link spoon.support.compiler.jdt.JDTBasedSpoonCompiler#build()}),
+ * processing it ({@link QueueProcessingManager#process()}), printing it
+ * ({@link DefaultJavaPrettyPrinter}), cloning it
+ * ({@link spoon.support.DefaultCoreFactory#clone(Object)}) and querying it
+ * ({@link Query#getElements(Factory, spoon.reflect.visitor.Filter)}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpoonBenchmarks {
+
+	@Benchmark
+	public Factory build(CorpusState state) {
+		return Corpus.build(state.sources);
+	}
+
+	@Benchmark
+	public int process(CorpusState state) {
+		CountingProcessor processor = new CountingProcessor();
+		QueueProcessingManager manager = new QueueProcessingManager(
+				state.factory);
+		manager.addProcessor(processor);
+		manager.process();
+		return processor.count;
+	}
+
+	@Benchmark
+	public int print(CorpusState state) {
+		int length = 0;
+		for (CtType<?> t : state.types) {
+			if (t.isTopLevel()) {
+				DefaultJavaPrettyPrinter printer = new DefaultJavaPrettyPrinter(
+						state.factory.getEnvironment());
+				printer.calculate(null,
+						Collections.<CtType<?>> singletonList(t));
+				length += printer.getResult().length();
+			}
+		}
+		return length;
+	}
+
+	@Benchmark
+	public List<CtType<?>> cloneTypes(CorpusState state) {
+		List<CtType<?>> clones = new ArrayList<CtType<?>>(state.types.size());
+		for (CtType<?> t : state.types) {
+			clones.add(state.factory.Core().clone(t));
+		}
+		return clones;
+	}
+
+	@Benchmark
+	public int query(CorpusState state) {
+		return Query.getElements(state.factory,
+				new TypeFilter<CtInvocation<?>>(CtInvocation.class)).size();
+	}
+
+	/**
+	 * A processor that visits all the elements.
+	 */
+	public static class CountingProcessor extends AbstractProcessor<CtElement> {
+		int count;
+
+		public void process(CtElement element) {
+			count++;
+		}
+	}
+
+}
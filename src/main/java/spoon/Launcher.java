@@ -17,9 +17,12 @@
 package spoon;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -50,10 +53,12 @@ import spoon.support.JavaOutputProcessor;
 import spoon.support.StandardEnvironment;
 import spoon.support.compiler.FileSystemFile;
 import spoon.support.compiler.FileSystemFolder;
+import spoon.support.compiler.TemplateModelCache;
 import spoon.support.compiler.ZipFolder;
 import spoon.support.compiler.jdt.JDTBasedSpoonCompiler;
 import spoon.support.gui.SpoonModelTree;
 import spoon.support.processing.SpoonletXmlHandler;
+import spoon.support.util.Metrics;
 
 import com.martiansoftware.jsap.FlaggedOption;
 import com.martiansoftware.jsap.JSAP;
@@ -303,6 +308,14 @@ public class Launcher implements SpoonAPI {
 			opt2.setRequired(false);
 			jsap.registerParameter(opt2);
 
+			// Template cache
+			opt2 = new FlaggedOption("template-cache");
+			opt2.setLongFlag("template-cache");
+			opt2.setHelp("An optional directory where the template models are cached, so that they are not built again while the template sources and classpath do not change. The directory can be shared by several Spoon processes.");
+			opt2.setStringParser(FileStringParser.getParser());
+			opt2.setRequired(false);
+			jsap.registerParameter(opt2);
+
 			// Destination
 			opt2 = new FlaggedOption("destination");
 			opt2.setShortFlag('d');
@@ -337,6 +350,14 @@ public class Launcher implements SpoonAPI {
 			sw1.setDefault("false");
 			jsap.registerParameter(sw1);
 
+			// Number of compilation threads
+			opt2 = new FlaggedOption("compile-threads");
+			opt2.setLongFlag("compile-threads");
+			opt2.setStringParser(JSAP.INTEGER_PARSER);
+			opt2.setDefault("1");
+			opt2.setHelp("Number of threads used to print and compile the processed sources (with --compile).");
+			jsap.registerParameter(opt2);
+
 			// Enable pre-compilation
 			sw1 = new Switch("precompile");
 			sw1.setLongFlag("precompile");
@@ -388,6 +409,14 @@ public class Launcher implements SpoonAPI {
 			sw1.setDefault("false");
 			jsap.registerParameter(sw1);
 
+			// Performance metrics
+			opt2 = new FlaggedOption("metrics");
+			opt2.setLongFlag("metrics");
+			opt2.setHelp("Records performance metrics (time spent per phase, per processor, per compilation unit and per output file, memory and garbage collection snapshots) and writes them as JSON to the given file.");
+			opt2.setStringParser(FileStringParser.getParser());
+			opt2.setRequired(false);
+			jsap.registerParameter(opt2);
+
 			return jsap;
 		} catch (JSAPException e) {
 			throw new SpoonException(e.getMessage(),e);
@@ -430,6 +459,14 @@ public class Launcher implements SpoonAPI {
 		environment.useTabulations(jsapActualArgs.getBoolean("tabs"));
 		environment.setCopyResources(!jsapActualArgs.getBoolean("no-copy-resources"));
     environment.setGenerateJavadoc(jsapActualArgs.getBoolean("generate-javadoc"));
+		environment.setCompilationThreads(jsapActualArgs
+				.getInt("compile-threads"));
+		// the printed sources are compiled without being printed again
+		environment.getPrintedSourceCache().setEnabled(
+				jsapActualArgs.getBoolean("compile"));
+		if (jsapActualArgs.getFile("metrics") != null) {
+			environment.getMetrics().setEnabled(true);
+		}
 		
 		
 		// now we are ready to create a spoon compiler
@@ -585,6 +622,10 @@ public class Launcher implements SpoonAPI {
 		comp.setDestinationDirectory(jsapActualArgs.getFile("destination"));
 		comp.setOutputDirectory(jsapActualArgs.getFile("output"));
 		comp.setEncoding(jsapActualArgs.getString("encoding"));
+		if (jsapActualArgs.getFile("template-cache") != null) {
+			comp.setTemplateModelCache(new TemplateModelCache(jsapActualArgs
+					.getFile("template-cache")));
+		}
 		
 		// backward compatibility
 		// we don't have to set the source classpath
@@ -706,7 +747,11 @@ public class Launcher implements SpoonAPI {
 		prettyprint();
 
 		if (jsapActualArgs.getBoolean("compile")) {
+			Metrics metrics = env.getMetrics();
+			long start = metrics.start();
 			modelBuilder.compile();
+			metrics.stop(Metrics.PHASE, "compile", start);
+			metrics.snapshot("compile");
 		}
 
 
@@ -715,6 +760,33 @@ public class Launcher implements SpoonAPI {
 		env.debugMessage("program spooning done in " + (t - tstart) + " ms");
 		env.reportEnd();
 
+		File metricsFile = jsapActualArgs.getFile("metrics");
+		if (metricsFile != null) {
+			writeMetrics(metricsFile);
+		}
+
+	}
+
+	/**
+	 * Writes the performance metrics recorded by the environment as JSON to
+	 * the given file (see {@link Metrics#writeJson(java.io.Writer)}).
+	 */
+	public void writeMetrics(File file) {
+		Writer out = null;
+		try {
+			out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			getEnvironment().getMetrics().writeJson(out);
+		} catch (IOException e) {
+			throw new SpoonException(e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					logger.error(e.getMessage(), e);
+				}
+			}
+		}
 	}
 
 	private String getVersionMessage() {
@@ -748,14 +820,22 @@ public class Launcher implements SpoonAPI {
 	@Override
 	public void buildModel() {
 		long tstart = System.currentTimeMillis();
+		Metrics metrics = getEnvironment().getMetrics();
+		long start = metrics.start();
 		modelBuilder.build();
+		metrics.stop(Metrics.PHASE, "build", start);
+		metrics.snapshot("build");
 		getEnvironment().debugMessage("model built in " + (System.currentTimeMillis() - tstart));
 	}
 
 	@Override
 	public void process() {
 		long tstart = System.currentTimeMillis();
+		Metrics metrics = getEnvironment().getMetrics();
+		long start = metrics.start();
 		modelBuilder.process(getProcessorTypes());
+		metrics.stop(Metrics.PHASE, "process", start);
+		metrics.snapshot("process");
 		getEnvironment().debugMessage("model processed in "
 				+ (System.currentTimeMillis() - tstart) + " ms");
 	}
@@ -763,6 +843,8 @@ public class Launcher implements SpoonAPI {
 	@Override
 	public void prettyprint() {
 		long tstart = System.currentTimeMillis();
+		Metrics metrics = getEnvironment().getMetrics();
+		long start = metrics.start();
 		try {
 			OutputType outputType = OutputType.fromString(jsapActualArgs.getString("output-type"));
 			modelBuilder.generateProcessedSourceFiles(outputType);
@@ -788,6 +870,8 @@ public class Launcher implements SpoonAPI {
 			}
 		}
 		
+		metrics.stop(Metrics.PHASE, "print", start);
+		metrics.snapshot("print");
 		getEnvironment().debugMessage("pretty-printed in "
 				+ (System.currentTimeMillis() - tstart) + " ms");
 	}
@@ -23,6 +23,8 @@ import java.util.Set;
 
 import spoon.compiler.SpoonResource;
 import spoon.reflect.factory.Factory;
+import spoon.support.compiler.ClassFileStore;
+import spoon.support.compiler.TemplateModelCache;
 
 /**
  * Responsible for building a spoon model from Java source code.
@@ -158,6 +160,38 @@ public interface SpoonModelBuilder {
 	 */
 	void generateProcessedSourceFiles(OutputType outputType);
 
+	/**
+	 * Sets the store of the class files generated by {@link #compile()} and
+	 * {@link #compileInputSources()}. When a store is set, the class files
+	 * are kept in it instead of being written to the destination directory.
+	 * 
+	 * @param store
+	 *            the class file store, or null to write the class files to
+	 *            the destination directory
+	 */
+	void setClassFileStore(ClassFileStore store);
+
+	/**
+	 * Gets the store of the generated class files (null by default).
+	 */
+	ClassFileStore getClassFileStore();
+
+	/**
+	 * Sets the cache of the template models. When a cache is set, the
+	 * templates built by a previous run with the same template sources and
+	 * classpath are restored from the cache instead of being built again.
+	 * 
+	 * @param cache
+	 *            the template model cache, or null to always build the
+	 *            templates
+	 */
+	void setTemplateModelCache(TemplateModelCache cache);
+
+	/**
+	 * Gets the cache of the template models (null by default).
+	 */
+	TemplateModelCache getTemplateModelCache();
+
 	/**
 	 * Generates the bytecode associated to the classes stored in this
 	 * compiler's factory. The bytecode is generated in the directory given by
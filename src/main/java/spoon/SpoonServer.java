@@ -0,0 +1,371 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import spoon.reflect.declaration.CtType;
+import spoon.support.JavaOutputProcessor;
+import spoon.support.compiler.FileSystemFolder;
+import spoon.support.compiler.jdt.NameEnvironmentCache;
+
+/**
+ * A long-running Spoon process, which keeps the model of its input sources
+ * between requests, so that the JVM startup, the classpath indexing and the
+ * model building are not paid for each run.
+ *
+ * <p>
+ * The server is created with the same arguments as the {@link Launcher}. It
+ * reads one request per line and answers with zero or more lines followed by
+ * a line starting with <code>ok</code> or <code>error</code>:
+ *
+ * <ul>
+ * <li><code>build</code>: builds the model, if the input sources changed
+ * since the last build.</li>
+ * <li><code>process [processor...]</code>: applies the given processors and
+ * the ones of the arguments, prints the processed sources and compiles them
+ * if <code>--compile</code> is given, as {@link Launcher#run()} does. The
+ * processed model is not reused: the next request builds the model
+ * again.</li>
+ * <li><code>print type...</code>: prints the given types to the output
+ * directory, and answers the printed files.</li>
+ * <li><code>changed [file...]</code>: tells that the given input or
+ * classpath files were modified, or that any file may have been modified if
+ * no file is given.</li>
+ * <li><code>stop</code>: stops the server.</li>
+ * </ul>
+ *
+ * <p>
+ * The results are the ones of a cold run: the model is built again, with a
+ * new factory, when the input sources or the classpath changed or when
+ * processors modified it. The classpath stays open between the builds (see
+ * {@link NameEnvironmentCache}), and is refreshed before each build.
+ *
+ * <p>
+ * Before each request, the server detects the files created or deleted in
+ * the input and classpath directories from the modification times of the
+ * directories (see {@link FileSystemFolder#refresh()}), and the modified
+ * input files and jars given directly in the arguments from their sizes and
+ * modification times. The files modified in these directories are not
+ * detected, and must be notified with <code>changed</code>.
+ */
+public class SpoonServer {
+
+	private final String[] args;
+
+	private final NameEnvironmentCache nameEnvironmentCache = new NameEnvironmentCache();
+
+	private Launcher launcher;
+
+	/**
+	 * The snapshots of the input and classpath directories.
+	 */
+	private List<FileSystemFolder> folders;
+
+	/**
+	 * The stamps of the input and classpath files which are not in a
+	 * directory.
+	 */
+	private Map<File, Long> stamps;
+
+	/**
+	 * The input and classpath entries, as absolute files.
+	 */
+	private List<File> inputEntries;
+
+	private List<File> classpathEntries;
+
+	private boolean modified;
+
+	private int buildCount;
+
+	private boolean stopped;
+
+	/**
+	 * Creates a server for the given launcher arguments.
+	 */
+	public SpoonServer(String[] args) {
+		this.args = args.clone();
+	}
+
+	/**
+	 * Gets the launcher holding the current model, building it if needed.
+	 */
+	public synchronized Launcher getLauncher() {
+		if (launcher == null || modified || isOutdated()) {
+			launcher = new Launcher();
+			launcher.getEnvironment().setNameEnvironmentCache(
+					nameEnvironmentCache);
+			launcher.setArgs(args);
+			snapshot(launcher);
+			// sees the classes and the jars changed since the last build
+			nameEnvironmentCache.refresh();
+			launcher.buildModel();
+			modified = false;
+			buildCount++;
+		}
+		return launcher;
+	}
+
+	/**
+	 * Gets the number of times the model was built by this server.
+	 */
+	public synchronized int getBuildCount() {
+		return buildCount;
+	}
+
+	/**
+	 * Handles one request, and writes its answer.
+	 *
+	 * @return false if the request stops the server
+	 */
+	public synchronized boolean handle(String request, PrintWriter out) {
+		List<String> words = new ArrayList<String>(Arrays.asList(request
+				.trim().split("\\s+")));
+		String command = words.remove(0);
+		try {
+			if ("build".equals(command)) {
+				Launcher l = getLauncher();
+				out.println("ok " + l.getFactory().Type().getAll().size()
+						+ " types");
+			} else if ("process".equals(command)) {
+				Launcher l = getLauncher();
+				for (String processor : words) {
+					l.addProcessor(processor);
+				}
+				// the next request needs a new model
+				modified = true;
+				l.process();
+				l.prettyprint();
+				if (l.jsapActualArgs.getBoolean("compile")) {
+					l.getModelBuilder().compile();
+				}
+				out.println("ok");
+			} else if ("print".equals(command)) {
+				Launcher l = getLauncher();
+				JavaOutputProcessor printer = (JavaOutputProcessor) l
+						.getEnvironment().getDefaultFileGenerator();
+				printer.setFactory(l.getFactory());
+				printer.init();
+				for (String name : words) {
+					CtType<?> type = l.getFactory().Type().get(name);
+					if (type == null) {
+						throw new SpoonException("unknown type " + name);
+					}
+					int printed = printer.getCreatedFiles().size();
+					printer.process(type);
+					for (File f : printer.getCreatedFiles().subList(printed,
+							printer.getCreatedFiles().size())) {
+						out.println(f.getPath());
+					}
+				}
+				out.println("ok");
+			} else if ("changed".equals(command)) {
+				changed(words);
+				out.println("ok");
+			} else if ("stop".equals(command)) {
+				stopped = true;
+				out.println("ok");
+			} else {
+				out.println("error unknown request " + command);
+			}
+		} catch (RuntimeException e) {
+			// a failed request leaves the model in an unknown state
+			modified = true;
+			out.println("error " + e.getMessage());
+		}
+		out.flush();
+		return !stopped;
+	}
+
+	/**
+	 * Reads the requests from the given reader until the end of the input or
+	 * a <code>stop</code> request, and writes the answers to the given
+	 * writer.
+	 */
+	public void serve(Reader in, Writer out) throws IOException {
+		BufferedReader reader = new BufferedReader(in);
+		PrintWriter writer = new PrintWriter(out);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.trim().length() > 0 && !handle(line, writer)) {
+				break;
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Accepts the connections of the local clients on the given port, one at
+	 * a time, until a <code>stop</code> request.
+	 */
+	public void serve(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 0,
+				InetAddress.getByName(null));
+		try {
+			while (!isStopped()) {
+				Socket socket = server.accept();
+				try {
+					serve(new InputStreamReader(socket.getInputStream(),
+							"UTF-8"), new OutputStreamWriter(socket
+							.getOutputStream(), "UTF-8"));
+				} finally {
+					socket.close();
+				}
+			}
+		} finally {
+			server.close();
+			close();
+		}
+	}
+
+	/**
+	 * Tells if a <code>stop</code> request was handled.
+	 */
+	public synchronized boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Releases the model and the classpath held by this server.
+	 */
+	public synchronized void close() {
+		launcher = null;
+		nameEnvironmentCache.close();
+	}
+
+	/**
+	 * Takes the snapshots of the input and classpath entries of the given
+	 * launcher.
+	 */
+	private void snapshot(Launcher l) {
+		folders = new ArrayList<FileSystemFolder>();
+		stamps = new HashMap<File, Long>();
+		inputEntries = snapshot(l.getArguments().getString("input"));
+		classpathEntries = snapshot(l.getArguments().getString(
+				"source-classpath"));
+	}
+
+	private List<File> snapshot(String path) {
+		List<File> entries = new ArrayList<File>();
+		if (path == null) {
+			return entries;
+		}
+		for (String entry : path.split(File.pathSeparator)) {
+			File file = new File(entry);
+			entries.add(file.getAbsoluteFile());
+			if (file.isDirectory()) {
+				FileSystemFolder folder = new FileSystemFolder(file);
+				// lists the whole directory now, to see its next changes
+				folder.getAllFiles();
+				folders.add(folder);
+			} else {
+				stamps.put(file, getStamp(file));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Tells if files were created or deleted in the input and classpath
+	 * directories, or if the input and classpath files changed, since the
+	 * last build.
+	 */
+	private boolean isOutdated() {
+		boolean outdated = false;
+		for (FileSystemFolder folder : folders) {
+			outdated |= folder.refresh();
+		}
+		for (Map.Entry<File, Long> stamp : stamps.entrySet()) {
+			outdated |= getStamp(stamp.getKey()) != stamp.getValue();
+		}
+		return outdated;
+	}
+
+	/**
+	 * Handles the notification of the given modified files: the model is
+	 * built again if they are inputs or in the classpath, and the classpath
+	 * is refreshed if they are in the classpath.
+	 */
+	private void changed(List<String> files) {
+		if (files.isEmpty() || inputEntries == null) {
+			modified = true;
+			nameEnvironmentCache.refresh();
+			return;
+		}
+		for (String name : files) {
+			File file = new File(name).getAbsoluteFile();
+			if (isIn(file, classpathEntries)) {
+				modified = true;
+				nameEnvironmentCache.refresh();
+			} else if (isIn(file, inputEntries)) {
+				modified = true;
+			}
+		}
+	}
+
+	private static boolean isIn(File file, List<File> entries) {
+		for (File f = file; f != null; f = f.getParentFile()) {
+			if (entries.contains(f)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long getStamp(File file) {
+		return file.lastModified() * 31 + file.length();
+	}
+
+	/**
+	 * Starts a server. With <code>--port &lt;port&gt;</code> as first
+	 * arguments, the requests are read from a local socket, otherwise they
+	 * are read from the standard input. The other arguments are the ones of
+	 * the {@link Launcher}.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 2 && "--port".equals(args[0])) {
+			new SpoonServer(Arrays.copyOfRange(args, 2, args.length))
+					.serve(Integer.parseInt(args[1]));
+		} else {
+			SpoonServer server = new SpoonServer(args);
+			try {
+				server.serve(new InputStreamReader(System.in),
+						new OutputStreamWriter(System.out));
+			} finally {
+				server.close();
+			}
+		}
+	}
+
+}
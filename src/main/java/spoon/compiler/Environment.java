@@ -26,6 +26,9 @@ import spoon.processing.Processor;
 import spoon.processing.ProcessorProperties;
 import spoon.processing.Severity;
 import spoon.reflect.declaration.CtElement;
+import spoon.support.compiler.PrintedSourceCache;
+import spoon.support.compiler.jdt.NameEnvironmentCache;
+import spoon.support.util.Metrics;
 
 /**
  * This interface represents the environment in which Spoon is launched -
@@ -77,6 +80,18 @@ public interface Environment {
 	 */
 	public boolean isDebug();
 
+	/**
+	 * Gets the performance metrics of this environment (disabled by
+	 * default).
+	 */
+	Metrics getMetrics();
+
+	/**
+	 * Gets the cache of the printed compilation units, shared by the output
+	 * processor and the compiler (disabled by default).
+	 */
+	PrintedSourceCache getPrintedSourceCache();
+
 	/**
 	 * Returns true is we let Spoon handle imports
 	 */
@@ -316,4 +331,44 @@ public interface Environment {
 	 * Sets the option generate-javadoc to generate javadoc of the project on the source generated.
 	 */
 	void setGenerateJavadoc(boolean generateJavadoc);
-}
\ No newline at end of file
+
+	/**
+	 * Gets the number of threads used to compile the model (1 by default).
+	 */
+	int getCompilationThreads();
+
+	/**
+	 * Sets the number of threads used to compile the model. With more than
+	 * one thread, the compilation units are printed in parallel before the
+	 * compilation, and JDT parses and generates code concurrently.
+	 */
+	void setCompilationThreads(int threads);
+
+	/**
+	 * Gets the cache of the name environments shared by the compilers of this
+	 * environment, or null if each compilation opens its classpath (the
+	 * default).
+	 */
+	NameEnvironmentCache getNameEnvironmentCache();
+
+	/**
+	 * Sets the cache of the name environments shared by the compilers of this
+	 * environment. The same cache can be set on several environments; it is
+	 * closed by its owner.
+	 */
+	void setNameEnvironmentCache(NameEnvironmentCache cache);
+
+	/**
+	 * Tells if the declarations of the types which are not in the model are
+	 * read from their class files (see
+	 * {@link spoon.reflect.reference.CtTypeReference#getTypeDeclaration()}).
+	 */
+	boolean isUsingClassFileTypes();
+
+	/**
+	 * Sets Spoon to read the declarations of the types which are not in the
+	 * model from their class files, instead of loading the classes to reflect
+	 * on them (false by default).
+	 */
+	void useClassFileTypes(boolean b);
+}
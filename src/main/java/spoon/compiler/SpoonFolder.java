@@ -35,7 +35,9 @@ public interface SpoonFolder extends SpoonResource {
 	List<SpoonFile> getAllFiles();
 
 	/**
-	 * Gets all the Java source files in the folder.
+	 * Gets all the Java source files in the folder. The folders of the file
+	 * system return the files listed on first access, until
+	 * {@link spoon.support.compiler.FileSystemFolder#refresh()} is called.
 	 */
 	List<SpoonFile> getAllJavaFiles();
 
@@ -20,10 +20,10 @@ package spoon.processing;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import spoon.Launcher;
 import spoon.reflect.declaration.CtAnnotation;
@@ -119,11 +119,11 @@ public abstract class AbstractAnnotationProcessor<A extends Annotation, E extend
 	}
 
 	final public Set<Class<? extends A>> getConsumedAnnotationTypes() {
-		return new TreeSet<Class<? extends A>>(consumedAnnotationTypes.values());
+		return new HashSet<Class<? extends A>>(consumedAnnotationTypes.values());
 	}
 
 	final public Set<Class<? extends A>> getProcessedAnnotationTypes() {
-		return new TreeSet<Class<? extends A>>(
+		return new HashSet<Class<? extends A>>(
 				processedAnnotationTypes.values());
 	}
 
@@ -21,7 +21,11 @@ package spoon.processing;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -64,6 +68,10 @@ public class XMLAnnotationProcessor extends AbstractManualProcessor {
 
 	private Document document;
 
+	private final Map<String, Pattern> patterns = new HashMap<String, Pattern>();
+
+	private final Map<CtElement, String> signatures = new IdentityHashMap<CtElement, String>();
+
 	/**
 	 * Creates a new XMLAnnotationProcessor.
 	 */
@@ -125,8 +133,8 @@ public class XMLAnnotationProcessor extends AbstractManualProcessor {
 	 * @see CtElement#getSignature()
 	 */
 	protected boolean isTypeMatching(CtType<?> type, String typeExpression) {
-		return java.util.regex.Pattern.matches(typeExpression,
-				type.getQualifiedName());
+		return getPattern(typeExpression).matcher(type.getQualifiedName())
+				.matches();
 	}
 
 	/**
@@ -142,8 +150,8 @@ public class XMLAnnotationProcessor extends AbstractManualProcessor {
 	 */
 	protected boolean isExecutableMatching(CtExecutable<?> executable,
 			String executableExpression) {
-		String signature = executable.getSignature();
-		return java.util.regex.Pattern.matches(executableExpression, signature);
+		String signature = getSignature(executable);
+		return getPattern(executableExpression).matcher(signature).matches();
 	}
 
 	/**
@@ -158,8 +166,73 @@ public class XMLAnnotationProcessor extends AbstractManualProcessor {
 	 * @see CtElement#getSignature()
 	 */
 	protected boolean isFieldMatching(CtField<?> field, String fieldExpression) {
-		String signature = field.getSignature();
-		return java.util.regex.Pattern.matches(fieldExpression, signature);
+		String signature = getSignature(field);
+		return getPattern(fieldExpression).matcher(signature).matches();
+	}
+
+	/**
+	 * Gets the compiled pattern of a regular expression, which is compiled
+	 * only once.
+	 */
+	protected Pattern getPattern(String expression) {
+		Pattern pattern = patterns.get(expression);
+		if (pattern == null) {
+			pattern = Pattern.compile(expression);
+			patterns.put(expression, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Gets the signature of an element, which is computed only once during
+	 * the processing (the added annotations are not part of the
+	 * signatures).
+	 */
+	protected String getSignature(CtElement element) {
+		String signature = signatures.get(element);
+		if (signature == null) {
+			signature = element.getSignature();
+			signatures.put(element, signature);
+		}
+		return signature;
+	}
+
+	/**
+	 * A class element of the XML file, with its direct field and executable
+	 * elements.
+	 */
+	private static class ClassRule {
+		final Element element;
+
+		final String expression;
+
+		final List<Element> fields;
+
+		final List<Element> executables;
+
+		/**
+		 * The elements to be annotated, with the XML elements that describe
+		 * their annotations.
+		 */
+		final List<Object[]> matches = new ArrayList<Object[]>();
+
+		ClassRule(Element element) {
+			this.element = element;
+			this.expression = element.getAttribute("expr");
+			this.fields = getChildren(element, "field");
+			this.executables = getChildren(element, "executable");
+		}
+
+		private static List<Element> getChildren(Element element, String tag) {
+			List<Element> children = new ArrayList<Element>();
+			NodeList nodeList = element.getElementsByTagName(tag);
+			for (int i = 0; i < nodeList.getLength(); i++) {
+				if (nodeList.item(i).getParentNode() == element) {
+					children.add((Element) nodeList.item(i));
+				}
+			}
+			return children;
+		}
 	}
 
 	final public void process() {
@@ -167,85 +240,62 @@ public class XMLAnnotationProcessor extends AbstractManualProcessor {
 		Element root = document.getDocumentElement();
 
 		NodeList nodeList = root.getElementsByTagName("class");
-		int len = nodeList.getLength();
-		for (int i = 0; i < len; i++) {
-			Element clazz = (Element) nodeList.item(i);
-			String nameExpr = clazz.getAttribute("expr");
-			for (CtType<?> t : getFactory().Type().getAll(true)) {
-				// CtType<?> t = getType(name);
-				if (!isTypeMatching(t, nameExpr))
-					continue;
-				try {
-					annotateElement(t, clazz);
-				} catch (Exception e) {
-					Launcher.logger.error(e.getMessage(), e);
-				}
+		List<ClassRule> rules = new ArrayList<ClassRule>(nodeList.getLength());
+		for (int i = 0; i < nodeList.getLength(); i++) {
+			rules.add(new ClassRule((Element) nodeList.item(i)));
+		}
 
-				NodeList nodeList3 = clazz.getElementsByTagName("field");
-				for (int j = 0; j < nodeList3.getLength(); j++) {
-					Element fieldElt = (Element) nodeList3.item(j);
-					if (fieldElt.getParentNode() != clazz)
+		// matches all the rules in a single pass over the types
+		try {
+			for (CtType<?> t : getFactory().Type().getAll(true)) {
+				List<CtExecutable<?>> executables = null;
+				for (ClassRule rule : rules) {
+					if (!isTypeMatching(t, rule.expression))
 						continue;
-					String fieldExpr = fieldElt.getAttribute("expr");
-
-					for (CtField<?> field : t.getFields()) {
-						if (!isFieldMatching(field, fieldExpr))
-							continue;
-						try {
-							annotateElement(field, fieldElt);
-						} catch (Exception e) {
-							Launcher.logger.error(e.getMessage(), e);
+					rule.matches.add(new Object[] { t, rule.element });
+
+					for (Element fieldElt : rule.fields) {
+						String fieldExpr = fieldElt.getAttribute("expr");
+						for (CtField<?> field : t.getFields()) {
+							if (isFieldMatching(field, fieldExpr)) {
+								rule.matches.add(new Object[] { field, fieldElt });
+							}
 						}
 					}
-				}
-
-				if (!(t instanceof CtType))
-					continue;
-
-				List<CtExecutable<?>> executables = new ArrayList<CtExecutable<?>>();
-				executables.addAll(((CtType<?>) t).getMethods());
-				if (t instanceof CtClass) {
-					executables.addAll(((CtClass<?>) t).getConstructors());
-				}
 
-				NodeList nodeList2 = clazz.getElementsByTagName("executable");
-				for (int j = 0; j < nodeList2.getLength(); j++) {
-					Element executableElt = (Element) nodeList2.item(j);
-					if (executableElt.getParentNode() != clazz)
-						continue;
-					String executableExpr = executableElt.getAttribute("expr");
-
-					for (CtExecutable<?> executable : executables) {
-
-						if (!isExecutableMatching(executable, executableExpr))
-							continue;
-						try {
-							annotateElement(executable, executableElt);
-						} catch (Exception e) {
-							Launcher.logger.error(e.getMessage(), e);
+					if (executables == null) {
+						executables = new ArrayList<CtExecutable<?>>();
+						executables.addAll(t.getMethods());
+						if (t instanceof CtClass) {
+							executables.addAll(((CtClass<?>) t)
+									.getConstructors());
+						}
+					}
+					for (Element executableElt : rule.executables) {
+						String executableExpr = executableElt
+								.getAttribute("expr");
+						for (CtExecutable<?> executable : executables) {
+							if (isExecutableMatching(executable,
+									executableExpr)) {
+								rule.matches.add(new Object[] { executable,
+										executableElt });
+							}
 						}
-
-						// NodeList paramList = method
-						// .getElementsByTagName("parameter");
-						// for (int k = 0; k < paramList.getLength(); k++) {
-						// Element param = (Element) paramList.item(k);
-						// if (param.getParentNode() != method)
-						// continue;
-						// String paramName = param.getAttribute("name");
-						// CtParameter<?> parameter = getParameter(exec,
-						// paramName);
-						// if (parameter != null) {
-						// try {
-						// annotateElement(parameter, param);
-						// } catch (Exception e) {
-						// Launcher.logger.error(e.getMessage(), e);
-						// }
-						// }
-						// }
-
 					}
 				}
+			}
+		} finally {
+			signatures.clear();
+		}
 
+		// annotates the elements in the order of the rules
+		for (ClassRule rule : rules) {
+			for (Object[] match : rule.matches) {
+				try {
+					annotateElement((CtElement) match[0], (Element) match[1]);
+				} catch (Exception e) {
+					Launcher.logger.error(e.getMessage(), e);
+				}
 			}
 		}
 	}
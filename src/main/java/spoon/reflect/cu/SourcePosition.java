@@ -80,4 +80,15 @@ public interface SourcePosition {
 	 */
 	int getSourceStart();
 
+	/**
+	 * Gets the original source code of the element at this position, as
+	 * found in the source file of the compilation unit between
+	 * {@link #getSourceStart()} and {@link #getSourceEnd()}. The text is
+	 * computed once and memoized.
+	 *
+	 * @return the source code, or null if the original source is not
+	 *         available
+	 */
+	String getSourceText();
+
 }
@@ -18,10 +18,19 @@
 package spoon.reflect.factory;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import spoon.reflect.declaration.CtAnnotation;
 import spoon.reflect.declaration.CtAnnotationType;
@@ -31,12 +40,33 @@ import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.reference.CtArrayTypeReference;
 import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.CtScanner;
 
 /**
  * The {@link CtAnnotationType} sub-factory.
  */
 public class AnnotationFactory extends TypeFactory {
 
+	/**
+	 * The annotation type names of the indexed annotations (null until the
+	 * index is built).
+	 */
+	private transient Map<CtAnnotation<?>, String> indexedNames;
+
+	/**
+	 * The indexed annotations by annotation type name, with their insertion
+	 * numbers.
+	 */
+	private transient Map<String, Map<CtAnnotation<?>, Long>> index;
+
+	private transient long indexVersion;
+
+	/**
+	 * The elements whose annotations are indexed once they are part of the
+	 * model.
+	 */
+	private transient List<WeakReference<CtElement>> pendingElements;
+
 	/**
 	 * Creates an annotation sub-factory.
 	 * 
@@ -202,4 +232,211 @@ public class AnnotationFactory extends TypeFactory {
 		return annotation;
 	}
 
+	/**
+	 * Gets the elements of the model annotated with the given annotation
+	 * type, in the order in which the annotations were added.
+	 * 
+	 * @see #getAnnotatedElements(String)
+	 */
+	public List<CtElement> getAnnotatedElements(
+			Class<? extends Annotation> annotationType) {
+		return getAnnotatedElements(annotationType.getName());
+	}
+
+	/**
+	 * Gets the elements of the model annotated with the given annotation
+	 * type, in the order in which the annotations were added. The elements
+	 * are taken from an index, which is built with one scan of the model on
+	 * the first call, and then kept up to date by
+	 * {@link CtElement#addAnnotation(CtAnnotation)},
+	 * {@link CtElement#removeAnnotation(CtAnnotation)} and
+	 * {@link CtAnnotation#setAnnotationType(CtTypeReference)} and
+	 * {@link #indexAnnotations(CtElement)}. Note that
+	 * an element which is removed from the model is still returned as long
+	 * as it keeps its annotations.
+	 * 
+	 * @param qualifiedName
+	 *            the qualified name of the annotation type
+	 */
+	public List<CtElement> getAnnotatedElements(String qualifiedName) {
+		updateIndex();
+		Map<CtAnnotation<?>, Long> annotations = index.get(qualifiedName);
+		if (annotations == null) {
+			return new ArrayList<CtElement>();
+		}
+		List<Map.Entry<CtAnnotation<?>, Long>> entries = new ArrayList<Map.Entry<CtAnnotation<?>, Long>>(
+				annotations.entrySet());
+		Collections.sort(entries,
+				new Comparator<Map.Entry<CtAnnotation<?>, Long>>() {
+					public int compare(Map.Entry<CtAnnotation<?>, Long> e1,
+							Map.Entry<CtAnnotation<?>, Long> e2) {
+						return e1.getValue().compareTo(e2.getValue());
+					}
+				});
+		List<CtElement> result = new ArrayList<CtElement>(entries.size());
+		Set<CtElement> found = Collections
+				.newSetFromMap(new IdentityHashMap<CtElement, Boolean>());
+		for (Map.Entry<CtAnnotation<?>, Long> e : entries) {
+			CtElement element = getAnnotatedElement(e.getKey());
+			if (element == null) {
+				unindex(e.getKey());
+			} else if (found.add(element)) {
+				result.add(element);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the elements annotated with any of the given annotation types,
+	 * together with all their parents. A scanner looking for these annotated
+	 * elements can skip any element which is not in the returned set.
+	 * 
+	 * @param qualifiedNames
+	 *            the qualified names of the annotation types
+	 * @return an identity set of elements
+	 */
+	public Set<CtElement> getAnnotatedPaths(Collection<String> qualifiedNames) {
+		Set<CtElement> paths = Collections
+				.newSetFromMap(new IdentityHashMap<CtElement, Boolean>());
+		for (String name : qualifiedNames) {
+			for (CtElement e : getAnnotatedElements(name)) {
+				while (paths.add(e) && e.isParentInitialized()) {
+					e = e.getParent();
+				}
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Gets the version of the annotation index, which changes each time an
+	 * annotation is added to the index.
+	 */
+	public long getIndexVersion() {
+		return indexVersion;
+	}
+
+	/**
+	 * Adds an annotation to the index, or updates its annotation type if it
+	 * is already indexed. This method is called by the model when an
+	 * annotation is added to an element.
+	 */
+	public void index(CtAnnotation<?> annotation) {
+		if (indexedNames == null || annotation.getAnnotationType() == null) {
+			return;
+		}
+		unindex(annotation);
+		String name = annotation.getAnnotationType().getQualifiedName();
+		Map<CtAnnotation<?>, Long> annotations = index.get(name);
+		if (annotations == null) {
+			annotations = new IdentityHashMap<CtAnnotation<?>, Long>();
+			index.put(name, annotations);
+		}
+		annotations.put(annotation, indexVersion++);
+		indexedNames.put(annotation, name);
+	}
+
+	/**
+	 * Removes an annotation from the index. This method is called by the
+	 * model when an annotation is removed from an element.
+	 */
+	public void unindex(CtAnnotation<?> annotation) {
+		if (indexedNames == null) {
+			return;
+		}
+		String name = indexedNames.remove(annotation);
+		if (name != null) {
+			index.get(name).remove(annotation);
+		}
+	}
+
+	/**
+	 * Tells that the annotations of the given element and of its children
+	 * must be indexed once the element is part of the model. This method is
+	 * called for the elements whose annotations are not set with
+	 * {@link CtElement#addAnnotation(CtAnnotation)}, such as the cloned
+	 * elements. It does nothing if the index is not built yet, since the
+	 * elements which are part of the model when it is built are indexed;
+	 * otherwise, the element is indexed by the next query of the index which
+	 * finds it in the model.
+	 */
+	public void indexAnnotations(CtElement element) {
+		if (indexedNames != null) {
+			pendingElements.add(new WeakReference<CtElement>(element));
+		}
+	}
+
+	/**
+	 * Tells if the annotations of the given element and of its children are
+	 * covered by the index, that is, if the element is part of the model.
+	 * The elements which are not part of the model must be scanned.
+	 */
+	public boolean isIndexed(CtElement element) {
+		Collection<CtPackage> roots = factory.Package().getAllRoots();
+		for (CtElement e = element;; e = e.getParent()) {
+			if (e instanceof CtPackage) {
+				for (CtPackage root : roots) {
+					if (root == e) {
+						return true;
+					}
+				}
+			}
+			if (!e.isParentInitialized()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Builds the index, or adds to it the annotations of the pending elements
+	 * which are now part of the model.
+	 */
+	private void updateIndex() {
+		CtScanner scanner = new CtScanner() {
+			@Override
+			protected void enter(CtElement e) {
+				for (CtAnnotation<?> a : e.getAnnotations()) {
+					index(a);
+				}
+			}
+		};
+		if (indexedNames == null) {
+			indexedNames = new IdentityHashMap<CtAnnotation<?>, String>();
+			index = new HashMap<String, Map<CtAnnotation<?>, Long>>();
+			pendingElements = new ArrayList<WeakReference<CtElement>>();
+			for (CtPackage p : factory.Package().getAllRoots()) {
+				scanner.scan(p);
+			}
+			return;
+		}
+		Iterator<WeakReference<CtElement>> it = pendingElements.iterator();
+		while (it.hasNext()) {
+			CtElement element = it.next().get();
+			if (element == null) {
+				it.remove();
+			} else if (isIndexed(element)) {
+				it.remove();
+				scanner.scan(element);
+			}
+		}
+	}
+
+	/**
+	 * Gets the element annotated by an indexed annotation, if the annotation
+	 * is still one of its annotations.
+	 */
+	private CtElement getAnnotatedElement(CtAnnotation<?> annotation) {
+		if (!annotation.isParentInitialized()) {
+			return null;
+		}
+		CtElement element = annotation.getParent();
+		for (CtAnnotation<?> a : element.getAnnotations()) {
+			if (a == annotation) {
+				return element;
+			}
+		}
+		return null;
+	}
+
 }
@@ -238,6 +238,18 @@ public class FactoryImpl implements Factory, Serializable {
 		return Type;
 	}
 
+	private transient TemplateFactory Template;
+
+	/**
+	 * The templates sub-factory.
+	 */
+	public TemplateFactory Template() {
+		if (Template == null) {
+			Template = new TemplateFactory(this);
+		}
+		return Template;
+	}
+
 	/**
 	 * A constructor that takes the parent factory
 	 */
@@ -20,6 +20,7 @@ package spoon.reflect.factory;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -28,6 +29,7 @@ import java.util.TreeMap;
 import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.reference.CtPackageReference;
+import spoon.support.reflect.reference.CtSharedPackageReferenceImpl;
 
 /**
  * The {@link CtPackage} sub-factory.
@@ -84,6 +86,28 @@ public class PackageFactory extends SubFactory implements Serializable {
 		return topLevel;
 	}
 	
+	private final Map<String, CtPackageReference> sharedReferences = new HashMap<String, CtPackageReference>();
+
+	/**
+	 * Returns the shared reference to a package, which is created once per
+	 * package name. It is used as the package of all the type references of
+	 * the package, so it cannot be modified: use
+	 * {@link #createReference(String)} to get a modifiable reference.
+	 * 
+	 * @param name
+	 *            full name of the package to reference
+	 */
+	public CtPackageReference getSharedReference(String name) {
+		synchronized (sharedReferences) {
+			CtPackageReference ref = sharedReferences.get(name);
+			if (ref == null) {
+				ref = new CtSharedPackageReferenceImpl(factory, name);
+				sharedReferences.put(name, ref);
+			}
+			return ref;
+		}
+	}
+
 	/**
 	 * Creates a reference to a package.
 	 * 
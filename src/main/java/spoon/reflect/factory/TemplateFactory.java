@@ -0,0 +1,68 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.reflect.factory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import spoon.template.PreparedTemplate;
+
+/**
+ * The {@link spoon.template.Template} sub-factory. It holds the prepared
+ * templates of the factory, so that a template type is analyzed only once.
+ */
+public class TemplateFactory extends SubFactory {
+
+	private Map<Class<?>, PreparedTemplate> prepared;
+
+	/**
+	 * Creates the template sub-factory.
+	 */
+	public TemplateFactory(Factory factory) {
+		super(factory);
+	}
+
+	/**
+	 * Gets the prepared template of a template class. The template is
+	 * prepared the first time it is requested.
+	 *
+	 * @param templateClass
+	 *            a class implementing {@link spoon.template.Template}, whose
+	 *            source code is in the template classpath
+	 */
+	public synchronized PreparedTemplate prepare(Class<?> templateClass) {
+		if (prepared == null) {
+			prepared = new HashMap<Class<?>, PreparedTemplate>();
+		}
+		PreparedTemplate t = prepared.get(templateClass);
+		if (t == null) {
+			t = new PreparedTemplate(factory, templateClass);
+			prepared.put(templateClass, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Discards the prepared templates, for instance after a change of the
+	 * template source code.
+	 */
+	public synchronized void clearPrepared() {
+		prepared = null;
+	}
+
+}
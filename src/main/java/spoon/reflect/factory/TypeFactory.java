@@ -19,8 +19,13 @@ package spoon.reflect.factory;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
@@ -28,6 +33,7 @@ import spoon.reflect.declaration.CtTypeParameter;
 import spoon.reflect.reference.CtArrayTypeReference;
 import spoon.reflect.reference.CtTypeParameterReference;
 import spoon.reflect.reference.CtTypeReference;
+import spoon.support.compiler.jdt.BinaryTypeBuilder;
 
 /**
  * The {@link CtType} sub-factory.
@@ -149,7 +155,8 @@ public class TypeFactory extends SubFactory {
 		CtTypeReference<T> ref = factory.Core().createTypeReference();
 
 		if (type.getPackage() != null) {
-			ref.setPackage(factory.Package().createReference(type.getPackage()));
+			ref.setPackage(factory.Package().getSharedReference(
+					type.getPackage().getQualifiedName()));
 		}
 
 		if (type.getDeclaringType() != null) {
@@ -172,7 +179,7 @@ public class TypeFactory extends SubFactory {
 		if (hasInnerType(qualifiedName) > 0) {
 			ref.setDeclaringType(createReference(getDeclaringTypeName(qualifiedName)));
 		} else if (hasPackage(qualifiedName) > 0) {
-			ref.setPackage(factory.Package().createReference(
+			ref.setPackage(factory.Package().getSharedReference(
 					getPackageName(qualifiedName)));
 		}
 		ref.setSimpleName(getSimpleName(qualifiedName));
@@ -392,4 +399,178 @@ public class TypeFactory extends SubFactory {
 		return typeParam;
 	}
 
+	private transient ClassLoader missingClassesLoader;
+
+	private transient Set<String> missingClasses;
+
+	/**
+	 * Loads a class with the class loader of the environment, or returns null
+	 * if it cannot be loaded. The classes which cannot be loaded are
+	 * remembered, so that they are not looked up again while the class loader
+	 * of the environment does not change.
+	 * 
+	 * @param qualifiedName
+	 *            the binary name of the class
+	 */
+	public synchronized Class<?> findClass(String qualifiedName) {
+		ClassLoader loader = factory.getEnvironment().getClassLoader();
+		if (loader != missingClassesLoader || missingClasses == null) {
+			missingClassesLoader = loader;
+			missingClasses = new HashSet<String>();
+		}
+		if (missingClasses.contains(qualifiedName)) {
+			return null;
+		}
+		try {
+			return loader.loadClass(qualifiedName);
+		} catch (ClassNotFoundException e) {
+			missingClasses.add(qualifiedName);
+			return null;
+		} catch (LinkageError e) {
+			missingClasses.add(qualifiedName);
+			return null;
+		}
+	}
+
+	private transient Map<String, CtType<?>> shadowTypes;
+
+	private transient Map<String, CtPackage> shadowPackages;
+
+	/**
+	 * Gets the shadow type of the given reference, and synthesizes it on first
+	 * use. A shadow type is an empty class standing for a type which is
+	 * neither in the model nor in the classpath (typically in noclasspath
+	 * mode), so that the analyses do not have to handle the missing types
+	 * separately. The shadow types and their packages are not part of the
+	 * model: they are not returned by {@link #getAll()} and are not printed.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> CtType<T> getShadowType(CtTypeReference<T> reference) {
+		if (shadowTypes == null) {
+			shadowTypes = new HashMap<String, CtType<?>>();
+			shadowPackages = new HashMap<String, CtPackage>();
+		}
+		String qualifiedName = reference.getQualifiedName();
+		CtType<T> shadow = (CtType<T>) shadowTypes.get(qualifiedName);
+		if (shadow == null) {
+			CtClass<T> c = factory.Core().createClass();
+			c.setSimpleName(reference.getSimpleName());
+			if (reference.getDeclaringType() != null) {
+				getShadowType(reference.getDeclaringType()).addNestedType(c);
+			} else {
+				String packageName = reference.getPackage() == null ? ""
+						: reference.getPackage().getSimpleName();
+				if (CtPackage.TOP_LEVEL_PACKAGE_NAME.equals(packageName)) {
+					packageName = "";
+				}
+				getShadowPackage(packageName).addType(c);
+			}
+			shadow = c;
+			shadowTypes.put(qualifiedName, shadow);
+		}
+		return shadow;
+	}
+
+	/**
+	 * Tells if the given type is a shadow type (see
+	 * {@link #getShadowType(CtTypeReference)}).
+	 */
+	public synchronized boolean isShadowType(CtType<?> type) {
+		return shadowTypes != null
+				&& shadowTypes.get(type.getQualifiedName()) == type;
+	}
+
+	private transient Map<String, CtType<?>> binaryTypes;
+
+	private transient Set<String> missingBinaryTypes;
+
+	private transient BinaryTypeBuilder binaryTypeBuilder;
+
+	/**
+	 * Gets the declaration of the binary type of the given reference, read
+	 * from its class file on first use (see {@link BinaryTypeBuilder}), or
+	 * returns null if the type is not in the classpath. The classes are not
+	 * loaded. The declarations hold the signatures of the members, without
+	 * generics, annotations nor bodies. As the shadow types, they are not part
+	 * of the model.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> CtType<T> getBinaryType(CtTypeReference<T> reference) {
+		if (binaryTypes == null) {
+			binaryTypes = new HashMap<String, CtType<?>>();
+			missingBinaryTypes = new HashSet<String>();
+			binaryTypeBuilder = new BinaryTypeBuilder(factory);
+			if (shadowPackages == null) {
+				shadowTypes = new HashMap<String, CtType<?>>();
+				shadowPackages = new HashMap<String, CtPackage>();
+			}
+		}
+		String qualifiedName = reference.getQualifiedName();
+		CtType<T> binary = (CtType<T>) binaryTypes.get(qualifiedName);
+		if (binary == null && !missingBinaryTypes.contains(qualifiedName)) {
+			CtType<?> declaringType = null;
+			if (reference.getDeclaringType() != null) {
+				declaringType = getBinaryType(reference.getDeclaringType());
+				if (declaringType == null) {
+					missingBinaryTypes.add(qualifiedName);
+					return null;
+				}
+			}
+			binary = binaryTypeBuilder.build(qualifiedName);
+			if (binary == null) {
+				missingBinaryTypes.add(qualifiedName);
+				return null;
+			}
+			if (declaringType != null) {
+				declaringType.addNestedType(binary);
+			} else {
+				String packageName = reference.getPackage() == null ? ""
+						: reference.getPackage().getSimpleName();
+				if (CtPackage.TOP_LEVEL_PACKAGE_NAME.equals(packageName)) {
+					packageName = "";
+				}
+				getShadowPackage(packageName).addType(binary);
+			}
+			binaryTypes.put(qualifiedName, binary);
+		}
+		return binary;
+	}
+
+	/**
+	 * Tells if the given type was read from a class file (see
+	 * {@link #getBinaryType(CtTypeReference)}).
+	 */
+	public synchronized boolean isBinaryType(CtType<?> type) {
+		return binaryTypes != null
+				&& binaryTypes.get(type.getQualifiedName()) == type;
+	}
+
+	/**
+	 * Closes the jars opened to read the binary types, unless they belong to
+	 * the name environment cache of the environment. The binary types already
+	 * read are kept, and the jars are opened again by the next reads.
+	 */
+	public synchronized void closeBinaryTypes() {
+		if (binaryTypeBuilder != null) {
+			binaryTypeBuilder.close();
+		}
+	}
+
+	private CtPackage getShadowPackage(String qualifiedName) {
+		CtPackage p = shadowPackages.get(qualifiedName);
+		if (p == null) {
+			p = factory.Core().createPackage();
+			int i = qualifiedName.lastIndexOf(CtPackage.PACKAGE_SEPARATOR);
+			if (i > 0) {
+				p.setSimpleName(qualifiedName.substring(i + 1));
+				getShadowPackage(qualifiedName.substring(0, i)).addPackage(p);
+			} else {
+				p.setSimpleName(qualifiedName.length() == 0 ? CtPackage.TOP_LEVEL_PACKAGE_NAME
+						: qualifiedName);
+			}
+			shadowPackages.put(qualifiedName, p);
+		}
+		return p;
+	}
+
 }
@@ -53,6 +53,21 @@ public interface CtTypeReference<T> extends CtReference,
 	 */
 	CtType<T> getDeclaration();
 
+	/**
+	 * Returns the declaration of the referenced type, as
+	 * {@link #getDeclaration()}. When the type is only in the classpath and
+	 * {@link spoon.compiler.Environment#isUsingClassFileTypes()} is set,
+	 * returns a declaration read from its class file (see
+	 * {@link spoon.reflect.factory.TypeFactory#getBinaryType(CtTypeReference)}).
+	 * In noclasspath mode, when the type is neither in the analyzed source
+	 * files nor in the classpath, returns a shadow type synthesized for it (see
+	 * {@link spoon.reflect.factory.TypeFactory#getShadowType(CtTypeReference)}).
+	 * 
+	 * @return the referenced element, a binary or shadow type, or
+	 *         <code>null</code> if the type is only in the classpath
+	 */
+	CtType<T> getTypeDeclaration();
+
 	/**
 	 * Gets the type that declares the referenced type.
 	 * 
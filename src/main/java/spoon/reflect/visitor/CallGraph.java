@@ -0,0 +1,262 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.reflect.visitor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtType;
+
+/**
+ * A call graph of a model, built by {@link CallGraphBuilder}.
+ *
+ * <p>
+ * The nodes of the graph are the executables of the model (methods,
+ * constructors and lambdas) and its types. A type node stands for the
+ * initialization code of the type: initializer blocks and field
+ * initializers. Each node has an integer id, between 0 and {@link #size()},
+ * and the edges are stored as sorted arrays of ids.
+ *
+ * <p>
+ * A call graph is immutable and can be queried concurrently.
+ */
+public class CallGraph {
+
+	private final CtElement[] nodes;
+
+	private final Map<CtElement, Integer> ids;
+
+	private final int[] calleeOffsets;
+
+	private final int[] callees;
+
+	private final int[] callerOffsets;
+
+	private final int[] callers;
+
+	CallGraph(CtElement[] nodes, Map<CtElement, Integer> ids,
+			int[] calleeOffsets, int[] callees, int[] callerOffsets,
+			int[] callers) {
+		this.nodes = nodes;
+		this.ids = ids;
+		this.calleeOffsets = calleeOffsets;
+		this.callees = callees;
+		this.callerOffsets = callerOffsets;
+		this.callers = callers;
+	}
+
+	/**
+	 * Gets the number of nodes of this graph.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Gets the number of edges of this graph.
+	 */
+	public int getEdgeCount() {
+		return callees.length;
+	}
+
+	/**
+	 * Gets the id of a node.
+	 *
+	 * @param node
+	 *            an executable or a type of the model
+	 * @return the id, or -1 if the element is not a node of this graph
+	 */
+	public int getId(CtElement node) {
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the node (a {@link CtExecutable} or a {@link CtType}) with the
+	 * given id.
+	 */
+	public CtElement getNode(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * Gets the sorted ids of the nodes that may be called by the given node.
+	 */
+	public int[] getCalleeIds(int id) {
+		return slice(callees, calleeOffsets, id);
+	}
+
+	/**
+	 * Gets the sorted ids of the nodes that may call the given node.
+	 */
+	public int[] getCallerIds(int id) {
+		return slice(callers, callerOffsets, id);
+	}
+
+	/**
+	 * Gets the nodes that may be called by the given node.
+	 */
+	public List<CtElement> getCallees(CtElement node) {
+		int id = getId(node);
+		return id < 0 ? new ArrayList<CtElement>() : toNodes(getCalleeIds(id));
+	}
+
+	/**
+	 * Gets the nodes that may call the given node.
+	 */
+	public List<CtElement> getCallers(CtElement node) {
+		int id = getId(node);
+		return id < 0 ? new ArrayList<CtElement>() : toNodes(getCallerIds(id));
+	}
+
+	/**
+	 * Tells if the given node may call the other one directly.
+	 */
+	public boolean isCalling(CtElement caller, CtElement callee) {
+		int from = getId(caller);
+		int to = getId(callee);
+		if (from < 0 || to < 0) {
+			return false;
+		}
+		return binarySearch(callees, calleeOffsets[from],
+				calleeOffsets[from + 1], to);
+	}
+
+	/**
+	 * Computes the ids of all the nodes transitively reachable from the given
+	 * root ids (including the roots).
+	 */
+	public BitSet getReachableIds(int... roots) {
+		BitSet reached = new BitSet(nodes.length);
+		int[] queue = new int[nodes.length];
+		int head = 0;
+		int tail = 0;
+		for (int root : roots) {
+			if (!reached.get(root)) {
+				reached.set(root);
+				queue[tail++] = root;
+			}
+		}
+		while (head < tail) {
+			int id = queue[head++];
+			for (int i = calleeOffsets[id]; i < calleeOffsets[id + 1]; i++) {
+				int callee = callees[i];
+				if (!reached.get(callee)) {
+					reached.set(callee);
+					queue[tail++] = callee;
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Gets all the nodes transitively reachable from the given roots
+	 * (including the roots).
+	 */
+	public List<CtElement> getReachable(Collection<? extends CtElement> roots) {
+		BitSet reached = getReachableIds(toIds(roots));
+		List<CtElement> l = new ArrayList<CtElement>(reached.cardinality());
+		for (int i = reached.nextSetBit(0); i >= 0; i = reached.nextSetBit(i + 1)) {
+			l.add(nodes[i]);
+		}
+		return l;
+	}
+
+	/**
+	 * Gets all the nodes which are not reachable from the given roots. This
+	 * is the basis of a dead code detection, where the roots are the entry
+	 * points of the program (main methods, public API, methods called by
+	 * reflection or overriding library methods called back by the library).
+	 */
+	public List<CtElement> getUnreachable(Collection<? extends CtElement> roots) {
+		BitSet reached = getReachableIds(toIds(roots));
+		List<CtElement> l = new ArrayList<CtElement>(nodes.length
+				- reached.cardinality());
+		for (int i = reached.nextClearBit(0); i < nodes.length; i = reached
+				.nextClearBit(i + 1)) {
+			l.add(nodes[i]);
+		}
+		return l;
+	}
+
+	/**
+	 * Tells if a node is reachable from another one.
+	 */
+	public boolean isReachable(CtElement from, CtElement to) {
+		int source = getId(from);
+		int target = getId(to);
+		if (source < 0 || target < 0) {
+			return false;
+		}
+		return getReachableIds(source).get(target);
+	}
+
+	private int[] toIds(Collection<? extends CtElement> elements) {
+		int[] result = new int[elements.size()];
+		int n = 0;
+		for (CtElement e : elements) {
+			int id = getId(e);
+			if (id >= 0) {
+				result[n++] = id;
+			}
+		}
+		if (n < result.length) {
+			int[] tmp = new int[n];
+			System.arraycopy(result, 0, tmp, 0, n);
+			result = tmp;
+		}
+		return result;
+	}
+
+	private List<CtElement> toNodes(int[] l) {
+		List<CtElement> result = new ArrayList<CtElement>(l.length);
+		for (int id : l) {
+			result.add(nodes[id]);
+		}
+		return result;
+	}
+
+	private static int[] slice(int[] values, int[] offsets, int id) {
+		int length = offsets[id + 1] - offsets[id];
+		int[] result = new int[length];
+		System.arraycopy(values, offsets[id], result, 0, length);
+		return result;
+	}
+
+	private static boolean binarySearch(int[] a, int from, int to, int key) {
+		int low = from;
+		int high = to - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (a[mid] < key) {
+				low = mid + 1;
+			} else if (a[mid] > key) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.reflect.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import spoon.SpoonException;
+import spoon.reflect.code.CtAbstractInvocation;
+import spoon.reflect.code.CtExecutableReferenceExpression;
+import spoon.reflect.code.CtLambda;
+import spoon.reflect.code.CtNewClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtPackage;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypeMember;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtExecutableReference;
+
+/**
+ * Builds the {@link CallGraph} of a whole model with a class hierarchy
+ * analysis: an invocation of a method is linked to the invoked declaration
+ * and to all the methods overriding it in the subtypes of its declaring
+ * type, as given by an {@link OverrideIndex}.
+ *
+ * <p>
+ * The call sites are collected in parallel, one task per compilation unit,
+ * and resolved without any factory lookup. The following edges are also
+ * created: from a constructor to the initialization node of its type, from
+ * a static call or an instantiation to the initialization node of the
+ * target type, from an anonymous class creation to the anonymous class, and
+ * from an executable to the lambdas it declares.
+ */
+public class CallGraphBuilder {
+
+	private final Factory factory;
+
+	private OverrideIndex index;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates a builder for the model of the given factory.
+	 */
+	public CallGraphBuilder(Factory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Sets the override index to be used for resolving the invocations. If
+	 * none is set, an index is built for the whole model.
+	 */
+	public CallGraphBuilder setOverrideIndex(OverrideIndex index) {
+		this.index = index;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used to collect the call sites (defaults to
+	 * the number of available processors).
+	 */
+	public CallGraphBuilder setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Builds the call graph.
+	 */
+	public CallGraph build() {
+		final OverrideIndex overrideIndex = index != null ? index
+				: new OverrideIndex(factory);
+
+		// numbering of the nodes
+		final NodeCollector collector = new NodeCollector();
+		for (CtPackage p : factory.Package().getAllRoots()) {
+			collector.scan(p);
+		}
+		final CtElement[] nodes = collector.nodes
+				.toArray(new CtElement[collector.nodes.size()]);
+
+		// collection of the call sites, per compilation unit
+		Map<Object, List<CtType<?>>> units = new LinkedHashMap<Object, List<CtType<?>>>();
+		for (CtType<?> t : factory.Type().getAll()) {
+			Object key = t;
+			if (t.getPosition() != null
+					&& t.getPosition().getCompilationUnit() != null) {
+				key = t.getPosition().getCompilationUnit();
+			}
+			List<CtType<?>> l = units.get(key);
+			if (l == null) {
+				l = new ArrayList<CtType<?>>(1);
+				units.put(key, l);
+			}
+			l.add(t);
+		}
+		List<Callable<IntList>> tasks = new ArrayList<Callable<IntList>>(
+				units.size());
+		for (final List<CtType<?>> types : units.values()) {
+			tasks.add(new Callable<IntList>() {
+				public IntList call() {
+					EdgeCollector edgeCollector = new EdgeCollector(
+							overrideIndex, collector.ids);
+					for (CtType<?> t : types) {
+						edgeCollector.scan(t);
+					}
+					return edgeCollector.edges;
+				}
+			});
+		}
+		List<IntList> edges = run(tasks);
+
+		// compact adjacency arrays
+		int n = nodes.length;
+		int[] calleeOffsets = new int[n + 1];
+		int[] callees = toAdjacency(edges, n, calleeOffsets, false);
+		int[] callerOffsets = new int[n + 1];
+		int[] callers = toAdjacency(edges, n, callerOffsets, true);
+		return new CallGraph(nodes, collector.ids, calleeOffsets, callees,
+				callerOffsets, callers);
+	}
+
+	private List<IntList> run(List<Callable<IntList>> tasks) {
+		List<IntList> results = new ArrayList<IntList>(tasks.size());
+		if (threads == 1 || tasks.size() < 2) {
+			for (Callable<IntList> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (Exception e) {
+					throw new SpoonException("cannot build call graph", e);
+				}
+			}
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				threads, tasks.size()));
+		try {
+			for (Future<IntList> f : executor.invokeAll(tasks)) {
+				results.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpoonException("call graph construction interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SpoonException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return results;
+	}
+
+	/**
+	 * Builds sorted adjacency arrays without duplicates from the lists of
+	 * (source, target) pairs.
+	 */
+	private static int[] toAdjacency(List<IntList> edges, int n,
+			int[] offsets, boolean reverse) {
+		int from = reverse ? 1 : 0;
+		int to = reverse ? 0 : 1;
+		int[] degrees = new int[n];
+		int total = 0;
+		for (IntList l : edges) {
+			for (int i = 0; i < l.size; i += 2) {
+				degrees[l.values[i + from]]++;
+			}
+			total += l.size / 2;
+		}
+		int[] starts = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			starts[i + 1] = starts[i] + degrees[i];
+		}
+		int[] values = new int[total];
+		int[] fill = new int[n];
+		System.arraycopy(starts, 0, fill, 0, n);
+		for (IntList l : edges) {
+			for (int i = 0; i < l.size; i += 2) {
+				values[fill[l.values[i + from]]++] = l.values[i + to];
+			}
+		}
+		// sort and remove duplicates in place
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			offsets[i] = size;
+			Arrays.sort(values, starts[i], starts[i + 1]);
+			for (int j = starts[i]; j < starts[i + 1]; j++) {
+				if (j == starts[i] || values[j] != values[j - 1]) {
+					values[size++] = values[j];
+				}
+			}
+		}
+		offsets[n] = size;
+		int[] result = new int[size];
+		System.arraycopy(values, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * Numbers the executables and the types of a model.
+	 */
+	private static class NodeCollector extends CtScanner {
+		final List<CtElement> nodes = new ArrayList<CtElement>();
+
+		final Map<CtElement, Integer> ids = new IdentityHashMap<CtElement, Integer>();
+
+		@Override
+		protected void enter(CtElement e) {
+			if (e instanceof CtExecutable || e instanceof CtType) {
+				ids.put(e, nodes.size());
+				nodes.add(e);
+			}
+		}
+	}
+
+	/**
+	 * Collects the edges of a part of the model as (source, target) pairs.
+	 */
+	private static class EdgeCollector extends CtScanner {
+		final OverrideIndex index;
+
+		final Map<CtElement, Integer> ids;
+
+		final IntList edges = new IntList();
+
+		final IntList current = new IntList();
+
+		EdgeCollector(OverrideIndex index, Map<CtElement, Integer> ids) {
+			this.index = index;
+			this.ids = ids;
+		}
+
+		@Override
+		protected void enter(CtElement e) {
+			Integer id = ids.get(e);
+			if (id != null) {
+				if (e instanceof CtLambda) {
+					edge(id);
+				}
+				current.add(id);
+				if (e instanceof CtConstructor) {
+					edge(((CtConstructor<?>) e).getDeclaringType());
+				}
+			}
+			if (e instanceof CtAbstractInvocation) {
+				call(((CtAbstractInvocation<?>) e).getExecutable());
+			} else if (e instanceof CtExecutableReferenceExpression) {
+				call(((CtExecutableReferenceExpression<?, ?>) e)
+						.getExecutable());
+			}
+			if (e instanceof CtNewClass) {
+				edge(((CtNewClass<?>) e).getAnonymousClass());
+			}
+		}
+
+		@Override
+		protected void exit(CtElement e) {
+			if (ids.containsKey(e)) {
+				current.size--;
+			}
+		}
+
+		private void call(CtExecutableReference<?> reference) {
+			if (reference == null || current.size == 0) {
+				return;
+			}
+			for (CtExecutable<?> target : index.getDispatchTargets(reference)) {
+				edge(target);
+				if (target instanceof CtConstructor
+						|| (target instanceof CtTypeMember && ((CtTypeMember) target)
+								.getModifiers().contains(ModifierKind.STATIC))) {
+					edge(((CtTypeMember) target).getDeclaringType());
+				}
+			}
+		}
+
+		private void edge(CtElement target) {
+			if (target == null) {
+				return;
+			}
+			Integer id = ids.get(target);
+			if (id != null) {
+				edge(id);
+			}
+		}
+
+		private void edge(int target) {
+			if (current.size > 0) {
+				edges.add(current.values[current.size - 1]);
+				edges.add(target);
+			}
+		}
+	}
+
+	/**
+	 * A growable array of primitive ints.
+	 */
+	private static class IntList {
+		int[] values = new int[16];
+
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,672 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.reflect.visitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtPackage;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtArrayTypeReference;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtTypeParameterReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+/**
+ * A precomputed index of the overriding relations between the methods of a
+ * model.
+ *
+ * <p>
+ * The index is built in one pass over the types of the model: each method is
+ * compared, by name and erased parameter types, with the methods of the
+ * supertypes of its declaring type. Type arguments given to generic
+ * supertypes are taken into account, so that <code>m(String)</code> in
+ * <code>B extends A&lt;String&gt;</code> overrides <code>m(T)</code> in
+ * <code>A&lt;T&gt;</code>. Methods inherited from a superclass that implement
+ * an interface method of a subclass are also recorded.
+ *
+ * <p>
+ * The index is a snapshot of the model: it has to be rebuilt when the type
+ * hierarchy or the methods change. Once built, it is never modified and can
+ * be queried concurrently.
+ */
+public class OverrideIndex {
+
+	private static final String OBJECT = "java.lang.Object";
+
+	private final Map<String, TypeInfo> types = new HashMap<String, TypeInfo>();
+
+	private final Map<CtType<?>, TypeInfo> infos = new IdentityHashMap<CtType<?>, TypeInfo>();
+
+	private final Map<String, List<TypeInfo>> externalSubtypes = new HashMap<String, List<TypeInfo>>();
+
+	private final Map<CtMethod<?>, List<CtMethod<?>>> overriding = new IdentityHashMap<CtMethod<?>, List<CtMethod<?>>>();
+
+	private final Map<CtMethod<?>, List<CtMethod<?>>> overridden = new IdentityHashMap<CtMethod<?>, List<CtMethod<?>>>();
+
+	/**
+	 * For the methods that implement an interface method on behalf of a
+	 * subclass, the subclasses which inherit them.
+	 */
+	private final Map<CtMethod<?>, List<CtType<?>>> inheritors = new IdentityHashMap<CtMethod<?>, List<CtType<?>>>();
+
+	/**
+	 * Builds the index for all the types (including nested, local and
+	 * anonymous types) of the given factory.
+	 */
+	public OverrideIndex(Factory factory) {
+		this(Query.<CtType<?>> getElements(factory,
+				new TypeFilter<CtType<?>>(CtType.class)));
+	}
+
+	/**
+	 * Builds the index for the given types. Supertypes which are not part of
+	 * the given collection are considered as external (library) types.
+	 */
+	public OverrideIndex(Collection<? extends CtType<?>> allTypes) {
+		for (CtType<?> t : allTypes) {
+			TypeInfo info = new TypeInfo(t);
+			infos.put(t, info);
+			types.put(t.getQualifiedName(), info);
+		}
+		for (TypeInfo info : infos.values()) {
+			info.bindings = ownBindings(info.type);
+		}
+		for (TypeInfo info : infos.values()) {
+			computeAncestors(info);
+		}
+		for (TypeInfo info : infos.values()) {
+			linkDeclaredMethods(info);
+		}
+		for (TypeInfo info : infos.values()) {
+			if (info.type instanceof CtClass) {
+				linkInheritedImplementations(info);
+			}
+		}
+	}
+
+	/**
+	 * Gets an indexed type from its qualified name.
+	 *
+	 * @return the type or null if it is not part of the index
+	 */
+	public CtType<?> getType(String qualifiedName) {
+		TypeInfo info = types.get(qualifiedName);
+		return info == null ? null : info.type;
+	}
+
+	/**
+	 * Gets the direct subtypes of the given type which are part of the index.
+	 */
+	public List<CtType<?>> getSubtypes(CtType<?> type) {
+		TypeInfo info = infos.get(type);
+		if (info == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(info.subtypes);
+	}
+
+	/**
+	 * Tells if a type is equal to or a subtype of another indexed type.
+	 */
+	public boolean isSubtypeOf(CtType<?> subType, CtType<?> superType) {
+		if (subType == superType) {
+			return true;
+		}
+		TypeInfo info = infos.get(subType);
+		TypeInfo superInfo = infos.get(superType);
+		return info != null && superInfo != null
+				&& info.ancestorSet.contains(superInfo);
+	}
+
+	/**
+	 * Gets all the methods of the index that override the given method,
+	 * directly or transitively.
+	 */
+	public List<CtMethod<?>> getOverridingMethods(CtMethod<?> method) {
+		return get(overriding, method);
+	}
+
+	/**
+	 * Gets all the methods of the index that are overridden by the given
+	 * method, directly or transitively.
+	 */
+	public List<CtMethod<?>> getOverriddenMethods(CtMethod<?> method) {
+		return get(overridden, method);
+	}
+
+	/**
+	 * Tells if the first method overrides the second one.
+	 */
+	public boolean isOverriding(CtMethod<?> method, CtMethod<?> overriddenMethod) {
+		List<CtMethod<?>> l = overridden.get(method);
+		if (l == null) {
+			return false;
+		}
+		for (CtMethod<?> m : l) {
+			if (m == overriddenMethod) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the declaration of the executable referenced by the given
+	 * reference, looking up the supertypes for inherited methods. Unlike
+	 * {@link CtExecutableReference#getDeclaration()}, this lookup does not
+	 * query the factory.
+	 *
+	 * @return the declaration or null if it is not part of the index
+	 */
+	public CtExecutable<?> getDeclaration(CtExecutableReference<?> reference) {
+		if (reference.getDeclaringType() == null) {
+			return null;
+		}
+		TypeInfo info = types.get(rawName(reference.getDeclaringType()));
+		if (info == null) {
+			return null;
+		}
+		String key = signatureKey(reference);
+		CtExecutable<?> e = info.find(key, reference);
+		if (e != null || reference.isConstructor()) {
+			return e;
+		}
+		for (Ancestor a : info.ancestors) {
+			e = a.info.find(key, reference);
+			if (e != null) {
+				return e;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the executables that may be called at runtime by an invocation of
+	 * the given executable reference, using a class hierarchy analysis: the
+	 * referenced declaration when it has a body, and all its concrete
+	 * overriding methods declared in subtypes of the referenced declaring
+	 * type.
+	 *
+	 * <p>
+	 * When the referenced executable is declared by an external type, the
+	 * indexed methods with the same name and number of parameters, declared
+	 * in subtypes of that external type, are returned.
+	 */
+	public List<CtExecutable<?>> getDispatchTargets(
+			CtExecutableReference<?> reference) {
+		List<CtExecutable<?>> targets = new ArrayList<CtExecutable<?>>();
+		CtExecutable<?> decl = getDeclaration(reference);
+		if (decl == null) {
+			if (reference.getDeclaringType() == null
+					|| reference.isConstructor()) {
+				return targets;
+			}
+			String owner = rawName(reference.getDeclaringType());
+			Collection<TypeInfo> candidates = OBJECT.equals(owner) ? infos
+					.values() : externalSubtypes.get(owner);
+			if (candidates == null) {
+				return targets;
+			}
+			int arity = reference.getParameters().size();
+			for (TypeInfo info : candidates) {
+				for (CtMethod<?> m : info.methods(reference.getSimpleName())) {
+					if (m.getParameters().size() == arity && isOverridable(m)
+							&& m.getBody() != null) {
+						targets.add(m);
+					}
+				}
+			}
+			return targets;
+		}
+		if (!(decl instanceof CtMethod) || !isOverridable((CtMethod<?>) decl)) {
+			targets.add(decl);
+			return targets;
+		}
+		if (decl.getBody() != null) {
+			targets.add(decl);
+		}
+		TypeInfo receiver = types.get(rawName(reference.getDeclaringType()));
+		for (CtMethod<?> m : getOverridingMethods((CtMethod<?>) decl)) {
+			if (m.getBody() != null
+					&& (receiver == null || isInheritedBy(m, receiver.type))) {
+				targets.add(m);
+			}
+		}
+		return targets;
+	}
+
+	private boolean isInheritedBy(CtMethod<?> method, CtType<?> type) {
+		if (isSubtypeOf(method.getDeclaringType(), type)) {
+			return true;
+		}
+		List<CtType<?>> l = inheritors.get(method);
+		if (l != null) {
+			for (CtType<?> t : l) {
+				if (isSubtypeOf(t, type)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List<CtMethod<?>> get(
+			Map<CtMethod<?>, List<CtMethod<?>>> map, CtMethod<?> method) {
+		List<CtMethod<?>> l = map.get(method);
+		if (l == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(l);
+	}
+
+	private void link(CtMethod<?> method, CtMethod<?> overriddenMethod) {
+		add(overridden, method, overriddenMethod);
+		add(overriding, overriddenMethod, method);
+	}
+
+	private static void add(Map<CtMethod<?>, List<CtMethod<?>>> map,
+			CtMethod<?> key, CtMethod<?> value) {
+		List<CtMethod<?>> l = map.get(key);
+		if (l == null) {
+			l = new ArrayList<CtMethod<?>>(2);
+			map.put(key, l);
+		}
+		l.add(value);
+	}
+
+	private void computeAncestors(TypeInfo info) {
+		Set<TypeInfo> visited = new HashSet<TypeInfo>();
+		visited.add(info);
+		boolean superclassPath = info.type instanceof CtClass;
+		walk(info, info, info.bindings, visited, superclassPath);
+		for (Ancestor a : info.ancestors) {
+			info.ancestorSet.add(a.info);
+		}
+		for (String external : info.externals) {
+			List<TypeInfo> l = externalSubtypes.get(external);
+			if (l == null) {
+				l = new ArrayList<TypeInfo>();
+				externalSubtypes.put(external, l);
+			}
+			l.add(info);
+		}
+	}
+
+	private void walk(TypeInfo root, TypeInfo current,
+			Map<String, String> context, Set<TypeInfo> visited,
+			boolean superclassPath) {
+		List<CtTypeReference<?>> supers = new ArrayList<CtTypeReference<?>>();
+		CtTypeReference<?> superclass = current.type.getSuperclass();
+		if (superclass != null) {
+			supers.add(superclass);
+		}
+		supers.addAll(current.type.getSuperInterfaces());
+		for (CtTypeReference<?> ref : supers) {
+			String name = rawName(ref);
+			TypeInfo s = types.get(name);
+			if (s == null) {
+				root.externals.add(name);
+				continue;
+			}
+			if (current == root) {
+				s.subtypes.add(root.type);
+			}
+			if (!visited.add(s)) {
+				continue;
+			}
+			Map<String, String> bindings = new HashMap<String, String>(
+					s.bindings);
+			List<CtTypeReference<?>> formals = s.type
+					.getFormalTypeParameters();
+			List<CtTypeReference<?>> args = ref.getActualTypeArguments();
+			if (formals.size() == args.size()) {
+				for (int i = 0; i < formals.size(); i++) {
+					bindings.put(formals.get(i).getSimpleName(),
+							erasure(args.get(i), null, context));
+				}
+			}
+			Ancestor a = new Ancestor(s, bindings);
+			root.ancestors.add(a);
+			boolean isSuperclass = superclassPath && ref == superclass;
+			if (isSuperclass) {
+				root.superclasses.add(a);
+			}
+			walk(root, s, bindings, visited, isSuperclass);
+		}
+	}
+
+	private void linkDeclaredMethods(TypeInfo info) {
+		for (CtMethod<?> m : info.type.getMethods()) {
+			if (!isOverridable(m)) {
+				continue;
+			}
+			List<String> erasure = null;
+			for (Ancestor a : info.ancestors) {
+				for (CtMethod<?> n : a.info.methods(m.getSimpleName())) {
+					if (!canBeOverriddenFrom(n, info.type)) {
+						continue;
+					}
+					if (erasure == null) {
+						erasure = erasure(m, info.bindings);
+					}
+					if (erasure.equals(erasure(n, a.bindings))
+							|| erasure.equals(erasure(n, a.info.bindings))) {
+						link(m, n);
+					}
+				}
+			}
+		}
+	}
+
+	private void linkInheritedImplementations(TypeInfo info) {
+		for (Ancestor a : info.ancestors) {
+			if (!a.info.type.isInterface()) {
+				continue;
+			}
+			for (CtMethod<?> n : a.info.type.getMethods()) {
+				if (!isOverridable(n) || isImplementedIn(n, info)) {
+					continue;
+				}
+				List<String> erasure = erasure(n, a.bindings);
+				for (Ancestor s : info.superclasses) {
+					CtMethod<?> m = findInherited(s, n.getSimpleName(),
+							erasure);
+					if (m != null) {
+						if (!isOverriding(m, n)) {
+							link(m, n);
+						}
+						List<CtType<?>> l = inheritors.get(m);
+						if (l == null) {
+							l = new ArrayList<CtType<?>>(1);
+							inheritors.put(m, l);
+						}
+						l.add(info.type);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private boolean isImplementedIn(CtMethod<?> method, TypeInfo info) {
+		for (CtMethod<?> m : getOverridingMethods(method)) {
+			TypeInfo declaring = infos.get(m.getDeclaringType());
+			if (declaring == info) {
+				return true;
+			}
+			for (Ancestor s : info.superclasses) {
+				if (s.info == declaring) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private CtMethod<?> findInherited(Ancestor a, String name,
+			List<String> erasure) {
+		for (CtMethod<?> m : a.info.methods(name)) {
+			if (isOverridable(m) && erasure.equals(erasure(m, a.bindings))) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isOverridable(CtMethod<?> m) {
+		return !m.hasModifier(ModifierKind.STATIC)
+				&& !m.hasModifier(ModifierKind.PRIVATE);
+	}
+
+	private static boolean canBeOverriddenFrom(CtMethod<?> m, CtType<?> subType) {
+		if (!isOverridable(m)) {
+			return false;
+		}
+		if (m.getVisibility() != null || m.getDeclaringType().isInterface()) {
+			return true;
+		}
+		// package-private
+		return getPackage(m.getDeclaringType()) == getPackage(subType);
+	}
+
+	private static CtPackage getPackage(CtType<?> type) {
+		return type.getParent(CtPackage.class);
+	}
+
+	private List<String> erasure(CtExecutable<?> e, Map<String, String> bindings) {
+		List<CtParameter<?>> params = e.getParameters();
+		List<String> l = new ArrayList<String>(params.size());
+		for (CtParameter<?> p : params) {
+			l.add(erasure(p.getType(), e, bindings));
+		}
+		return l;
+	}
+
+	/**
+	 * Computes the erasure of a type reference, where the type variables are
+	 * resolved with the formal type parameters of the given executable (if
+	 * any), then with the given bindings.
+	 */
+	private String erasure(CtTypeReference<?> ref, CtExecutable<?> e,
+			Map<String, String> bindings) {
+		if (ref == null) {
+			return OBJECT;
+		}
+		if (ref instanceof CtArrayTypeReference) {
+			return erasure(((CtArrayTypeReference<?>) ref).getComponentType(),
+					e, bindings) + "[]";
+		}
+		if (ref instanceof CtTypeParameterReference) {
+			CtTypeParameterReference p = (CtTypeParameterReference) ref;
+			if (e instanceof CtMethod || e instanceof CtConstructor) {
+				List<CtTypeReference<?>> formals = e instanceof CtMethod ? ((CtMethod<?>) e)
+						.getFormalTypeParameters() : ((CtConstructor<?>) e)
+						.getFormalTypeParameters();
+				for (CtTypeReference<?> f : formals) {
+					if (f != ref && f.getSimpleName().equals(p.getSimpleName())) {
+						return erasure(f, null, bindings);
+					}
+				}
+			}
+			String bound = bindings.get(p.getSimpleName());
+			if (bound != null && !"?".equals(p.getSimpleName())) {
+				return bound;
+			}
+			if (!p.getBounds().isEmpty() && p.isUpper()) {
+				return erasure(p.getBounds().get(0), e, bindings);
+			}
+			return OBJECT;
+		}
+		return rawName(ref);
+	}
+
+	private Map<String, String> ownBindings(CtType<?> type) {
+		Map<String, String> bindings;
+		CtType<?> declaring = type.getDeclaringType();
+		if (declaring != null && declaring != type) {
+			bindings = new HashMap<String, String>(ownBindings(declaring));
+		} else {
+			bindings = new HashMap<String, String>();
+		}
+		for (CtTypeReference<?> f : type.getFormalTypeParameters()) {
+			// a type parameter hides the one of an enclosing type
+			bindings.remove(f.getSimpleName());
+			bindings.put(f.getSimpleName(), erasure(f, null, bindings));
+		}
+		return bindings;
+	}
+
+	/**
+	 * Gets the qualified name of a type reference, without type arguments nor
+	 * type annotations.
+	 */
+	static String rawName(CtTypeReference<?> ref) {
+		if (ref instanceof CtArrayTypeReference) {
+			return rawName(((CtArrayTypeReference<?>) ref).getComponentType())
+					+ "[]";
+		}
+		if (ref.getDeclaringType() != null) {
+			return rawName(ref.getDeclaringType()) + CtType.INNERTTYPE_SEPARATOR
+					+ ref.getSimpleName();
+		}
+		if (ref.getPackage() != null
+				&& !CtPackage.TOP_LEVEL_PACKAGE_NAME.equals(ref.getPackage()
+						.getSimpleName())) {
+			return ref.getPackage().getSimpleName()
+					+ CtPackage.PACKAGE_SEPARATOR + ref.getSimpleName();
+		}
+		return ref.getSimpleName();
+	}
+
+	private static String signatureKey(CtExecutableReference<?> reference) {
+		StringBuilder sb = new StringBuilder(reference.getSimpleName());
+		sb.append('(');
+		for (CtTypeReference<?> p : reference.getParameters()) {
+			appendKey(sb, p);
+			sb.append(',');
+		}
+		return sb.append(')').toString();
+	}
+
+	private static String signatureKey(CtExecutable<?> e, String name) {
+		StringBuilder sb = new StringBuilder(name);
+		sb.append('(');
+		for (CtParameter<?> p : e.getParameters()) {
+			appendKey(sb, p.getType());
+			sb.append(',');
+		}
+		return sb.append(')').toString();
+	}
+
+	private static void appendKey(StringBuilder sb, CtTypeReference<?> ref) {
+		if (ref == null) {
+			sb.append('?');
+		} else if (ref instanceof CtTypeParameterReference) {
+			sb.append(ref.getSimpleName());
+		} else if (ref instanceof CtArrayTypeReference) {
+			appendKey(sb, ((CtArrayTypeReference<?>) ref).getComponentType());
+			sb.append("[]");
+		} else {
+			sb.append(rawName(ref));
+		}
+	}
+
+	private static class Ancestor {
+		final TypeInfo info;
+
+		final Map<String, String> bindings;
+
+		Ancestor(TypeInfo info, Map<String, String> bindings) {
+			this.info = info;
+			this.bindings = bindings;
+		}
+	}
+
+	private static class TypeInfo {
+		final CtType<?> type;
+
+		Map<String, String> bindings;
+
+		final List<Ancestor> ancestors = new ArrayList<Ancestor>();
+
+		final List<Ancestor> superclasses = new ArrayList<Ancestor>();
+
+		final Set<TypeInfo> ancestorSet = new HashSet<TypeInfo>();
+
+		final Set<String> externals = new LinkedHashSet<String>();
+
+		final List<CtType<?>> subtypes = new ArrayList<CtType<?>>();
+
+		private Map<String, List<CtMethod<?>>> methodsByName;
+
+		private Map<String, CtExecutable<?>> executablesByKey;
+
+		TypeInfo(CtType<?> type) {
+			this.type = type;
+		}
+
+		synchronized List<CtMethod<?>> methods(String name) {
+			if (methodsByName == null) {
+				methodsByName = new HashMap<String, List<CtMethod<?>>>();
+				for (CtMethod<?> m : type.getMethods()) {
+					List<CtMethod<?>> l = methodsByName.get(m.getSimpleName());
+					if (l == null) {
+						l = new ArrayList<CtMethod<?>>(1);
+						methodsByName.put(m.getSimpleName(), l);
+					}
+					l.add(m);
+				}
+			}
+			List<CtMethod<?>> l = methodsByName.get(name);
+			if (l == null) {
+				return Collections.emptyList();
+			}
+			return l;
+		}
+
+		synchronized CtExecutable<?> find(String key,
+				CtExecutableReference<?> reference) {
+			if (executablesByKey == null) {
+				executablesByKey = new HashMap<String, CtExecutable<?>>();
+				for (CtMethod<?> m : type.getMethods()) {
+					executablesByKey.put(signatureKey(m, m.getSimpleName()), m);
+				}
+				if (type instanceof CtClass) {
+					for (CtConstructor<?> c : ((CtClass<?>) type)
+							.getConstructors()) {
+						executablesByKey.put(signatureKey(c,
+								CtExecutableReference.CONSTRUCTOR_NAME), c);
+					}
+				}
+			}
+			CtExecutable<?> e = executablesByKey.get(key);
+			if (e != null || reference.isConstructor()) {
+				return e;
+			}
+			// references built by hand may not match the declared parameter
+			// types exactly: fall back on a unique name and arity match
+			int arity = reference.getParameters().size();
+			for (CtMethod<?> m : methods(reference.getSimpleName())) {
+				if (m.getParameters().size() == arity) {
+					if (e != null) {
+						return null;
+					}
+					e = m;
+				}
+			}
+			return e;
+		}
+	}
+}
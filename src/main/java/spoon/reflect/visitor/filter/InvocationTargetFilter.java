@@ -0,0 +1,75 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.reflect.visitor.filter;
+
+import java.util.regex.Pattern;
+
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.Filter;
+
+/**
+ * Filters the invocations with regular expressions on the qualified name of
+ * the declaring type of the invoked executable and on its simple name,
+ * without printing them. Example:
+ * 
+ * <pre>
+ * List&lt;CtInvocation&lt;?&gt;&gt; prints = type.getElements(new InvocationTargetFilter(
+ * 		&quot;java\\.io\\.PrintStream&quot;, &quot;print(ln)?&quot;));
+ * </pre>
+ */
+public class InvocationTargetFilter implements Filter<CtInvocation<?>> {
+	private final Pattern typePattern;
+
+	private final Pattern namePattern;
+
+	/**
+	 * Creates the filter.
+	 * 
+	 * @param typeRegex
+	 *            the regular expression that the qualified name of the
+	 *            declaring type must match, or null for any type
+	 * @param nameRegex
+	 *            the regular expression that the simple name of the invoked
+	 *            executable must match, or null for any name
+	 */
+	public InvocationTargetFilter(String typeRegex, String nameRegex) {
+		this.typePattern = typeRegex == null ? null : Pattern.compile(typeRegex);
+		this.namePattern = nameRegex == null ? null : Pattern.compile(nameRegex);
+	}
+
+	public boolean matches(CtInvocation<?> invocation) {
+		CtExecutableReference<?> executable = invocation.getExecutable();
+		if (executable == null) {
+			return false;
+		}
+		if (namePattern != null
+				&& (executable.getSimpleName() == null || !namePattern.matcher(
+						executable.getSimpleName()).matches())) {
+			return false;
+		}
+		if (typePattern != null) {
+			CtTypeReference<?> type = executable.getDeclaringType();
+			if (type == null
+					|| !typePattern.matcher(type.getQualifiedName()).matches()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,44 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.reflect.visitor.filter;
+
+import spoon.reflect.code.CtLiteral;
+import spoon.reflect.visitor.Filter;
+
+/**
+ * This simple filter matches the literals having a given value (compared
+ * with {@link Object#equals(Object)}), without printing them.
+ */
+public class LiteralFilter implements Filter<CtLiteral<?>> {
+	private final Object value;
+
+	/**
+	 * Creates the filter.
+	 * 
+	 * @param value
+	 *            the value of the matching literals (can be null for the
+	 *            null literal)
+	 */
+	public LiteralFilter(Object value) {
+		this.value = value;
+	}
+
+	public boolean matches(CtLiteral<?> literal) {
+		Object v = literal.getValue();
+		return value == null ? v == null : value.equals(v);
+	}
+}
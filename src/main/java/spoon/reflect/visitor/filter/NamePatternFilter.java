@@ -0,0 +1,53 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.reflect.visitor.filter;
+
+import java.util.regex.Pattern;
+
+import spoon.reflect.declaration.CtNamedElement;
+import spoon.reflect.visitor.Filter;
+
+/**
+ * Filters named elements with a regular expression on their simple name,
+ * without printing them. Example:
+ * 
+ * <pre>
+ * List&lt;CtMethod&lt;?&gt;&gt; getters = type.getElements(
+ * 		new NamePatternFilter&lt;CtMethod&lt;?&gt;&gt;(&quot;get.*&quot;));
+ * </pre>
+ */
+public class NamePatternFilter<T extends CtNamedElement> implements Filter<T> {
+	private final Pattern pattern;
+
+	/**
+	 * Creates the filter.
+	 * 
+	 * @param regex
+	 *            the regular expression that the whole simple name must match
+	 */
+	public NamePatternFilter(String regex) {
+		if (regex == null) {
+			throw new IllegalArgumentException();
+		}
+		this.pattern = Pattern.compile(regex);
+	}
+
+	public boolean matches(T element) {
+		return element.getSimpleName() != null
+				&& pattern.matcher(element.getSimpleName()).matches();
+	}
+}
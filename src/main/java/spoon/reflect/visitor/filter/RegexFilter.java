@@ -3,6 +3,7 @@ package spoon.reflect.visitor.filter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.visitor.Filter;
 
@@ -13,23 +14,54 @@ import spoon.reflect.visitor.Filter;
  * CtFieldAccess thisAccess = type.getElements(new ExpressionFilter(&quot;this&quot;))
  * 		.get(0);
  * </pre>
+ * 
+ * By default, the code is obtained by pretty-printing each visited element,
+ * which is expensive on large subtrees. When possible, prefer the structural
+ * filters ({@link NamePatternFilter}, {@link ReferenceNamePatternFilter},
+ * {@link LiteralFilter}, {@link InvocationTargetFilter}), or match on the
+ * original source code with {@link #RegexFilter(String, boolean)}.
  */
 public class RegexFilter<E extends CtElement> implements Filter<E> {
 	private final Pattern regex;
 
+	private final boolean sourceText;
+
 	public RegexFilter(String regex) {
+		this(regex, false);
+	}
+
+	/**
+	 * Creates the filter.
+	 * 
+	 * @param regex
+	 *            the regular expression that the whole code must match
+	 * @param sourceText
+	 *            true to match the original source code of the elements
+	 *            (see {@link SourcePosition#getSourceText()}), which does not
+	 *            print anything, and falls back to the printed code for the
+	 *            elements without source code
+	 */
+	public RegexFilter(String regex, boolean sourceText) {
 		if (regex == null) {
 			throw new IllegalArgumentException();
 		}
 		this.regex = Pattern.compile(regex);
+		this.sourceText = sourceText;
 	}
 
 	public boolean matches(E element) {
-		Matcher m = regex.matcher(element.toString());
+		String code = null;
+		if (sourceText && element.getPosition() != null) {
+			code = element.getPosition().getSourceText();
+		}
+		if (code == null) {
+			code = element.toString();
+		}
+		Matcher m = regex.matcher(code);
 		return m.matches();
 	}
 
 	public Class<CtElement> getType() {
 		return CtElement.class;
 	}
-}
\ No newline at end of file
+}
@@ -172,6 +172,7 @@ import spoon.support.reflect.reference.CtFieldReferenceImpl;
 import spoon.support.reflect.reference.CtLocalVariableReferenceImpl;
 import spoon.support.reflect.reference.CtPackageReferenceImpl;
 import spoon.support.reflect.reference.CtParameterReferenceImpl;
+import spoon.support.reflect.reference.CtSharedPackageReferenceImpl;
 import spoon.support.reflect.reference.CtTypeParameterReferenceImpl;
 import spoon.support.reflect.reference.CtTypeReferenceImpl;
 import spoon.support.util.RtHelper;
@@ -195,7 +196,13 @@ public class DefaultCoreFactory implements CoreFactory, Serializable {
 	}
 
 	public <T> T clone(T object) {
-		return clone(object, new Stack<CtElement>());
+		T result = clone(object, new Stack<CtElement>());
+		if (result instanceof CtElement && getMainFactory() != null) {
+			// the annotations are copied without addAnnotation: they are
+			// indexed once the clone is added to the model
+			getMainFactory().Annotation().indexAnnotations((CtElement) result);
+		}
+		return result;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -207,6 +214,10 @@ public class DefaultCoreFactory implements CoreFactory, Serializable {
 			if (!(object instanceof CtElement || object instanceof CtReference)) {
 				return object;
 			}
+			// the shared references cannot be modified
+			if (object instanceof CtSharedPackageReferenceImpl) {
+				return object;
+			}
 			// RP: this should be done first or removed?
 			if (object instanceof Cloneable) {
 				return (T) object.getClass().getMethod("clone").invoke(object);
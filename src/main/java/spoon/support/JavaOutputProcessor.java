@@ -35,6 +35,8 @@ import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
 import spoon.reflect.visitor.PrettyPrinter;
+import spoon.support.compiler.PrintedSourceCache;
+import spoon.support.util.Metrics;
 
 //import spoon.reflect.cu.CompilationUnit;
 
@@ -132,6 +134,9 @@ public class JavaOutputProcessor extends AbstractProcessor<CtType<?>>
 		List<CtType<?>> toBePrinted = new ArrayList<CtType<?>>();
 		toBePrinted.add(element);
 
+		Metrics metrics = getEnvironment().getMetrics();
+		long start = metrics.start();
+
 
 		printer.calculate(cu, toBePrinted);
 		
@@ -184,7 +189,9 @@ public class JavaOutputProcessor extends AbstractProcessor<CtType<?>>
 				printedFiles.add(file);
 			}
 			stream = new PrintStream(file);
-			stream.print(printer.getResult());
+			String result = printer.getResult();
+			stream.print(result);
+			cachePrintedSource(cu, element, result);
 			for (CtType<?> t : toBePrinted) {
 				lineNumberMappings.put(t.getQualifiedName(),
 						printer.getLineNumberMapping());
@@ -198,7 +205,24 @@ public class JavaOutputProcessor extends AbstractProcessor<CtType<?>>
 			if (stream != null)
 				stream.close();
 		}
+		metrics.stop(Metrics.PRINT, element.getQualifiedName(), start);
+
+	}
 
+	/**
+	 * Keeps the printed source of a type for the compiler, if it is the only
+	 * type of its compilation unit and if it was printed by the default
+	 * printer, so that it is what the compiler would print.
+	 */
+	private void cachePrintedSource(CompilationUnit cu, CtType<?> element,
+			String result) {
+		PrintedSourceCache cache = getEnvironment().getPrintedSourceCache();
+		if (cache.isEnabled() && cu != null
+				&& printer.getClass() == DefaultJavaPrettyPrinter.class
+				&& cu.getDeclaredTypes().size() == 1
+				&& cu.getDeclaredTypes().get(0) == element) {
+			cache.put(cu, result.toCharArray());
+		}
 	}
 
 	/**
@@ -28,7 +28,7 @@ import spoon.processing.Processor;
 import spoon.processing.Severity;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.factory.Factory;
-import spoon.support.util.Timer;
+import spoon.support.util.Metrics;
 import spoon.support.visitor.ProcessingVisitor;
 
 /**
@@ -123,9 +123,7 @@ public class QueueProcessingManager implements ProcessingManager {
 	}
 
 	public void process() {
-		Timer.start("process");
 		process(getFactory().Package().getAllRoots());
-		Timer.stop("process");
 	}
 
 	public void process(Collection<? extends CtElement> elements) {
@@ -136,12 +134,18 @@ public class QueueProcessingManager implements ProcessingManager {
 						p.getClass().getName());
 			}
 			current = p;
+			Metrics metrics = getFactory().getEnvironment().getMetrics();
+			long start = metrics.start();
+			long visited = getVisitor().getVisitedCount();
 			p.initProperties(AbstractProcessor.loadProperties(p));
 			p.init();
 			p.process();
 			for (CtElement e : new ArrayList<CtElement>(elements))
 				process(e, p);
 			p.processingDone();
+			metrics.stop(Metrics.PROCESSOR, p.getClass().getName(), start);
+			metrics.increment(Metrics.VISITS, p.getClass().getName(),
+					getVisitor().getVisitedCount() - visited);
 		}
 	}
 
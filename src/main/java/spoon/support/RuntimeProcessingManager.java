@@ -27,7 +27,7 @@ import spoon.processing.Severity;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtNamedElement;
 import spoon.reflect.factory.Factory;
-import spoon.support.util.Timer;
+import spoon.support.util.Metrics;
 import spoon.support.visitor.ProcessingVisitor;
 
 /**
@@ -124,9 +124,7 @@ public class RuntimeProcessingManager implements ProcessingManager {
 	}
 
 	public void process() {
-		Timer.start("process");
 		process(getFactory().Package().getAllRoots());
-		Timer.stop("process");
 	}
 
 	public void process(Collection<? extends CtElement> elements) {
@@ -144,10 +142,14 @@ public class RuntimeProcessingManager implements ProcessingManager {
 		getFactory().getEnvironment().debugMessage(
 				"processing with '" + processor.getClass().getName() + "'...");
 		current = processor;
-		Timer.start(processor.getClass().getName());
+		Metrics metrics = getFactory().getEnvironment().getMetrics();
+		long start = metrics.start();
+		long visited = getVisitor().getVisitedCount();
 		for (CtElement e : elements)
 			process(e, processor);
-		Timer.stop(processor.getClass().getName());
+		metrics.stop(Metrics.PROCESSOR, processor.getClass().getName(), start);
+		metrics.increment(Metrics.VISITS, processor.getClass().getName(),
+				getVisitor().getVisitedCount() - visited);
 	}
 
 	public void process(CtElement element) {
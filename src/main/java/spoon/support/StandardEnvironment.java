@@ -50,7 +50,10 @@ import spoon.reflect.declaration.CtType;
 import spoon.reflect.declaration.ParentNotInitializedException;
 import spoon.reflect.factory.Factory;
 import spoon.support.compiler.FileSystemFolder;
+import spoon.support.compiler.PrintedSourceCache;
+import spoon.support.compiler.jdt.NameEnvironmentCache;
 import spoon.support.processing.XmlProcessorProperties;
+import spoon.support.util.Metrics;
 
 /**
  * This class implements a simple Spoon environment that reports messages in the
@@ -97,6 +100,10 @@ public class StandardEnvironment implements Serializable, Environment {
 
 	private boolean generateJavadoc = false;
 
+	private int compilationThreads = 1;
+
+	private transient NameEnvironmentCache nameEnvironmentCache;
+
 	/**
 	 * Creates a new environment with a <code>null</code> default file
 	 * generator.
@@ -175,6 +182,24 @@ public class StandardEnvironment implements Serializable, Environment {
 		return debug;
 	}
 
+	private transient Metrics metrics;
+
+	public synchronized Metrics getMetrics() {
+		if (metrics == null) {
+			metrics = new Metrics();
+		}
+		return metrics;
+	}
+
+	private transient PrintedSourceCache printedSourceCache;
+
+	public synchronized PrintedSourceCache getPrintedSourceCache() {
+		if (printedSourceCache == null) {
+			printedSourceCache = new PrintedSourceCache();
+		}
+		return printedSourceCache;
+	}
+
 	/**
 	 * Tells if the processing is stopped, generally because one of the
 	 * processors called {@link #setProcessingStopped(boolean)} after reporting
@@ -493,4 +518,39 @@ public class StandardEnvironment implements Serializable, Environment {
 	public void setGenerateJavadoc(boolean generateJavadoc) {
 		this.generateJavadoc = generateJavadoc;
 	}
+
+	@Override
+	public int getCompilationThreads() {
+		return compilationThreads;
+	}
+
+	@Override
+	public void setCompilationThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.compilationThreads = threads;
+	}
+
+	@Override
+	public NameEnvironmentCache getNameEnvironmentCache() {
+		return nameEnvironmentCache;
+	}
+
+	@Override
+	public void setNameEnvironmentCache(NameEnvironmentCache cache) {
+		this.nameEnvironmentCache = cache;
+	}
+
+	boolean useClassFileTypes = false;
+
+	@Override
+	public boolean isUsingClassFileTypes() {
+		return useClassFileTypes;
+	}
+
+	@Override
+	public void useClassFileTypes(boolean b) {
+		useClassFileTypes = b;
+	}
 }
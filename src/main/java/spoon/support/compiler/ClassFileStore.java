@@ -0,0 +1,261 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import spoon.SpoonException;
+
+/**
+ * An in-memory store of class files, filled by
+ * {@link spoon.SpoonModelBuilder#compile()} and
+ * {@link spoon.SpoonModelBuilder#compileInputSources()} when it is set with
+ * {@link spoon.SpoonModelBuilder#setClassFileStore(ClassFileStore)}, instead
+ * of writing the class files to the destination directory.
+ *
+ * <p>
+ * The class files are indexed by the binary names of their classes (for
+ * instance <code>p.A$B</code>). They can be read as a map with
+ * {@link #getClassFiles()} or loaded with {@link #createClassLoader(ClassLoader)}.
+ * When a spill directory is given, the class files that do not fit in the
+ * memory threshold are written to this directory and read back on demand.
+ */
+public class ClassFileStore {
+
+	private final Map<String, byte[]> classFiles = new LinkedHashMap<String, byte[]>();
+
+	private final Set<String> spilled = new LinkedHashSet<String>();
+
+	private final long memoryThreshold;
+
+	private final File spillDirectory;
+
+	private long memorySize;
+
+	/**
+	 * Creates a store which keeps all the class files in memory.
+	 */
+	public ClassFileStore() {
+		this(Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Creates a store which writes the class files to the given directory
+	 * once the total size of the class files held in memory exceeds the given
+	 * threshold.
+	 *
+	 * @param memoryThreshold
+	 *            the maximum number of bytes kept in memory
+	 * @param spillDirectory
+	 *            the directory of the class files which do not fit in memory,
+	 *            or null to keep them all in memory
+	 */
+	public ClassFileStore(long memoryThreshold, File spillDirectory) {
+		this.memoryThreshold = memoryThreshold;
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * Adds or replaces the class file of the class of the given binary name.
+	 */
+	public synchronized void put(String className, byte[] bytes) {
+		remove(className);
+		if (spillDirectory != null && memorySize + bytes.length > memoryThreshold) {
+			try {
+				FileUtils.writeByteArrayToFile(getSpillFile(className), bytes);
+			} catch (IOException e) {
+				throw new SpoonException("cannot write class file of "
+						+ className, e);
+			}
+			spilled.add(className);
+		} else {
+			classFiles.put(className, bytes);
+			memorySize += bytes.length;
+		}
+	}
+
+	/**
+	 * Gets the class file of the class of the given binary name, or null if
+	 * it is not in this store.
+	 */
+	public synchronized byte[] get(String className) {
+		byte[] bytes = classFiles.get(className);
+		if (bytes == null && spilled.contains(className)) {
+			try {
+				bytes = FileUtils.readFileToByteArray(getSpillFile(className));
+			} catch (IOException e) {
+				throw new SpoonException("cannot read class file of "
+						+ className, e);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Tells if this store contains the class file of the class of the given
+	 * binary name.
+	 */
+	public synchronized boolean contains(String className) {
+		return classFiles.containsKey(className) || spilled.contains(className);
+	}
+
+	/**
+	 * Removes the class file of the class of the given binary name.
+	 */
+	public synchronized void remove(String className) {
+		byte[] bytes = classFiles.remove(className);
+		if (bytes != null) {
+			memorySize -= bytes.length;
+		} else if (spilled.remove(className)) {
+			getSpillFile(className).delete();
+		}
+	}
+
+	/**
+	 * Gets the binary names of all the classes of this store.
+	 */
+	public synchronized Set<String> getClassNames() {
+		Set<String> names = new LinkedHashSet<String>(classFiles.keySet());
+		names.addAll(spilled);
+		return Collections.unmodifiableSet(names);
+	}
+
+	/**
+	 * Gets the number of class files of this store.
+	 */
+	public synchronized int size() {
+		return classFiles.size() + spilled.size();
+	}
+
+	/**
+	 * Gets the number of bytes held in memory.
+	 */
+	public synchronized long getMemorySize() {
+		return memorySize;
+	}
+
+	/**
+	 * Gets the number of class files written to the spill directory.
+	 */
+	public synchronized int getSpilledCount() {
+		return spilled.size();
+	}
+
+	/**
+	 * Removes all the class files of this store.
+	 */
+	public synchronized void clear() {
+		for (String className : spilled) {
+			getSpillFile(className).delete();
+		}
+		spilled.clear();
+		classFiles.clear();
+		memorySize = 0;
+	}
+
+	/**
+	 * Gets a read-only view of this store, from binary class names to class
+	 * files. The spilled class files are read when they are accessed.
+	 */
+	public Map<String, byte[]> getClassFiles() {
+		return new AbstractMap<String, byte[]>() {
+			@Override
+			public byte[] get(Object key) {
+				return key instanceof String ? ClassFileStore.this
+						.get((String) key) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return key instanceof String
+						&& ClassFileStore.this.contains((String) key);
+			}
+
+			@Override
+			public int size() {
+				return ClassFileStore.this.size();
+			}
+
+			@Override
+			public Set<Map.Entry<String, byte[]>> entrySet() {
+				final Set<String> names = getClassNames();
+				return new AbstractSet<Map.Entry<String, byte[]>>() {
+					@Override
+					public Iterator<Map.Entry<String, byte[]>> iterator() {
+						final Iterator<String> it = names.iterator();
+						return new Iterator<Map.Entry<String, byte[]>>() {
+							public boolean hasNext() {
+								return it.hasNext();
+							}
+
+							public Map.Entry<String, byte[]> next() {
+								String name = it.next();
+								return new SimpleImmutableEntry<String, byte[]>(
+										name, ClassFileStore.this.get(name));
+							}
+
+							public void remove() {
+								throw new UnsupportedOperationException();
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return names.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Creates a class loader which defines the classes of this store, and
+	 * delegates to the given parent for the other ones.
+	 */
+	public ClassLoader createClassLoader(ClassLoader parent) {
+		return new ClassLoader(parent) {
+			@Override
+			protected Class<?> findClass(String name)
+					throws ClassNotFoundException {
+				byte[] bytes = get(name);
+				if (bytes == null) {
+					throw new ClassNotFoundException(name);
+				}
+				return defineClass(name, bytes, 0, bytes.length);
+			}
+		};
+	}
+
+	private File getSpillFile(String className) {
+		return new File(spillDirectory, className.replace('.',
+				File.separatorChar) + ".class");
+	}
+
+}
@@ -34,6 +34,9 @@ public class FileSystemFile implements SpoonFile {
 
 	File file;
 
+	/** the canonical file, computed once since it costs a file system access */
+	private File canonicalFile;
+
 	public FileSystemFile(File file) {
 		super();
 		this.file = file;
@@ -76,7 +79,7 @@ public class FileSystemFile implements SpoonFile {
 
 	public String getPath() {
 		try {
-			return file.getCanonicalPath();
+			return toFile().getPath();
 		} catch (Exception e) {
 			Launcher.logger.error(e.getMessage(), e);
 			return file.getPath();
@@ -95,11 +98,14 @@ public class FileSystemFile implements SpoonFile {
 
 	@Override
 	public File toFile() {
-		try {
-		return file.getCanonicalFile();
-		} catch (IOException e) {
-			throw new SpoonException(e);
+		if (canonicalFile == null) {
+			try {
+				canonicalFile = file.getCanonicalFile();
+			} catch (IOException e) {
+				throw new SpoonException(e);
+			}
 		}
+		return canonicalFile;
 	}
 
 	@Override
@@ -21,7 +21,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import spoon.Launcher;
 import spoon.SpoonException;
@@ -29,10 +31,32 @@ import spoon.compiler.SpoonFile;
 import spoon.compiler.SpoonFolder;
 import spoon.compiler.SpoonResourceHelper;
 
+/**
+ * A folder of the file system. The contents of the folder and of its
+ * sub-folders are listed once, on first access, with a single directory
+ * listing per directory, and the resulting snapshot is reused by all the
+ * subsequent calls (typically by the several phases of the model building
+ * and compilation). Since the snapshot does not see the files created or
+ * deleted afterwards, {@link #refresh()} updates it, listing again only the
+ * directories whose modification time has changed.
+ * 
+ * <p>
+ * The folders created by a {@link spoon.Launcher} are new for each run, so
+ * that their snapshot is only reused within a build. A folder kept across
+ * builds must be refreshed before each of them, as the
+ * {@link spoon.SpoonServer} does before each request.
+ */
 public class FileSystemFolder implements SpoonFolder {
 
 	File file;
 
+	private String path;
+
+	private long lastModified;
+
+	private List<SpoonFile> files;
+
+	private List<FileSystemFolder> subFolders;
 
 	public FileSystemFolder(File file) {
 		super();
@@ -42,21 +66,14 @@ public class FileSystemFolder implements SpoonFolder {
 	}
 
 	public List<SpoonFile> getAllFiles() {
-		List<SpoonFile> all = new ArrayList<SpoonFile>(getFiles());
-		for (SpoonFolder f : getSubFolders()) {
-			all.addAll(f.getAllFiles());
-		}
+		List<SpoonFile> all = new ArrayList<SpoonFile>();
+		collectFiles(all, false);
 		return all;
 	}
 
 	public List<SpoonFile> getFiles() {
-		List<SpoonFile> files;
-		files = new ArrayList<SpoonFile>();
-		for (File f : file.listFiles()) {
-			if (SpoonResourceHelper.isFile(f))
-				files.add(new FileSystemFile(f));
-		}
-		return files;
+		snapshot();
+		return new ArrayList<SpoonFile>(files);
 	}
 
 	public String getName() {
@@ -73,17 +90,80 @@ public class FileSystemFolder implements SpoonFolder {
 	}
 
 	public List<SpoonFolder> getSubFolders() {
-		List<SpoonFolder> subFolders;
-		subFolders = new ArrayList<SpoonFolder>();
-		for (File f : file.listFiles()) {
-			if (!(SpoonResourceHelper.isArchive(f) || f.isFile()))
-				try {
-					subFolders.add(SpoonResourceHelper.createFolder(f));
-				} catch (FileNotFoundException e) {
-					Launcher.logger.error(e.getMessage(), e);
+		snapshot();
+		return new ArrayList<SpoonFolder>(subFolders);
+	}
+
+	/**
+	 * Updates the snapshot of the contents of this folder and of its
+	 * sub-folders, by listing again the directories whose modification time
+	 * has changed since they were listed (the modification time of a
+	 * directory changes when an entry is created, deleted or renamed).
+	 * 
+	 * @return true if some directory has been listed again
+	 */
+	public synchronized boolean refresh() {
+		if (files == null) {
+			return false;
+		}
+		boolean changed = false;
+		if (file.lastModified() != lastModified) {
+			// keep the snapshots of the sub-folders which are still there
+			Map<File, FileSystemFolder> old = new HashMap<File, FileSystemFolder>();
+			for (FileSystemFolder f : subFolders) {
+				old.put(f.file, f);
+			}
+			list();
+			for (int i = 0; i < subFolders.size(); i++) {
+				FileSystemFolder f = old.get(subFolders.get(i).file);
+				if (f != null) {
+					subFolders.set(i, f);
 				}
+			}
+			changed = true;
+		}
+		for (FileSystemFolder f : subFolders) {
+			changed |= f.refresh();
+		}
+		return changed;
+	}
+
+	private synchronized void snapshot() {
+		if (files == null) {
+			list();
+		}
+	}
+
+	private void list() {
+		lastModified = file.lastModified();
+		files = new ArrayList<SpoonFile>();
+		subFolders = new ArrayList<FileSystemFolder>();
+		File[] children = file.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File f : children) {
+			if (SpoonResourceHelper.isArchive(f)) {
+				continue;
+			}
+			if (f.isFile()) {
+				files.add(new FileSystemFile(f));
+			} else if (f.isDirectory()) {
+				subFolders.add(new FileSystemFolder(f));
+			}
+		}
+	}
+
+	private void collectFiles(List<SpoonFile> result, boolean javaOnly) {
+		snapshot();
+		for (SpoonFile f : files) {
+			if (!javaOnly || f.isJava()) {
+				result.add(f);
+			}
+		}
+		for (FileSystemFolder f : subFolders) {
+			f.collectFiles(result, javaOnly);
 		}
-		return subFolders;
 	}
 
 	public boolean isFile() {
@@ -96,22 +176,21 @@ public class FileSystemFolder implements SpoonFolder {
 	}
 
 	public List<SpoonFile> getAllJavaFiles() {
-		List<SpoonFile> files = new ArrayList<SpoonFile>();
-		for (SpoonFile f : getFiles())
-			if (f.isJava())
-				files.add(f);
-		for (SpoonFolder fol : getSubFolders())
-			files.addAll(fol.getAllJavaFiles());
-		return files;
+		List<SpoonFile> all = new ArrayList<SpoonFile>();
+		collectFiles(all, true);
+		return all;
 	}
 
 	public String getPath() {
-		try {
-			return file.getCanonicalPath();
-		} catch (Exception e) {
-			Launcher.logger.error(e.getMessage(), e);
-			return file.getPath();
+		if (path == null) {
+			try {
+				path = file.getCanonicalPath();
+			} catch (Exception e) {
+				Launcher.logger.error(e.getMessage(), e);
+				return file.getPath();
+			}
 		}
+		return path;
 	}
 
 	@Override
@@ -0,0 +1,340 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import spoon.SpoonException;
+
+/**
+ * The manifest of the source files generated in an output directory, used to
+ * build and compile only the outdated files.
+ *
+ * <p>
+ * For each processed source file, the manifest records its path relative to
+ * the source root (as given by its package, for instance
+ * <code>p/q/A.java</code>), its size, its modification time, the hash of its
+ * contents and the paths of the files generated from it, relative to the
+ * output directory. A source file is found in the manifest by the same path,
+ * computed from the package declaration at the beginning of the file, so that
+ * the detection does not depend on the location of the source root. A source
+ * file is up to date
+ * if its contents have the recorded hash (the hash is only computed when the
+ * size or the modification time differ, for instance after a checkout) and
+ * if all the files generated from it still exist.
+ *
+ * <p>
+ * The manifest is stored in the {@link #FILE_NAME} file of the output
+ * directory.
+ */
+public class OutputManifest {
+
+	/**
+	 * The name of the manifest file in the output directory.
+	 */
+	public static final String FILE_NAME = ".spoon-manifest";
+
+	private static final String ENCODING = "UTF-8";
+
+	private final File outputDirectory;
+
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	/**
+	 * Creates a manifest for the given output directory, and loads it if it
+	 * exists.
+	 */
+	public OutputManifest(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+		load();
+	}
+
+	/**
+	 * Gets the output directory of this manifest.
+	 */
+	public File getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/**
+	 * Records the files generated from a source file.
+	 *
+	 * @param relativePath
+	 *            the path of the source file relative to its source root
+	 * @param source
+	 *            the source file
+	 * @param outputs
+	 *            the paths of the generated files relative to the output
+	 *            directory
+	 */
+	public void put(String relativePath, File source, List<String> outputs) {
+		Entry e = new Entry();
+		e.size = source.length();
+		e.lastModified = source.lastModified();
+		e.hash = hash(source);
+		e.outputs = new ArrayList<String>(outputs);
+		entries.put(normalize(relativePath), e);
+	}
+
+	/**
+	 * Tells if a source file is up to date: its contents did not change since
+	 * the files generated from it were recorded, and these files exist.
+	 */
+	public boolean isUpToDate(File source) {
+		Entry e = find(source);
+		if (e == null) {
+			return false;
+		}
+		if (e.size != source.length()) {
+			return false;
+		}
+		if (e.lastModified != source.lastModified()) {
+			if (!e.hash.equals(hash(source))) {
+				return false;
+			}
+			// same contents (typically after a checkout)
+			e.lastModified = source.lastModified();
+		}
+		for (String out : e.outputs) {
+			if (!new File(outputDirectory, out).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the paths, relative to the output directory, of the files
+	 * generated from the given source file, or an empty list if the source
+	 * file is not in this manifest.
+	 */
+	public List<String> getOutputs(File source) {
+		Entry e = find(source);
+		if (e == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(e.outputs);
+	}
+
+	/**
+	 * Gets the number of source files of this manifest.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Loads the manifest file, if it exists.
+	 */
+	public void load() {
+		entries.clear();
+		File file = new File(outputDirectory, FILE_NAME);
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), ENCODING));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] fields = line.split("\t");
+					if (fields.length < 4) {
+						continue;
+					}
+					Entry e = new Entry();
+					e.size = Long.parseLong(fields[1]);
+					e.lastModified = Long.parseLong(fields[2]);
+					e.hash = fields[3];
+					e.outputs = new ArrayList<String>(Arrays.asList(fields)
+							.subList(4, fields.length));
+					entries.put(fields[0], e);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			// a broken manifest means that everything is outdated
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Saves the manifest file.
+	 */
+	public void save() {
+		if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+			throw new SpoonException("cannot create " + outputDirectory);
+		}
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(new File(
+					outputDirectory, FILE_NAME)), ENCODING);
+			try {
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					Entry e = entry.getValue();
+					out.write(entry.getKey());
+					out.write('\t');
+					out.write(Long.toString(e.size));
+					out.write('\t');
+					out.write(Long.toString(e.lastModified));
+					out.write('\t');
+					out.write(e.hash);
+					for (String o : e.outputs) {
+						out.write('\t');
+						out.write(o);
+					}
+					out.write('\n');
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new SpoonException("cannot write the output manifest", e);
+		}
+	}
+
+	/**
+	 * Finds the entry of the given source file, from the path of its package.
+	 */
+	private Entry find(File source) {
+		if (entries.isEmpty() || !source.isFile()) {
+			return null;
+		}
+		return entries.get(getPackagePath(source) + source.getName());
+	}
+
+	/**
+	 * Gets the path of the package declared by the given source file (for
+	 * instance <code>p/q/</code>), or an empty string for the default
+	 * package. Only the comments which precede the package declaration are
+	 * skipped.
+	 */
+	static String getPackagePath(File source) {
+		try {
+			Reader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(source), ENCODING));
+			try {
+				int c = in.read();
+				while (true) {
+					if (c == '/') {
+						c = in.read();
+						if (c == '/') {
+							while (c != '\n' && c != -1) {
+								c = in.read();
+							}
+						} else if (c == '*') {
+							int previous = 0;
+							c = in.read();
+							while (!(previous == '*' && c == '/') && c != -1) {
+								previous = c;
+								c = in.read();
+							}
+							c = in.read();
+						} else {
+							return "";
+						}
+					} else if (c == '\uFEFF' || Character.isWhitespace(c)) {
+						c = in.read();
+					} else {
+						break;
+					}
+				}
+				StringBuilder keyword = new StringBuilder();
+				while (c != -1 && Character.isJavaIdentifierPart(c)) {
+					keyword.append((char) c);
+					c = in.read();
+				}
+				if (!"package".equals(keyword.toString())) {
+					return "";
+				}
+				StringBuilder name = new StringBuilder();
+				while (c != ';' && c != -1) {
+					if (c == '.') {
+						name.append('/');
+					} else if (!Character.isWhitespace(c)) {
+						name.append((char) c);
+					}
+					c = in.read();
+				}
+				return name.length() == 0 ? "" : name.append('/').toString();
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	private static String normalize(String path) {
+		return path.replace(File.separatorChar, '/');
+	}
+
+	private static String hash(File file) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (IOException e) {
+			throw new SpoonException("cannot read " + file, e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new SpoonException(e);
+		}
+	}
+
+	private static class Entry {
+		long size;
+
+		long lastModified;
+
+		String hash;
+
+		List<String> outputs;
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import spoon.reflect.cu.CompilationUnit;
+
+/**
+ * A bounded cache of the printed contents of the compilation units, which
+ * lets the compiler reuse the sources printed by the output processor
+ * instead of printing the model again.
+ *
+ * <p>
+ * The cache is disabled by default (see {@link #setEnabled(boolean)}). When
+ * the total number of cached characters exceeds the limit, the least
+ * recently used contents are evicted and will be printed again if needed.
+ * The cached contents are only valid until the model is modified, so that
+ * the cache is cleared once the compilation is done.
+ */
+public class PrintedSourceCache {
+
+	/**
+	 * The default limit of the cache, in characters.
+	 */
+	public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	private final Map<CompilationUnit, char[]> contents = new LinkedHashMap<CompilationUnit, char[]>(
+			16, 0.75f, true);
+
+	private long maxSize = DEFAULT_MAX_SIZE;
+
+	private long size;
+
+	private boolean enabled;
+
+	private int hits;
+
+	/**
+	 * Tells if this cache is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables this cache. Disabling it clears it.
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			clear();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of characters held by this cache.
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 * Stores the printed contents of a compilation unit, if this cache is
+	 * enabled.
+	 */
+	public synchronized void put(CompilationUnit cu, char[] printed) {
+		if (!enabled || printed.length > maxSize) {
+			return;
+		}
+		char[] old = contents.put(cu, printed);
+		if (old != null) {
+			size -= old.length;
+		}
+		size += printed.length;
+		evict();
+	}
+
+	/**
+	 * Gets the printed contents of a compilation unit, or null if they are
+	 * not cached.
+	 */
+	public synchronized char[] get(CompilationUnit cu) {
+		char[] printed = contents.get(cu);
+		if (printed != null) {
+			hits++;
+		}
+		return printed;
+	}
+
+	/**
+	 * Gets the number of cached compilation units.
+	 */
+	public synchronized int size() {
+		return contents.size();
+	}
+
+	/**
+	 * Gets the number of cached characters.
+	 */
+	public synchronized long getCharCount() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of successful lookups since the creation of this cache.
+	 */
+	public synchronized int getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Removes all the cached contents.
+	 */
+	public synchronized void clear() {
+		contents.clear();
+		size = 0;
+	}
+
+	private void evict() {
+		Iterator<char[]> it = contents.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			size -= it.next().length;
+			it.remove();
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtCodeElement;
+import spoon.reflect.code.CtCodeSnippetExpression;
+import spoon.reflect.code.CtCodeSnippetStatement;
+import spoon.reflect.code.CtReturn;
+import spoon.reflect.code.CtStatement;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.support.reflect.declaration.CtElementImpl;
+
+/**
+ * Compiles many code snippets at once. The snippets are collected with the
+ * <code>add</code> methods and compiled in a single compiler run, with one
+ * wrapper method per snippet, which is much faster than compiling them one by
+ * one with {@link CtCodeSnippetStatement#compile()} or
+ * {@link CtCodeSnippetExpression#compile()}.
+ *
+ * <p>
+ * As for the single snippet compilation, the snippets are compiled out of
+ * their context. A compilation error in any snippet makes the whole batch
+ * fail with a {@link SnippetCompilationError}.
+ */
+public class SnippetCompilationBatch {
+
+	private final Factory factory;
+
+	private final List<CtCodeElement> snippets = new ArrayList<CtCodeElement>();
+
+	/**
+	 * Creates an empty batch for the snippets of the given factory.
+	 */
+	public SnippetCompilationBatch(Factory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Adds a statement snippet to this batch.
+	 */
+	public SnippetCompilationBatch add(CtCodeSnippetStatement statement) {
+		snippets.add(statement);
+		return this;
+	}
+
+	/**
+	 * Adds an expression snippet to this batch.
+	 */
+	public SnippetCompilationBatch add(CtCodeSnippetExpression<?> expression) {
+		snippets.add(expression);
+		return this;
+	}
+
+	/**
+	 * Gets the number of snippets to be compiled.
+	 */
+	public int size() {
+		return snippets.size();
+	}
+
+	/**
+	 * Compiles all the snippets of this batch, which is emptied.
+	 *
+	 * @return the compiled statements and expressions, in the order of the
+	 *         snippets
+	 */
+	public List<CtCodeElement> compile() throws SnippetCompilationError {
+		List<CtCodeElement> result = new ArrayList<CtCodeElement>(
+				snippets.size());
+		if (snippets.isEmpty()) {
+			return result;
+		}
+		CtClass<?> w = createWrapper();
+		String contents = w.toString();
+		w.getPackage().getTypes().remove(w);
+		SnippetCompilationHelper.build(factory, contents);
+
+		CtType<?> c = factory.Type().get("Wrapper");
+		for (int i = 0; i < snippets.size(); i++) {
+			CtMethod<?> m = c.getMethod("wrap" + i);
+			CtStatement st = m.getBody().getStatements().get(0);
+			if (snippets.get(i) instanceof CtCodeSnippetExpression) {
+				result.add(((CtReturn<?>) st).getReturnedExpression());
+			} else {
+				result.add(st);
+			}
+		}
+		// Clean up (delete wrapper from factory)
+		c.getPackage().getTypes().remove(c);
+		snippets.clear();
+		return result;
+	}
+
+	/**
+	 * Compiles all the snippets of this batch and replaces them in the model
+	 * by the compiled code, if they have a parent.
+	 *
+	 * @return the compiled statements and expressions, in the order of the
+	 *         snippets
+	 */
+	public List<CtCodeElement> compileAndReplace()
+			throws SnippetCompilationError {
+		List<CtCodeElement> l = new ArrayList<CtCodeElement>(snippets);
+		List<CtCodeElement> result = compile();
+		for (int i = 0; i < l.size(); i++) {
+			if (l.get(i).isParentInitialized()) {
+				l.get(i).replace(result.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a wrapper class with one method per snippet, which holds a
+	 * copy of the snippet (so that the snippets keep their parents).
+	 */
+	private CtClass<?> createWrapper() {
+		CtClass<?> w = factory.Class().create("Wrapper");
+		for (int i = 0; i < snippets.size(); i++) {
+			CtCodeElement snippet = snippets.get(i);
+			if (snippet instanceof CtCodeSnippetExpression) {
+				CtBlock<Object> body = factory.Core().createBlock();
+				CtReturn<Object> ret = factory.Core().createReturn();
+				ret.setReturnedExpression(factory.Code()
+						.createCodeSnippetExpression(
+								((CtCodeSnippetExpression<?>) snippet)
+										.getValue()));
+				body.addStatement(ret);
+				factory.Method().create(w, EnumSet.noneOf(ModifierKind.class),
+						factory.Type().createReference(Object.class),
+						"wrap" + i,
+						CtElementImpl.<CtParameter<?>> EMPTY_LIST(),
+						CtElementImpl.<CtTypeReference<? extends Throwable>> EMPTY_SET(),
+						body);
+			} else {
+				CtBlock<Void> body = factory.Core().createBlock();
+				body.addStatement(factory.Code().createCodeSnippetStatement(
+						((CtCodeSnippetStatement) snippet).getValue()));
+				factory.Method().create(w, EnumSet.noneOf(ModifierKind.class),
+						factory.Type().createReference(void.class),
+						"wrap" + i,
+						CtElementImpl.<CtParameter<?>> EMPTY_LIST(),
+						CtElementImpl.<CtTypeReference<? extends Throwable>> EMPTY_SET(),
+						body);
+			}
+		}
+		return w;
+	}
+
+}
@@ -1,11 +1,15 @@
 package spoon.support.compiler;
 
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 
 import spoon.compiler.ModelBuildingException;
-import spoon.compiler.SpoonCompiler;
 import spoon.reflect.code.CtBlock;
 import spoon.reflect.code.CtCodeSnippetExpression;
 import spoon.reflect.code.CtCodeSnippetStatement;
@@ -108,9 +112,35 @@ public class SnippetCompilationHelper {
 
 	}
 
-	private static void build(Factory f, String contents) {
+	static void build(Factory f, String contents) {
 		// Build contents
-		SpoonCompiler builder = new JDTSnippetCompiler(f, contents);
+		JDTSnippetCompiler builder = new JDTSnippetCompiler(f, contents);
+		if (f.getEnvironment().getNameEnvironmentCache() != null) {
+			// the name environment is shared through the cache
+			build(builder, contents);
+			return;
+		}
+		WarmEnvironment warm = getWarmEnvironment(f);
+		synchronized (warm) {
+			String classpath = Arrays.toString(f.getEnvironment()
+					.getSourceClasspath());
+			ClassLoader loader = Thread.currentThread()
+					.getContextClassLoader();
+			if (!classpath.equals(warm.classpath) || loader != warm.loader) {
+				warm.clear();
+				warm.classpath = classpath;
+				warm.loader = loader;
+			}
+			builder.setEnvironment(warm.environment);
+			try {
+				build(builder, contents);
+			} finally {
+				warm.environment = builder.getNameEnvironment();
+			}
+		}
+	}
+
+	private static void build(JDTSnippetCompiler builder, String contents) {
 		try {
 			builder.build();
 		} catch (Exception e) {
@@ -119,6 +149,55 @@ public class SnippetCompilationHelper {
 		}
 	}
 
+	/**
+	 * The name environment kept between the snippet compilations of a
+	 * factory, so that the classpath is not opened and indexed again for
+	 * each snippet. It is discarded when the source classpath changes.
+	 */
+	private static class WarmEnvironment {
+		String classpath;
+
+		ClassLoader loader;
+
+		INameEnvironment environment;
+
+		void clear() {
+			if (environment != null) {
+				environment.cleanup();
+				environment = null;
+			}
+		}
+	}
+
+	private static final Map<Factory, WarmEnvironment> environments = new WeakHashMap<Factory, WarmEnvironment>();
+
+	private static WarmEnvironment getWarmEnvironment(Factory f) {
+		synchronized (environments) {
+			WarmEnvironment e = environments.get(f);
+			if (e == null) {
+				e = new WarmEnvironment();
+				environments.put(f, e);
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Discards the name environment kept for the snippet compilations of the
+	 * given factory (see {@link #compileStatement(CtCodeSnippetStatement)}).
+	 */
+	static public void clearEnvironment(Factory f) {
+		WarmEnvironment e;
+		synchronized (environments) {
+			e = environments.remove(f);
+		}
+		if (e != null) {
+			synchronized (e) {
+				e.clear();
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	static public <T> CtExpression<T> compileExpression(
 			CtCodeSnippetExpression<T> expr) throws SnippetCompilationError {
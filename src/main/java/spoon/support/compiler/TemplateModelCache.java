@@ -0,0 +1,376 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import spoon.Launcher;
+import spoon.SpoonException;
+import spoon.compiler.SpoonFile;
+import spoon.reflect.cu.CompilationUnit;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtPackage;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.CtScanner;
+import spoon.support.reflect.cu.SourcePositionImpl;
+import spoon.support.reflect.reference.CtSharedPackageReferenceImpl;
+
+/**
+ * A cache of the template models, which lets the compiler restore the
+ * templates built by a previous run instead of building them again with JDT.
+ *
+ * <p>
+ * The cache is a directory holding one file per key, where the key is a hash
+ * of the template sources, of the template classpath and of the compliance
+ * level (see {@link #getKey(List, String[], int)}). A file holds the
+ * serialized types of the compilation units built from the templates. The
+ * links of these types to their packages and compilation units are stored as
+ * names, and are restored in the factory which loads them. The files are
+ * written atomically, so that several Spoon processes can share the same
+ * cache directory.
+ */
+public class TemplateModelCache {
+
+	/**
+	 * The extension of the files of the cache.
+	 */
+	public static final String FILE_EXTENSION = ".templates";
+
+	private final File directory;
+
+	/**
+	 * Creates a cache stored in the given directory.
+	 */
+	public TemplateModelCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the directory of this cache.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Computes the key of the templates built from the given sources, with the
+	 * given classpath and compliance level. The key changes when the contents
+	 * of a template source change, or when a classpath entry is modified.
+	 */
+	public String getKey(List<SpoonFile> templates, String[] classpath,
+			int complianceLevel) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			update(digest, getVersion());
+			update(digest, Integer.toString(complianceLevel));
+			for (SpoonFile template : templates) {
+				update(digest, template.getPath());
+				InputStream in = template.getContent();
+				try {
+					byte[] buffer = new byte[8192];
+					int n;
+					while ((n = in.read(buffer)) > 0) {
+						digest.update(buffer, 0, n);
+					}
+				} finally {
+					in.close();
+				}
+			}
+			if (classpath != null) {
+				for (String entry : classpath) {
+					File f = new File(entry);
+					update(digest, entry);
+					update(digest, f.length() + ":" + f.lastModified());
+				}
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (IOException e) {
+			throw new SpoonException("cannot read the templates", e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new SpoonException(e);
+		}
+	}
+
+	/**
+	 * Tells if this cache holds the templates of the given key.
+	 */
+	public boolean contains(String key) {
+		return getFile(key).exists();
+	}
+
+	/**
+	 * Restores the templates of the given key in the given factory. The
+	 * factory is left unchanged if the templates cannot be read.
+	 *
+	 * @return false if the templates are not in this cache, or if they cannot
+	 *         be read (for instance when they were written by another version
+	 *         of Spoon)
+	 */
+	public boolean load(String key, final Factory factory) {
+		File file = getFile(key);
+		if (!file.exists()) {
+			return false;
+		}
+		// the links are read as placeholders, which are replaced by the
+		// packages and compilation units of the factory once the whole file
+		// is read
+		final Map<String, CtPackage> packages = new HashMap<String, CtPackage>();
+		final Map<String, CompilationUnit> units = new HashMap<String, CompilationUnit>();
+		List<CompilationUnit> declaringUnits = new ArrayList<CompilationUnit>();
+		List<List<CtType<?>>> declaredTypes = new ArrayList<List<CtType<?>>>();
+		try {
+			ObjectInputStream in = new ObjectInputStream(
+					new BufferedInputStream(new FileInputStream(file))) {
+				{
+					enableResolveObject(true);
+				}
+
+				@Override
+				protected Object resolveObject(Object obj) {
+					if (obj instanceof PackageLink) {
+						String name = ((PackageLink) obj).qualifiedName;
+						CtPackage p = packages.get(name);
+						if (p == null) {
+							// named as the package for the signatures of the
+							// types
+							p = factory.Core().createPackage();
+							p.setSimpleName(name);
+							packages.put(name, p);
+						}
+						return p;
+					}
+					if (obj instanceof CompilationUnitLink) {
+						String path = ((CompilationUnitLink) obj).path;
+						CompilationUnit cu = units.get(path);
+						if (cu == null) {
+							cu = factory.Core().createCompilationUnit();
+							units.put(path, cu);
+						}
+						return cu;
+					}
+					return obj;
+				}
+			};
+			try {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					declaringUnits.add((CompilationUnit) in.readObject());
+					@SuppressWarnings("unchecked")
+					List<CtType<?>> declared = (List<CtType<?>>) in
+							.readObject();
+					declaredTypes.add(declared);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			factory.getEnvironment().debugMessage(
+					"cannot read cached templates " + file + ": " + e);
+			return false;
+		}
+
+		final Map<CtPackage, CtPackage> realPackages = new IdentityHashMap<CtPackage, CtPackage>();
+		for (Map.Entry<String, CtPackage> e : packages.entrySet()) {
+			realPackages.put(e.getValue(),
+					factory.Package().getOrCreate(e.getKey()));
+		}
+		final Map<CompilationUnit, CompilationUnit> realUnits = new IdentityHashMap<CompilationUnit, CompilationUnit>();
+		for (Map.Entry<String, CompilationUnit> e : units.entrySet()) {
+			realUnits.put(e.getValue(),
+					factory.CompilationUnit().create(e.getKey()));
+		}
+		List<CtType<?>> types = new ArrayList<CtType<?>>();
+		for (int i = 0; i < declaringUnits.size(); i++) {
+			CompilationUnit cu = realUnits.get(declaringUnits.get(i));
+			for (CtType<?> type : declaredTypes.get(i)) {
+				if (!cu.getDeclaredTypes().contains(type)) {
+					cu.getDeclaredTypes().add(type);
+				}
+				types.add(type);
+			}
+		}
+		new CtScanner() {
+			@Override
+			public void enter(CtElement e) {
+				e.setFactory(factory);
+				if (e.getPosition() instanceof SourcePositionImpl) {
+					SourcePositionImpl position = (SourcePositionImpl) e
+							.getPosition();
+					CompilationUnit cu = realUnits.get(position
+							.getCompilationUnit());
+					if (cu != null) {
+						position.setCompilationUnit(cu);
+					}
+				}
+				super.enter(e);
+			}
+
+			@Override
+			protected void enterReference(CtReference e) {
+				e.setFactory(factory);
+				// share the package references with the factory
+				if (e instanceof CtTypeReference
+						&& ((CtTypeReference<?>) e).getPackage() instanceof CtSharedPackageReferenceImpl) {
+					CtTypeReference<?> t = (CtTypeReference<?>) e;
+					t.setPackage(factory.Package().getSharedReference(
+							t.getPackage().getSimpleName()));
+				}
+				super.enterReference(e);
+			}
+		}.scan(types);
+		for (CtType<?> type : types) {
+			CtPackage p = realPackages.get(type.getPackage());
+			if (p != null) {
+				p.addType(type);
+			}
+			// the annotations are read without addAnnotation
+			factory.Annotation().indexAnnotations(type);
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the templates of the given compilation units under the given
+	 * key. The failures are logged, since they only mean that the templates
+	 * will be built again.
+	 */
+	public void save(String key, Factory factory,
+			Collection<CompilationUnit> units) {
+		final Map<CompilationUnit, String> paths = new IdentityHashMap<CompilationUnit, String>();
+		for (Map.Entry<String, CompilationUnit> e : factory.CompilationUnit()
+				.getMap().entrySet()) {
+			paths.put(e.getValue(), e.getKey());
+		}
+		File file = getFile(key);
+		File tmp = null;
+		try {
+			if (!directory.exists() && !directory.mkdirs()) {
+				throw new IOException("cannot create " + directory);
+			}
+			tmp = File.createTempFile("spoon", ".tmp", directory);
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(
+					tmp));
+			ObjectOutputStream out = new ObjectOutputStream(os) {
+				{
+					enableReplaceObject(true);
+				}
+
+				@Override
+				protected Object replaceObject(Object obj) {
+					// the types are stored without the rest of the model
+					if (obj instanceof CtPackage) {
+						return new PackageLink(((CtPackage) obj)
+								.getQualifiedName());
+					}
+					if (obj instanceof CompilationUnit) {
+						String path = paths.get(obj);
+						return new CompilationUnitLink(path == null ? "" : path);
+					}
+					return obj;
+				}
+			};
+			try {
+				out.writeInt(units.size());
+				for (CompilationUnit cu : units) {
+					out.writeObject(cu);
+					out.writeObject(new ArrayList<CtType<?>>(cu
+							.getDeclaredTypes()));
+				}
+			} finally {
+				out.close();
+			}
+			// another process may have stored the same templates meanwhile
+			if (!tmp.renameTo(file) && !file.exists()) {
+				throw new IOException("cannot write " + file);
+			}
+		} catch (IOException e) {
+			Launcher.logger.error("cannot cache the templates: "
+					+ e.getMessage(), e);
+		} finally {
+			if (tmp != null && tmp.exists()) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private File getFile(String key) {
+		return new File(directory, key + FILE_EXTENSION);
+	}
+
+	private static void update(MessageDigest digest, String s) {
+		try {
+			digest.update(s.getBytes("UTF-8"));
+			digest.update((byte) 0);
+		} catch (IOException e) {
+			throw new SpoonException(e);
+		}
+	}
+
+	private static String getVersion() {
+		return ResourceBundle.getBundle("spoon").getString(
+				"application.version");
+	}
+
+	private static class PackageLink implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final String qualifiedName;
+
+		PackageLink(String qualifiedName) {
+			this.qualifiedName = qualifiedName;
+		}
+	}
+
+	private static class CompilationUnitLink implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final String path;
+
+		CompilationUnitLink(String path) {
+			this.path = path;
+		}
+	}
+
+}
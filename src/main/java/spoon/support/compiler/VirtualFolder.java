@@ -47,10 +47,13 @@ public class VirtualFolder implements SpoonFolder {
 		for (SpoonFolder f : folders)
 			result.addAll(f.getAllFiles());
 		
-		for (SpoonFile f: getFiles()) {
+		if (!files.isEmpty()) {
 			// we take care not to add a file that was already found in a folder
-			if (!result.contains(f)) {
-				result.add(f);
+			Set<SpoonFile> found = new HashSet<SpoonFile>(result);
+			for (SpoonFile f : getFiles()) {
+				if (found.add(f)) {
+					result.add(f);
+				}
 			}
 		}
 		return result;
@@ -0,0 +1,329 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler.jdt;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.env.IBinaryMethod;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+import spoon.compiler.Environment;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtField;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.support.util.RtHelper;
+
+/**
+ * Builds the declarations of the binary types of the classpath by reading
+ * their class files, without loading the classes.
+ *
+ * <p>
+ * The class files are found and parsed by a JDT name environment of the boot
+ * classpath, the source classpath and the application classpath, which is
+ * computed once, and again only when the source classpath changes. The name
+ * environment comes from the cache of the environment of the factory if
+ * there is one, and otherwise from a cache of this builder, whose jars stay
+ * open until {@link #close()} is called. The declarations hold the
+ * modifiers, the super types, the fields and the signatures of the
+ * executables (with erased types and without bodies).
+ */
+public class BinaryTypeBuilder {
+
+	private static final int TYPE_MODIFIERS = Modifier.PUBLIC
+			| Modifier.PROTECTED | Modifier.PRIVATE | Modifier.STATIC
+			| Modifier.FINAL | Modifier.ABSTRACT | Modifier.STRICT;
+
+	private static final int FIELD_MODIFIERS = Modifier.PUBLIC
+			| Modifier.PROTECTED | Modifier.PRIVATE | Modifier.STATIC
+			| Modifier.FINAL | Modifier.VOLATILE | Modifier.TRANSIENT;
+
+	private static final int METHOD_MODIFIERS = Modifier.PUBLIC
+			| Modifier.PROTECTED | Modifier.PRIVATE | Modifier.STATIC
+			| Modifier.FINAL | Modifier.SYNCHRONIZED | Modifier.NATIVE
+			| Modifier.ABSTRACT | Modifier.STRICT;
+
+	private final Factory factory;
+
+	private final NameEnvironmentCache cache = new NameEnvironmentCache();
+
+	private String[] sourceClasspath;
+
+	private String[] classpath;
+
+	/**
+	 * Creates a builder of the binary types of the classpath of the given
+	 * factory.
+	 */
+	public BinaryTypeBuilder(Factory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Closes the jars opened by this builder. The builder can still be used
+	 * afterwards, in which case the classpath is opened again.
+	 */
+	public synchronized void close() {
+		cache.close();
+	}
+
+	/**
+	 * Builds the declaration of the binary type of the given binary name (for
+	 * instance <code>p.A$B</code>), or returns null if it is not in the
+	 * classpath. The declaration has no parent.
+	 */
+	public <T> CtType<T> build(String qualifiedName) {
+		IBinaryType binary = find(qualifiedName);
+		if (binary == null || binary.isAnonymous() || binary.isLocal()) {
+			return null;
+		}
+		int modifiers = binary.getModifiers();
+		CtType<T> type;
+		if ((modifiers & ClassFileConstants.AccAnnotation) != 0) {
+			type = createAnnotationType();
+		} else if ((modifiers & ClassFileConstants.AccInterface) != 0) {
+			type = factory.Core().createInterface();
+		} else if ((modifiers & ClassFileConstants.AccEnum) != 0) {
+			type = createEnum();
+		} else {
+			type = factory.Core().createClass();
+		}
+		String simpleName = qualifiedName.substring(Math.max(
+				qualifiedName.lastIndexOf('.'), qualifiedName.lastIndexOf('$')) + 1);
+		type.setSimpleName(simpleName);
+		type.setModifiers(RtHelper.getModifiers(modifiers & TYPE_MODIFIERS));
+		if (binary.getSuperclassName() != null && type instanceof CtClass) {
+			((CtClass<T>) type).setSuperclass(createReference(binary
+					.getSuperclassName()));
+		}
+		if (binary.getInterfaceNames() != null) {
+			for (char[] name : binary.getInterfaceNames()) {
+				type.addSuperInterface(createReference(name));
+			}
+		}
+		if (binary.getFields() != null) {
+			for (IBinaryField f : binary.getFields()) {
+				if ((f.getModifiers() & ClassFileConstants.AccSynthetic) != 0) {
+					continue;
+				}
+				CtField<Object> field = factory.Core().createField();
+				field.setSimpleName(new String(f.getName()));
+				field.setType(this.<Object> createReference(getTypeNames(
+						f.getTypeName()).get(0)));
+				field.setModifiers(RtHelper.getModifiers(f.getModifiers()
+						& FIELD_MODIFIERS));
+				type.addField(field);
+			}
+		}
+		if (binary.getMethods() != null) {
+			for (IBinaryMethod m : binary.getMethods()) {
+				if (m.isClinit()
+						|| (m.getModifiers() & (ClassFileConstants.AccSynthetic | ClassFileConstants.AccBridge)) != 0) {
+					continue;
+				}
+				addExecutable(type, m);
+			}
+		}
+		return type;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> CtType<T> createAnnotationType() {
+		return (CtType<T>) factory.Core().createAnnotationType();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> CtType<T> createEnum() {
+		return (CtType<T>) factory.Core().createEnum();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void addExecutable(CtType<T> type, IBinaryMethod m) {
+		List<String> types = getTypeNames(m.getMethodDescriptor());
+		String returnType = types.remove(types.size() - 1);
+		Set<ModifierKind> modifiers = RtHelper.getModifiers(m.getModifiers()
+				& METHOD_MODIFIERS);
+		CtExecutable<?> executable;
+		if (m.isConstructor()) {
+			if (!(type instanceof CtClass)) {
+				return;
+			}
+			CtConstructor<T> c = factory.Core().createConstructor();
+			c.setModifiers(modifiers);
+			executable = c;
+		} else {
+			CtMethod<Object> method = factory.Core().createMethod();
+			method.setSimpleName(new String(m.getSelector()));
+			method.setType(this.<Object> createReference(returnType));
+			method.setModifiers(modifiers);
+			executable = method;
+		}
+		for (int i = 0; i < types.size(); i++) {
+			CtParameter<Object> parameter = factory.Core().createParameter();
+			parameter.setSimpleName("arg" + i);
+			parameter.setType(this.<Object> createReference(types.get(i)));
+			executable.addParameter(parameter);
+		}
+		if (m.getExceptionTypeNames() != null) {
+			for (char[] name : m.getExceptionTypeNames()) {
+				CtTypeReference<? extends Throwable> thrown = createReference(name);
+				executable.addThrownType(thrown);
+			}
+		}
+		// the executables are added once complete, since they are hashed by
+		// signature
+		if (executable instanceof CtConstructor) {
+			((CtClass<T>) type).addConstructor((CtConstructor<T>) executable);
+		} else {
+			type.addMethod((CtMethod<?>) executable);
+		}
+	}
+
+	private synchronized IBinaryType find(String qualifiedName) {
+		Environment env = factory.getEnvironment();
+		NameEnvironmentCache environments = env.getNameEnvironmentCache();
+		if (environments == null) {
+			environments = cache;
+		}
+		INameEnvironment environment = environments
+				.getEnvironment(getClasspath(env));
+		NameEnvironmentAnswer answer = environment.findType(CharOperation
+				.splitOn('.', qualifiedName.toCharArray()));
+		return answer == null ? null : answer.getBinaryType();
+	}
+
+	private String[] getClasspath(Environment env) {
+		String[] source = env.getSourceClasspath();
+		if (classpath == null || !Arrays.equals(source, sourceClasspath)) {
+			Set<String> entries = new LinkedHashSet<String>();
+			addEntries(entries, System.getProperty("sun.boot.class.path"));
+			if (source != null) {
+				for (String entry : source) {
+					addEntries(entries, entry);
+				}
+			}
+			addEntries(entries, System.getProperty("java.class.path"));
+			// the jars of the previous classpath are not used anymore
+			cache.close();
+			sourceClasspath = source == null ? null : source.clone();
+			classpath = entries.toArray(new String[entries.size()]);
+		}
+		return classpath;
+	}
+
+	private static void addEntries(Set<String> classpath, String path) {
+		if (path == null) {
+			return;
+		}
+		for (String entry : path.split(File.pathSeparator)) {
+			if (entry.length() > 0 && new File(entry).exists()) {
+				classpath.add(entry);
+			}
+		}
+	}
+
+	private <T> CtTypeReference<T> createReference(char[] binaryName) {
+		return factory.Type().createReference(
+				new String(binaryName).replace('/', '.'));
+	}
+
+	private <T> CtTypeReference<T> createReference(String name) {
+		return factory.Type().createReference(name);
+	}
+
+	/**
+	 * Gets the Java names of the types of a field descriptor, or of the
+	 * parameters and the return type of a method descriptor.
+	 */
+	static List<String> getTypeNames(char[] descriptor) {
+		List<String> names = new ArrayList<String>();
+		int i = 0;
+		while (i < descriptor.length) {
+			char c = descriptor[i];
+			if (c == '(' || c == ')') {
+				i++;
+				continue;
+			}
+			int dimensions = 0;
+			while (descriptor[i] == '[') {
+				dimensions++;
+				i++;
+			}
+			String name;
+			switch (descriptor[i]) {
+			case 'B':
+				name = "byte";
+				break;
+			case 'C':
+				name = "char";
+				break;
+			case 'D':
+				name = "double";
+				break;
+			case 'F':
+				name = "float";
+				break;
+			case 'I':
+				name = "int";
+				break;
+			case 'J':
+				name = "long";
+				break;
+			case 'S':
+				name = "short";
+				break;
+			case 'Z':
+				name = "boolean";
+				break;
+			case 'V':
+				name = "void";
+				break;
+			default:
+				int end = CharOperation.indexOf(';', descriptor, i);
+				name = new String(descriptor, i + 1, end - i - 1).replace('/',
+						'.');
+				i = end;
+			}
+			i++;
+			StringBuilder sb = new StringBuilder(name);
+			for (int d = 0; d < dimensions; d++) {
+				sb.append("[]");
+			}
+			names.add(sb.toString());
+		}
+		return names;
+	}
+
+}
@@ -1,6 +1,5 @@
 package spoon.support.compiler.jdt;
 
-import org.apache.commons.io.IOUtils;
 import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
 
 import spoon.Launcher;
@@ -26,8 +25,8 @@ class CompilationUnitWrapper extends CompilationUnit {
 				if (this.jdtCompiler.loadedContent.containsKey(s)) {
 					return this.jdtCompiler.loadedContent.get(s);
 				} else {
-					char[] content = IOUtils
-							.toCharArray(this.jdtCompiler.getCompilationUnitInputStream(s));
+					char[] content = this.jdtCompiler
+							.getCompilationUnitContents(s);
 					this.jdtCompiler.loadedContent.put(s, content);
 					return content;
 				}
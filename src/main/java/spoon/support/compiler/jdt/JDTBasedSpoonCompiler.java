@@ -33,6 +33,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -62,8 +67,13 @@ import spoon.reflect.factory.Factory;
 import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
 import spoon.reflect.visitor.PrettyPrinter;
 import spoon.support.QueueProcessingManager;
+import spoon.support.compiler.ClassFileStore;
 import spoon.support.compiler.FileSystemFile;
+import spoon.support.compiler.OutputManifest;
+import spoon.support.compiler.PrintedSourceCache;
+import spoon.support.compiler.TemplateModelCache;
 import spoon.support.compiler.VirtualFolder;
+import spoon.support.util.Metrics;
 
 public class JDTBasedSpoonCompiler implements SpoonCompiler {
 
@@ -101,6 +111,35 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		this.destinationDirectory = destinationDirectory;
 	}
 
+	/** manifest of the generated source files, for buildOnlyOutdatedFiles */
+	private OutputManifest manifest;
+
+	/** in-memory store for binary code .class files */
+	ClassFileStore classFileStore;
+
+	@Override
+	public ClassFileStore getClassFileStore() {
+		return classFileStore;
+	}
+
+	@Override
+	public void setClassFileStore(ClassFileStore store) {
+		this.classFileStore = store;
+	}
+
+	/** cache of the template models built by the previous runs */
+	TemplateModelCache templateModelCache;
+
+	@Override
+	public TemplateModelCache getTemplateModelCache() {
+		return templateModelCache;
+	}
+
+	@Override
+	public void setTemplateModelCache(TemplateModelCache cache) {
+		this.templateModelCache = cache;
+	}
+
 	/** Default constructor */
 	public JDTBasedSpoonCompiler(Factory factory) {
 		this.factory = factory;
@@ -132,30 +171,83 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		return createBatchCompiler(false);
 	}
 
+	/**
+	 * Removes from the given files the ones which are up to date according
+	 * to the {@link OutputManifest} of the output directory, except the ones
+	 * which are forced to be built.
+	 */
+	protected void keepOutdatedFiles(List<SpoonFile> files) {
+		OutputManifest manifest = getOutputManifest();
+		Set<SpoonResource> forced = new HashSet<SpoonResource>(forceBuildList);
+		List<SpoonFile> outdated = new ArrayList<SpoonFile>();
+		for (SpoonFile sf : files) {
+			if (forced.contains(sf) || !manifest.isUpToDate(sf.toFile())) {
+				outdated.add(sf);
+			}
+		}
+		files.clear();
+		files.addAll(outdated);
+	}
+
+	/**
+	 * Removes from the given files the ones which are up to date.
+	 *
+	 * @deprecated the outdated files are detected from the
+	 *             {@link OutputManifest} of the output directory, and the
+	 *             given output files are ignored: use
+	 *             {@link #keepOutdatedFiles(List)}
+	 */
+	@Deprecated
 	protected void keepOutdatedFiles(List<SpoonFile> files,
 			Collection<File> outputFiles) {
-		// System.out.println("outputfiles: " + outputFiles);
+		keepOutdatedFiles(files);
+	}
 
-		int offset = outputDirectory.getAbsolutePath().length() + 1;
-		Collection<String> relativeOutputPaths = new ArrayList<String>();
-		for (File f : outputFiles) {
-			relativeOutputPaths.add(f.getAbsolutePath().substring(offset));
+	/**
+	 * Gets the manifest of the source files generated in the output
+	 * directory.
+	 */
+	protected OutputManifest getOutputManifest() {
+		if (manifest == null
+				|| !manifest.getOutputDirectory().equals(outputDirectory)) {
+			manifest = new OutputManifest(outputDirectory);
 		}
-		for (SpoonFile sf : new ArrayList<SpoonFile>(files)) {
-			if (forceBuildList.contains(sf)) {
+		return manifest;
+	}
+
+	/**
+	 * Records the source files of the model and the files generated from
+	 * them in the manifest of the output directory.
+	 */
+	protected void updateOutputManifest(OutputType outputType) {
+		OutputManifest manifest = getOutputManifest();
+		for (spoon.reflect.cu.CompilationUnit cu : factory.CompilationUnit()
+				.getMap().values()) {
+			File source = cu.getFile();
+			if (source == null || !source.isFile()
+					|| cu.getDeclaredTypes().isEmpty()) {
 				continue;
 			}
-			File f = sf.toFile();
-			for (String s : relativeOutputPaths) {
-				if (f.getAbsolutePath().endsWith(s)) {
-					if (f.lastModified() <= new File(outputDirectory, s)
-							.lastModified()) {
-						files.remove(sf);
-					}
+			CtPackage pack = cu.getDeclaredTypes().get(0).getPackage();
+			String packagePath = "";
+			if (pack != null
+					&& !pack.getQualifiedName().equals(
+							CtPackage.TOP_LEVEL_PACKAGE_NAME)) {
+				packagePath = pack.getQualifiedName().replace('.', '/') + "/";
+			}
+			List<String> outputs = new ArrayList<String>();
+			if (outputType == OutputType.CLASSES) {
+				for (CtType<?> t : cu.getDeclaredTypes()) {
+					outputs.add(packagePath + t.getSimpleName()
+							+ DefaultJavaPrettyPrinter.JAVA_FILE_EXTENSION);
 				}
+			} else {
+				outputs.add(packagePath + cu.getMainType().getSimpleName()
+						+ DefaultJavaPrettyPrinter.JAVA_FILE_EXTENSION);
 			}
+			manifest.put(packagePath + source.getName(), source, outputs);
 		}
-		// System.out.println("filtered: " + files);
+		manifest.save();
 	}
 
 	protected boolean buildSources() {
@@ -211,23 +303,16 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		
 		List<SpoonFile> filesToBuild = sources.getAllJavaFiles();
 		if (buildOnlyOutdatedFiles) {
-			if (outputDirectory.exists()) {
-				@SuppressWarnings("unchecked")
-				Collection<File> outputFiles = FileUtils.listFiles(
-						outputDirectory, new String[] { "java" }, true);
-				keepOutdatedFiles(filesToBuild, outputFiles);
-			} else {
-				keepOutdatedFiles(filesToBuild, new ArrayList<File>());
-			}
+			keepOutdatedFiles(filesToBuild);
 		}
+		Metrics metrics = factory.getEnvironment().getMetrics();
+		long start = metrics.start();
 		CompilationUnitDeclaration[] units = batchCompiler
 				.getUnits(filesToBuild);
+		metrics.stop(Metrics.PHASE, "jdt", start);
 
 		// here we build the model
-		JDTTreeBuilder builder = new JDTTreeBuilder(factory);
-		for (CompilationUnitDeclaration unit : units) {
-			unit.traverse(builder, unit.scope);
-		}
+		buildModel(units);
 
 		return probs.size() == 0;
 	}
@@ -293,6 +378,19 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 	protected boolean buildTemplates() {
 		if (templates.getAllJavaFiles().isEmpty())
 			return true;
+		String key = null;
+		Set<String> previousUnits = null;
+		if (templateModelCache != null) {
+			key = templateModelCache.getKey(templates.getAllJavaFiles(),
+					templateClasspath, javaCompliance);
+			if (templateModelCache.load(key, factory)) {
+				factory.getEnvironment().debugMessage(
+						"templates restored from " + key);
+				return true;
+			}
+			previousUnits = new HashSet<String>(factory.CompilationUnit()
+					.getMap().keySet());
+		}
 		JDTBatchCompiler batchCompiler = createBatchCompiler();
 		List<String> args = new ArrayList<String>();
 		args.add("-1." + javaCompliance);
@@ -351,23 +449,51 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		// printUsage();
 		// System.out.println("=>" + args);
 		batchCompiler.configure(args.toArray(new String[0]));
+		Metrics metrics = factory.getEnvironment().getMetrics();
+		long start = metrics.start();
 		CompilationUnitDeclaration[] units = batchCompiler.getUnits(templates
 				.getAllJavaFiles());
+		metrics.stop(Metrics.PHASE, "jdt", start);
 
 		if (f != null && f.exists()) {
 			f.delete();
 		}
 
 		// here we build the model in the template factory
-		JDTTreeBuilder builder = new JDTTreeBuilder(factory);
-		for (CompilationUnitDeclaration unit : units) {
-			unit.traverse(builder, unit.scope);
+		buildModel(units);
+
+		if (templateModelCache != null && probs.size() == 0) {
+			List<spoon.reflect.cu.CompilationUnit> built = new ArrayList<spoon.reflect.cu.CompilationUnit>();
+			for (Map.Entry<String, spoon.reflect.cu.CompilationUnit> e : factory
+					.CompilationUnit().getMap().entrySet()) {
+				if (!previousUnits.contains(e.getKey())) {
+					built.add(e.getValue());
+				}
+			}
+			templateModelCache.save(key, factory, built);
 		}
 
 		return probs.size() == 0;
 
 	}
 
+	/**
+	 * Builds the Spoon model of the given compilation units, recording the
+	 * time spent on each of them in the metrics.
+	 */
+	private void buildModel(CompilationUnitDeclaration[] units) {
+		Metrics metrics = factory.getEnvironment().getMetrics();
+		JDTTreeBuilder builder = new JDTTreeBuilder(factory);
+		for (CompilationUnitDeclaration unit : units) {
+			long start = metrics.start();
+			unit.traverse(builder, unit.scope);
+			if (metrics.isEnabled()) {
+				metrics.stop(Metrics.BUILD, new String(unit.getFileName()),
+						start);
+			}
+		}
+	}
+
 	PrintWriter out;
 
 	/*
@@ -395,6 +521,13 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		this.environment = environment;
 	}
 
+	/**
+	 * Gets the name environment used to look up the binary types, if any.
+	 */
+	public INameEnvironment getNameEnvironment() {
+		return environment;
+	}
+
 	// public CompilationUnitDeclaration[] getUnits(JDTBatchCompiler compiler,
 	// List<SpoonFile> streams) throws Exception {
 	// compiler.startTime = System.currentTimeMillis();
@@ -599,7 +732,7 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		args.add("-noExit");
 		// args.add("-verbose");
 		args.add("-proc:none");
-		if (getDestinationDirectory() != null) {
+		if (getDestinationDirectory() != null && classFileStore == null) {
 			args.add("-d");
 			args.add(getDestinationDirectory().getAbsolutePath());
 		} else {
@@ -636,31 +769,17 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		if (buildOnlyOutdatedFiles) {
 
 			// ignore the files that are not outdated
-			if (outputDirectory.exists()) {
-				@SuppressWarnings("unchecked")
-				Collection<File> outputFiles = FileUtils.listFiles(
-						outputDirectory, new String[] { "java" }, true);
-				int offset = outputDirectory.getAbsolutePath().length() + 1;
-				Collection<String> relativeOutputPaths = new ArrayList<String>();
-				for (File f : outputFiles) {
-					relativeOutputPaths.add(f.getAbsolutePath().substring(
-							offset));
+			OutputManifest manifest = getOutputManifest();
+			for (SpoonFile sf : sources.getAllJavaFiles()) {
+				if (factory.CompilationUnit().getMap()
+						.containsKey(sf.getPath())) {
+					continue;
 				}
-				for (SpoonFile sf : sources.getAllJavaFiles()) {
-					if (factory.CompilationUnit().getMap()
-							.containsKey(sf.getPath())) {
-						continue;
-					}
-					File source = sf.toFile();
-					for (String out : relativeOutputPaths) {
-						if (source.getAbsolutePath().endsWith(out)) {
-							if (source.lastModified() <= new File(
-									outputDirectory, out).lastModified()) {
-								batchCompiler
-										.ignoreFile(new File(outputDirectory,
-												out).getAbsolutePath());
-							}
-						}
+				File source = sf.toFile();
+				if (manifest.isUpToDate(source)) {
+					for (String out : manifest.getOutputs(source)) {
+						batchCompiler.ignoreFile(new File(outputDirectory,
+								out).getAbsolutePath());
 					}
 				}
 			}
@@ -673,12 +792,17 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 
 		getFactory().getEnvironment().debugMessage("compile args: " + args);
 
-		// batchCompiler.batchCompiler.useSingleThread = true;
-
-		System.setProperty("jdt.compiler.useSingleThread", "true");
+		int threads = factory.getEnvironment().getCompilationThreads();
+		if (threads > 1) {
+			printCompilationUnits(threads);
+		}
 
 		batchCompiler.compile(args.toArray(new String[0]));
 
+		// the printed contents are outdated as soon as the model changes
+		loadedContent.clear();
+		factory.getEnvironment().getPrintedSourceCache().clear();
+
 		reportProblems(factory.getEnvironment());
 
 		factory.getEnvironment().debugMessage(
@@ -708,6 +832,9 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		case NO_OUTPUT:
 
 		}
+		if (buildOnlyOutdatedFiles && outputType != OutputType.NO_OUTPUT) {
+			updateOutputManifest(outputType);
+		}
 	}
 
 	protected void generateProcessedSourceFilesUsingTypes() {
@@ -818,20 +945,61 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		}
 	}
 
-	protected InputStream getCompilationUnitInputStream(String path) {
+	/**
+	 * Prints all the compilation units of the model in parallel, so that
+	 * their contents are available to the compiler threads without touching
+	 * the model.
+	 */
+	protected void printCompilationUnits(int threads) {
+		List<Callable<char[]>> tasks = new ArrayList<Callable<char[]>>();
+		final List<String> paths = new ArrayList<String>(factory
+				.CompilationUnit().getMap().keySet());
+		for (final String path : paths) {
+			tasks.add(new Callable<char[]>() {
+				public char[] call() {
+					return getCompilationUnitContents(path);
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<char[]>> contents = executor.invokeAll(tasks);
+			for (int i = 0; i < paths.size(); i++) {
+				loadedContent.put(paths.get(i), contents.get(i).get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpoonException("printing interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SpoonException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the printed contents of a compilation unit of the model, reusing
+	 * the ones printed by the output processor if they are still in the
+	 * {@link PrintedSourceCache}.
+	 */
+	protected char[] getCompilationUnitContents(String path) {
 		Environment env = factory.getEnvironment();
 		spoon.reflect.cu.CompilationUnit cu = factory.CompilationUnit()
 				.getMap().get(path);
-		List<CtType<?>> toBePrinted = cu.getDeclaredTypes();
-
-		PrettyPrinter printer = null;
-
-		if (printer == null) {
-			printer = new DefaultJavaPrettyPrinter(env);
+		PrintedSourceCache cache = env.getPrintedSourceCache();
+		char[] contents = cache.get(cu);
+		if (contents == null) {
+			PrettyPrinter printer = new DefaultJavaPrettyPrinter(env);
+			printer.calculate(cu, cu.getDeclaredTypes());
+			contents = printer.getResult().toCharArray();
+			cache.put(cu, contents);
 		}
-		printer.calculate(cu, toBePrinted);
+		return contents;
+	}
 
-		return new ByteArrayInputStream(printer.getResult().toString().getBytes());
+	protected InputStream getCompilationUnitInputStream(String path) {
+		return new ByteArrayInputStream(new String(
+				getCompilationUnitContents(path)).getBytes());
 	}
 
 	@Override
@@ -858,7 +1026,7 @@ public class JDTBasedSpoonCompiler implements SpoonCompiler {
 		args.add("-enableJavadoc");
 		args.add("-noExit");
 		args.add("-proc:none");
-		if (getDestinationDirectory() != null) {
+		if (getDestinationDirectory() != null && classFileStore == null) {
 			args.add("-d");
 			args.add(getDestinationDirectory().getAbsolutePath());
 		} else {
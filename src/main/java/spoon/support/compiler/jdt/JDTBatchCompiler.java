@@ -8,15 +8,18 @@ import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.ClassFile;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 
 import spoon.Launcher;
 import spoon.compiler.SpoonFile;
+import spoon.support.compiler.ClassFileStore;
 
 // we use a fully qualified name to make it clear we are extending jdt
 class JDTBatchCompiler extends org.eclipse.jdt.internal.compiler.batch.Main {
@@ -44,11 +47,38 @@ class JDTBatchCompiler extends org.eclipse.jdt.internal.compiler.batch.Main {
 						JDTBatchCompiler.this.jdtCompiler.reportProblem(problem);
 					}
 				}
+				ClassFileStore store = jdtCompiler.getClassFileStore();
+				if (store != null
+						&& (!compilationResult.hasErrors() || proceedOnError)) {
+					for (ClassFile classFile : compilationResult
+							.getClassFiles()) {
+						store.put(new String(classFile.fileName()).replace(
+								'/', '.'), classFile.getBytes());
+					}
+				}
 				r.acceptResult(compilationResult);
 			}
 		};
 	}
 
+	/**
+	 * Gets the name environment of the classpath from the name environment
+	 * cache of the factory if there is one, or opens it.
+	 */
+	@Override
+	public FileSystem getLibraryAccess() {
+		NameEnvironmentCache cache = jdtCompiler.getFactory().getEnvironment()
+				.getNameEnvironmentCache();
+		if (cache == null || checkedClasspaths == null) {
+			return super.getLibraryAccess();
+		}
+		String[] classpath = new String[checkedClasspaths.length];
+		for (int i = 0; i < classpath.length; i++) {
+			classpath[i] = checkedClasspaths[i].getPath();
+		}
+		return cache.getEnvironment(classpath);
+	}
+
 	private Set<String> ignoredFiles = new HashSet<String>();
 
 	public void ignoreFile(String filePath) {
@@ -68,6 +98,12 @@ class JDTBatchCompiler extends org.eclipse.jdt.internal.compiler.batch.Main {
 			units = l.toArray(new CompilationUnit[0]);
 		}
 		if (useFactory) {
+			if (batchCompiler != null) {
+				// the contents are printed from the model, which is only safe
+				// from several threads if they have all been printed up front
+				batchCompiler.useSingleThread = jdtCompiler.getFactory()
+						.getEnvironment().getCompilationThreads() <= 1;
+			}
 			for (int i = 0; i < units.length; i++) {
 				CompilationUnit unit = units[i];
 				units[i] = new CompilationUnitWrapper(this.jdtCompiler, unit);
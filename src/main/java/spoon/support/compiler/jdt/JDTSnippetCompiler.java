@@ -95,6 +95,10 @@ public class JDTSnippetCompiler extends JDTBasedSpoonCompiler {
 		getFactory().getEnvironment().debugMessage("build args: " + args);
 
 		batchCompiler.configure(args.toArray(new String[0]));
+		if (environment == null) {
+			// kept so that it can be reused by the next snippet compilations
+			environment = batchCompiler.getLibraryAccess();
+		}
 		
 		CompilationUnitDeclaration[] units = batchCompiler.getUnits(sources
 				.getAllJavaFiles());
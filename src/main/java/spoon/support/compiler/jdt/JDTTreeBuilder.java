@@ -20,6 +20,7 @@ package spoon.support.compiler.jdt;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -365,6 +366,19 @@ public class JDTTreeBuilder extends ASTVisitor {
 
 		boolean bounds = false;
 
+		/**
+		 * The references already built for the type bindings, outside of a
+		 * bounded context. The bindings are unique within a build, and the
+		 * cached references are only used as prototypes for copies.
+		 */
+		Map<TypeBinding, CtTypeReference<?>> bindingCache = new IdentityHashMap<TypeBinding, CtTypeReference<?>>();
+
+		/**
+		 * The references already built for the method bindings, outside of a
+		 * bounded context.
+		 */
+		Map<MethodBinding, CtExecutableReference<?>> executableCache = new IdentityHashMap<MethodBinding, CtExecutableReference<?>>();
+
 		public CtTypeReference<?> getBoundedTypeReference(TypeBinding binding) {
 			bounds = true;
 			CtTypeReference<?> ref = getTypeReference(binding);
@@ -378,6 +392,13 @@ public class JDTTreeBuilder extends ASTVisitor {
 			if (exec == null) {
 				return null; 
 			}
+			if (!bounds) {
+				CtExecutableReference<T> cached = (CtExecutableReference<T>) executableCache
+						.get(exec);
+				if (cached != null) {
+					return copy(cached);
+				}
+			}
 
 			CtExecutableReference<T> ref = factory.Core()
 					.createExecutableReference();
@@ -404,6 +425,9 @@ public class JDTTreeBuilder extends ASTVisitor {
 				ref.setParameters(parameters);
 			}
 
+			if (!bounds) {
+				executableCache.put(exec, copy(ref));
+			}
 			return ref;
 		}
 
@@ -411,14 +435,9 @@ public class JDTTreeBuilder extends ASTVisitor {
 			String name = new String(reference.shortReadableName());
 			if (name.length() == 0)
 				return null;
-			CtPackageReference ref = factory.Core().createPackageReference();
-			ref.setSimpleName(name);
-			return ref;
+			return factory.Package().getSharedReference(name);
 		}
 
-		// Map<TypeBinding, CtTypeReference<?>> bindingCache = new
-		// HashMap<TypeBinding, CtTypeReference<?>>();
-
 		public <T> CtTypeReference<T> getTypeReference(TypeBinding binding, TypeReference ref) {
 			CtTypeReference<T> ctRef = getTypeReference(binding);
 			if (ctRef != null) {
@@ -434,6 +453,17 @@ public class JDTTreeBuilder extends ASTVisitor {
 			if (binding == null)
 				return null;
 
+			// the result only depends on the binding outside of a bounded
+			// context
+			boolean cache = !bounds && !(binding instanceof BaseTypeBinding);
+			if (cache) {
+				CtTypeReference<T> cached = (CtTypeReference<T>) bindingCache
+						.get(binding);
+				if (cached != null) {
+					return copy(cached);
+				}
+			}
+
 			CtTypeReference<?> ref = null;
 
 			if (binding instanceof RawTypeBinding) {
@@ -451,7 +481,6 @@ public class JDTTreeBuilder extends ASTVisitor {
 					}
 				}
 
-				// bindingCache.put(binding, ref);
 				if (((ParameterizedTypeBinding) binding).arguments != null) {
 					for (TypeBinding b : ((ParameterizedTypeBinding) binding).arguments) {
 						ref.addActualTypeArgument(getTypeReference(b));
@@ -493,7 +522,6 @@ public class JDTTreeBuilder extends ASTVisitor {
 				if (bounds && b.superInterfaces != null
 						&& b.superInterfaces != Binding.NO_SUPERINTERFACES) {
 					bounds = false;
-					// bindingCache.put(binding, ref);
 					for (int i = 0, length = b.superInterfaces.length; i < length; i++) {
 						TypeBinding tb = b.superInterfaces[i];
 						((CtTypeParameterReference) ref)
@@ -575,11 +603,74 @@ public class JDTTreeBuilder extends ASTVisitor {
 				throw new RuntimeException("Unknown TypeBinding: "
 						+ binding.getClass() + " " + binding);
 			}
-			// bindingCache.remove(binding);
 			addTypeAnnotationFromBindingToReference(binding, ref);
+			if (cache) {
+				bindingCache.put(binding, copy(ref));
+			}
 			return (CtTypeReference<T>) ref;
 		}
 
+		/**
+		 * Copies a reference built by this builder, so that the cached
+		 * references are never shared by the model. The package references
+		 * and the primitive type references are shared, as when they are
+		 * built.
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> CtTypeReference<T> copy(CtTypeReference<T> ref) {
+			if (ref == null || (ref.getSimpleName() != null
+					&& basestypes.get(ref.getSimpleName()) == ref)) {
+				return ref;
+			}
+			CtTypeReference<T> result;
+			if (ref instanceof CtArrayTypeReference) {
+				CtArrayTypeReference<T> array = factory.Core()
+						.createArrayTypeReference();
+				array.setComponentType(copy(((CtArrayTypeReference<T>) ref)
+						.getComponentType()));
+				result = array;
+			} else if (ref instanceof CtTypeParameterReference) {
+				CtTypeParameterReference parameter = factory.Core()
+						.createTypeParameterReference();
+				parameter.setSimpleName(ref.getSimpleName());
+				parameter.setUpper(((CtTypeParameterReference) ref).isUpper());
+				for (CtTypeReference<?> bound : ((CtTypeParameterReference) ref)
+						.getBounds()) {
+					parameter.addBound(copy(bound));
+				}
+				result = (CtTypeReference<T>) parameter;
+			} else {
+				result = factory.Core().createTypeReference();
+				result.setSimpleName(ref.getSimpleName());
+				result.setPackage(ref.getPackage());
+				result.setDeclaringType(copy(ref.getDeclaringType()));
+			}
+			for (CtTypeReference<?> argument : ref.getActualTypeArguments()) {
+				result.addActualTypeArgument(copy(argument));
+			}
+			for (CtAnnotation<? extends java.lang.annotation.Annotation> annotation : ref
+					.getTypeAnnotations()) {
+				result.addTypeAnnotation(factory.Core().clone(annotation));
+			}
+			return result;
+		}
+
+		private <T> CtExecutableReference<T> copy(CtExecutableReference<T> ref) {
+			CtExecutableReference<T> result = factory.Core()
+					.createExecutableReference();
+			result.setDeclaringType(copy(ref.getDeclaringType()));
+			result.setType(copy(ref.getType()));
+			result.setSimpleName(ref.getSimpleName());
+			result.setStatic(ref.isStatic());
+			List<CtTypeReference<?>> parameters = new ArrayList<CtTypeReference<?>>(
+					ref.getParameters().size());
+			for (CtTypeReference<?> parameter : ref.getParameters()) {
+				parameters.add(copy(parameter));
+			}
+			result.setParameters(parameters);
+			return result;
+		}
+
 		private void addTypeAnnotationFromBindingToReference(TypeBinding resolvedType, CtTypeReference<?> reference) {
 			if (resolvedType.hasTypeAnnotations()) {
 				final AnnotationBinding[] typeAnnotations = resolvedType.getTypeAnnotations();
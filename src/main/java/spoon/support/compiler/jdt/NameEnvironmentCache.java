@@ -0,0 +1,240 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.compiler.jdt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.batch.ClasspathDirectory;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+/**
+ * A cache of the JDT name environments, which lets several builds,
+ * compilations and snippet compilations in the same JVM share the opened
+ * jars, the package indexes and the binary types of their classpath instead
+ * of opening and indexing the classpath again each time.
+ *
+ * <p>
+ * The cache is used by the compilers of the factories whose environment
+ * holds it (see
+ * {@link spoon.compiler.Environment#setNameEnvironmentCache(NameEnvironmentCache)}).
+ * It keeps one name environment per classpath. The name environments are
+ * thread-safe and stay open until {@link #close()} is called. The lookups
+ * are remembered, so that {@link #refresh()} must be called when the
+ * contents of the classpath change, for instance when a classpath directory
+ * is the output of a previous compilation, or when a jar is rebuilt.
+ */
+public class NameEnvironmentCache {
+
+	private final Map<List<String>, CachedFileSystem> environments = new LinkedHashMap<List<String>, CachedFileSystem>();
+
+	/**
+	 * Gets the name environment of the given classpath, and opens it if it
+	 * is not in this cache.
+	 *
+	 * @param classpath
+	 *            the paths of the jars and directories of the classpath,
+	 *            including the boot classpath
+	 */
+	public synchronized FileSystem getEnvironment(String[] classpath) {
+		List<String> key = new ArrayList<String>(Arrays.asList(classpath));
+		CachedFileSystem environment = environments.get(key);
+		if (environment == null) {
+			List<FileSystem.Classpath> entries = new ArrayList<FileSystem.Classpath>();
+			for (String path : classpath) {
+				// null for the paths which are neither directories nor archives
+				FileSystem.Classpath entry = FileSystem.getClasspath(path,
+						null, null);
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+			environment = new CachedFileSystem(
+					entries.toArray(new FileSystem.Classpath[entries.size()]),
+					classpath);
+			environments.put(key, environment);
+		}
+		return environment;
+	}
+
+	/**
+	 * Gets the number of name environments of this cache.
+	 */
+	public synchronized int size() {
+		return environments.size();
+	}
+
+	/**
+	 * Forgets the lookups of all the name environments, so that the changes
+	 * of the classpath directories are seen by the next compilations. The
+	 * jars stay open, unless their size or modification time changed, in
+	 * which case their name environments are closed and opened again by the
+	 * next compilations.
+	 */
+	public synchronized void refresh() {
+		Iterator<CachedFileSystem> it = environments.values().iterator();
+		while (it.hasNext()) {
+			CachedFileSystem environment = it.next();
+			if (environment.isOutdated()) {
+				environment.close();
+				it.remove();
+			} else {
+				environment.refresh();
+			}
+		}
+	}
+
+	/**
+	 * Closes the jars of all the name environments and removes them from
+	 * this cache. The cache can still be used afterwards, in which case the
+	 * classpath is opened again.
+	 */
+	public synchronized void close() {
+		for (CachedFileSystem environment : environments.values()) {
+			environment.close();
+		}
+		environments.clear();
+	}
+
+	/**
+	 * A name environment which remembers its lookups and which is not
+	 * cleaned up by the compilers using it.
+	 */
+	private static class CachedFileSystem extends FileSystem {
+
+		private static final NameEnvironmentAnswer NOT_FOUND = new NameEnvironmentAnswer(
+				(org.eclipse.jdt.internal.compiler.env.ICompilationUnit) null,
+				null);
+
+		private final Map<String, NameEnvironmentAnswer> types = new HashMap<String, NameEnvironmentAnswer>();
+
+		private final Map<String, Boolean> packages = new HashMap<String, Boolean>();
+
+		/**
+		 * The stamps of the classpath entries which are not directories.
+		 */
+		private final Map<String, Long> stamps = new HashMap<String, Long>();
+
+		CachedFileSystem(FileSystem.Classpath[] classpath, String[] paths) {
+			super(classpath, null);
+			for (String path : paths) {
+				File file = new File(path);
+				if (!file.isDirectory()) {
+					stamps.put(path, getStamp(file));
+				}
+			}
+		}
+
+		private static long getStamp(File file) {
+			return file.lastModified() * 31 + file.length();
+		}
+
+		@Override
+		public synchronized NameEnvironmentAnswer findType(char[][] compoundName) {
+			String key = CharOperation.toString(compoundName);
+			NameEnvironmentAnswer answer = types.get(key);
+			if (answer == null) {
+				answer = super.findType(compoundName);
+				types.put(key, answer == null ? NOT_FOUND : answer);
+			}
+			return answer == NOT_FOUND ? null : answer;
+		}
+
+		@Override
+		public synchronized NameEnvironmentAnswer findType(char[] typeName,
+				char[][] packageName) {
+			String key = CharOperation.toString(CharOperation.arrayConcat(
+					packageName, typeName));
+			NameEnvironmentAnswer answer = types.get(key);
+			if (answer == null) {
+				answer = super.findType(typeName, packageName);
+				types.put(key, answer == null ? NOT_FOUND : answer);
+			}
+			return answer == NOT_FOUND ? null : answer;
+		}
+
+		@Override
+		public synchronized NameEnvironmentAnswer findType(
+				char[][] compoundName, boolean asBinaryOnly) {
+			return super.findType(compoundName, asBinaryOnly);
+		}
+
+		@Override
+		public synchronized char[][][] findTypeNames(char[][] packageName) {
+			return super.findTypeNames(packageName);
+		}
+
+		@Override
+		public synchronized boolean isPackage(char[][] compoundName,
+				char[] packageName) {
+			String key = CharOperation.toString(CharOperation.arrayConcat(
+					compoundName == null ? CharOperation.NO_CHAR_CHAR
+							: compoundName, packageName));
+			Boolean result = packages.get(key);
+			if (result == null) {
+				result = super.isPackage(compoundName, packageName);
+				packages.put(key, result);
+			}
+			return result;
+		}
+
+		/**
+		 * Does nothing: the jars stay open until the cache is closed.
+		 */
+		@Override
+		public void cleanup() {
+		}
+
+		/**
+		 * Tells if a jar of the classpath changed since it was opened.
+		 */
+		synchronized boolean isOutdated() {
+			for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+				if (getStamp(new File(stamp.getKey())) != stamp.getValue()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		synchronized void refresh() {
+			types.clear();
+			packages.clear();
+			// the directories cache their listings
+			for (FileSystem.Classpath entry : classpaths) {
+				if (entry instanceof ClasspathDirectory) {
+					entry.reset();
+				}
+			}
+		}
+
+		synchronized void close() {
+			refresh();
+			super.cleanup();
+		}
+	}
+
+}
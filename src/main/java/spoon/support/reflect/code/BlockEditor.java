@@ -0,0 +1,260 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.reflect.code;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import spoon.SpoonException;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtStatement;
+import spoon.reflect.code.CtStatementList;
+import spoon.reflect.declaration.CtConstructor;
+
+/**
+ * Edits the statements of a block in batch. The insertions and removals are
+ * recorded relatively to the statements of the block and are all applied by
+ * {@link #apply()} in a single rebuild of the statement list, which is much
+ * faster than calling {@link CtStatement#insertAfter(CtStatement)} or
+ * {@link CtStatement#insertBefore(CtStatement)} for many statements of a
+ * large block, since each of these calls scans and shifts the list.
+ *
+ * <p>
+ * The recorded targets must be direct children of the edited block. The
+ * inserted statements are inserted in the order they were recorded and
+ * their parent is set to the block.
+ */
+public class BlockEditor {
+
+	private final CtBlock<?> block;
+
+	private final Map<CtStatement, List<CtStatement>> before = new IdentityHashMap<CtStatement, List<CtStatement>>();
+
+	private final Map<CtStatement, List<CtStatement>> after = new IdentityHashMap<CtStatement, List<CtStatement>>();
+
+	private final Map<CtStatement, Boolean> removed = new IdentityHashMap<CtStatement, Boolean>();
+
+	private final List<CtStatement> begin = new ArrayList<CtStatement>();
+
+	private final List<CtStatement> end = new ArrayList<CtStatement>();
+
+	private int insertions;
+
+	/**
+	 * Creates an editor for the given block.
+	 */
+	public BlockEditor(CtBlock<?> block) {
+		this.block = block;
+	}
+
+	/**
+	 * Gets the edited block.
+	 */
+	public CtBlock<?> getBlock() {
+		return block;
+	}
+
+	/**
+	 * Records the insertion of a statement before the given target.
+	 */
+	public BlockEditor insertBefore(CtStatement target, CtStatement statement) {
+		checkTarget(target);
+		if (isConstructorCall(target)) {
+			throw new SpoonException(
+					"cannot insert a statement before a super or this invocation.");
+		}
+		add(before, target, statement);
+		return this;
+	}
+
+	/**
+	 * Records the insertion of statements before the given target.
+	 */
+	public BlockEditor insertBefore(CtStatement target,
+			CtStatementList statements) {
+		for (CtStatement s : statements.getStatements()) {
+			insertBefore(target, s);
+		}
+		return this;
+	}
+
+	/**
+	 * Records the insertion of a statement after the given target.
+	 */
+	public BlockEditor insertAfter(CtStatement target, CtStatement statement) {
+		checkTarget(target);
+		add(after, target, statement);
+		return this;
+	}
+
+	/**
+	 * Records the insertion of statements after the given target.
+	 */
+	public BlockEditor insertAfter(CtStatement target,
+			CtStatementList statements) {
+		for (CtStatement s : statements.getStatements()) {
+			insertAfter(target, s);
+		}
+		return this;
+	}
+
+	/**
+	 * Records the insertion of a statement at the beginning of the block
+	 * (after the super or this invocation for a constructor body).
+	 */
+	public BlockEditor insertBegin(CtStatement statement) {
+		begin.add(statement);
+		insertions++;
+		return this;
+	}
+
+	/**
+	 * Records the insertion of a statement at the end of the block.
+	 */
+	public BlockEditor insertEnd(CtStatement statement) {
+		end.add(statement);
+		insertions++;
+		return this;
+	}
+
+	/**
+	 * Records the removal of the given statement. The statements recorded
+	 * for insertion before or after it are still inserted.
+	 */
+	public BlockEditor remove(CtStatement target) {
+		checkTarget(target);
+		removed.put(target, Boolean.TRUE);
+		return this;
+	}
+
+	/**
+	 * Records the replacement of the given statement by another one.
+	 */
+	public BlockEditor replace(CtStatement target, CtStatement statement) {
+		remove(target);
+		add(after, target, statement);
+		return this;
+	}
+
+	/**
+	 * Tells if no modification has been recorded since the last
+	 * {@link #apply()}.
+	 */
+	public boolean isEmpty() {
+		return insertions == 0 && removed.isEmpty();
+	}
+
+	/**
+	 * Applies all the recorded modifications to the block and clears this
+	 * editor.
+	 */
+	public void apply() {
+		if (isEmpty()) {
+			return;
+		}
+		List<CtStatement> statements = block.getStatements();
+		List<CtStatement> result = new ArrayList<CtStatement>(
+				statements.size() + insertions);
+		int found = 0;
+		boolean beginDone = begin.isEmpty();
+		if (!beginDone
+				&& (statements.isEmpty() || !isConstructorCall(statements.get(0)))) {
+			insert(result, begin);
+			beginDone = true;
+		}
+		for (CtStatement s : statements) {
+			List<CtStatement> l = before.get(s);
+			if (l != null) {
+				insert(result, l);
+				found++;
+			}
+			if (removed.containsKey(s)) {
+				found++;
+			} else {
+				result.add(s);
+			}
+			l = after.get(s);
+			if (l != null) {
+				insert(result, l);
+				found++;
+			}
+			if (!beginDone) {
+				insert(result, begin);
+				beginDone = true;
+			}
+		}
+		insert(result, end);
+		if (found != before.size() + after.size() + removed.size()) {
+			clear();
+			throw new SpoonException(
+					"some edited statements are no longer in the block");
+		}
+		statements.clear();
+		statements.addAll(result);
+		clear();
+	}
+
+	/**
+	 * Discards all the recorded modifications.
+	 */
+	public void clear() {
+		before.clear();
+		after.clear();
+		removed.clear();
+		begin.clear();
+		end.clear();
+		insertions = 0;
+	}
+
+	private void add(Map<CtStatement, List<CtStatement>> map,
+			CtStatement target, CtStatement statement) {
+		List<CtStatement> l = map.get(target);
+		if (l == null) {
+			l = new ArrayList<CtStatement>(1);
+			map.put(target, l);
+		}
+		l.add(statement);
+		insertions++;
+	}
+
+	private void insert(List<CtStatement> result, List<CtStatement> statements) {
+		for (CtStatement s : statements) {
+			s.setParent(block);
+			result.add(s);
+		}
+	}
+
+	private void checkTarget(CtStatement target) {
+		if (!target.isParentInitialized() || target.getParent() != block) {
+			throw new SpoonException(
+					"the edited statement must be a direct child of the block");
+		}
+	}
+
+	private boolean isConstructorCall(CtStatement statement) {
+		return statement instanceof CtInvocation
+				&& block.isParentInitialized()
+				&& block.getParent() instanceof CtConstructor
+				&& ((CtInvocation<?>) statement).getExecutable()
+						.getSimpleName().startsWith("<init>");
+	}
+
+}
@@ -114,30 +114,54 @@ public class CtBlockImpl<R> extends CtStatementImpl implements CtBlock<R> {
 
 	public void insertAfter(Filter<? extends CtStatement> insertionPoints,
 			CtStatement statement) {
+		BlockEditor editor = new BlockEditor(this);
 		for (CtStatement e : Query.getElements(this, insertionPoints)) {
-			e.insertAfter(statement);
+			if (e.isParentInitialized() && e.getParent() == this) {
+				editor.insertAfter(e, statement);
+			} else {
+				e.insertAfter(statement);
+			}
 		}
+		editor.apply();
 	}
 
 	public void insertAfter(Filter<? extends CtStatement> insertionPoints,
 			CtStatementList statements) {
+		BlockEditor editor = new BlockEditor(this);
 		for (CtStatement e : Query.getElements(this, insertionPoints)) {
-			e.insertAfter(statements);
+			if (e.isParentInitialized() && e.getParent() == this) {
+				editor.insertAfter(e, statements);
+			} else {
+				e.insertAfter(statements);
+			}
 		}
+		editor.apply();
 	}
 
 	public void insertBefore(Filter<? extends CtStatement> insertionPoints,
 			CtStatement statement) {
+		BlockEditor editor = new BlockEditor(this);
 		for (CtStatement e : Query.getElements(this, insertionPoints)) {
-			e.insertBefore(statement);
+			if (e.isParentInitialized() && e.getParent() == this) {
+				editor.insertBefore(e, statement);
+			} else {
+				e.insertBefore(statement);
+			}
 		}
+		editor.apply();
 	}
 
 	public void insertBefore(Filter<? extends CtStatement> insertionPoints,
 			CtStatementList statements) {
+		BlockEditor editor = new BlockEditor(this);
 		for (CtStatement e : Query.getElements(this, insertionPoints)) {
-			e.insertBefore(statements);
+			if (e.isParentInitialized() && e.getParent() == this) {
+				editor.insertBefore(e, statements);
+			} else {
+				e.insertBefore(statements);
+			}
 		}
+		editor.apply();
 	}
 
 	public void setStatements(List<CtStatement> statements) {
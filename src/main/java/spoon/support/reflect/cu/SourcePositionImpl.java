@@ -133,6 +133,28 @@ public class SourcePositionImpl implements SourcePosition, Serializable {
 		return sourceStart;
 	}
 
+	private transient String sourceText;
+
+	public String getSourceText() {
+		if (sourceText == null) {
+			if (compilationUnit == null || sourceStart < 0
+					|| sourceEnd < sourceStart) {
+				return null;
+			}
+			String source;
+			try {
+				source = compilationUnit.getOriginalSourceCode();
+			} catch (RuntimeException e) {
+				return null;
+			}
+			if (source == null || sourceEnd >= source.length()) {
+				return null;
+			}
+			sourceText = source.substring(sourceStart, sourceEnd + 1);
+		}
+		return sourceText;
+	}
+
 	/**
 	 * Returns a string representation of this position in the form
 	 * "sourcefile:line", or "sourcefile" if no line number is available.
@@ -176,6 +198,7 @@ public class SourcePositionImpl implements SourcePosition, Serializable {
 
 	public void setCompilationUnit(CompilationUnit compilationUnit) {
 		this.compilationUnit = compilationUnit;
+		this.sourceText = null;
 	}
 
 }
@@ -25,6 +25,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -64,6 +65,12 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 	class AnnotationInvocationHandler implements InvocationHandler {
 		CtAnnotation<? extends Annotation> annotation;
 
+		/**
+		 * The converted values of the annotation elements, which are only
+		 * computed once.
+		 */
+		final Map<String, Object> values = new HashMap<String, Object>();
+
 		public AnnotationInvocationHandler(
 				CtAnnotation<? extends Annotation> annotation) {
 			super();
@@ -78,15 +85,34 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 			} else if (fieldname.equals("annotationType")) {
 				return annotation.getAnnotationType().getActualClass();
 			}
-			Object ret = getElementValue(fieldname);
-
-			// This is done here because return types should not be CT types;
-			// CtLiteral<String> vs String.
-			if (ret instanceof CtLiteral<?>) {
-				CtLiteral<?> l = (CtLiteral<?>) ret;
-				return l.getValue();
+			Object ret;
+			boolean computed;
+			synchronized (values) {
+				computed = values.containsKey(fieldname);
+				ret = values.get(fieldname);
+			}
+			if (!computed) {
+				ret = getElementValue(fieldname);
+
+				// This is done here because return types should not be CT
+				// types; CtLiteral<String> vs String.
+				if (ret instanceof CtLiteral<?>) {
+					CtLiteral<?> l = (CtLiteral<?>) ret;
+					ret = l.getValue();
+				}
+				synchronized (values) {
+					values.put(fieldname, ret);
+				}
 			}
 
+			// as with actual annotations, arrays are copied
+			if (ret != null && ret.getClass().isArray()) {
+				int length = Array.getLength(ret);
+				Object copy = Array.newInstance(ret.getClass()
+						.getComponentType(), length);
+				System.arraycopy(ret, 0, copy, 0, length);
+				ret = copy;
+			}
 			return ret;
 		}
 	}
@@ -95,6 +121,12 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 
 	CtTypeReference<A> annotationType;
 
+	/**
+	 * The proxy returned by {@link #getActualAnnotation()}, until this
+	 * annotation is modified.
+	 */
+	private transient A actualAnnotation;
+
 	private Map<String, Object> elementValues = new TreeMap<String, Object>() {
 
 		private static final long serialVersionUID = 3501647177461995350L;
@@ -132,6 +164,7 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 
 	@Override
 	public void addValue(String elementName, Object value) {
+		actualAnnotation = null;
 		if (!elementValues.containsKey(elementName)) {
 			elementValues.put(elementName, value);
 			if (value instanceof CtElement) {
@@ -159,9 +192,18 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 
 	@SuppressWarnings("unchecked")
 	public A getActualAnnotation() {
-		return (A) Proxy.newProxyInstance(annotationType.getActualClass()
-				.getClassLoader(), new Class[] { annotationType
-				.getActualClass() }, new AnnotationInvocationHandler(this));
+		A result = actualAnnotation;
+		// a cloned annotation must not use the proxy of its original
+		if (result == null
+				|| ((AnnotationInvocationHandler) Proxy
+						.getInvocationHandler(result)).annotation != this) {
+			result = (A) Proxy.newProxyInstance(annotationType
+					.getActualClass().getClassLoader(),
+					new Class[] { annotationType.getActualClass() },
+					new AnnotationInvocationHandler(this));
+			actualAnnotation = result;
+		}
+		return result;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -330,9 +372,18 @@ public class CtAnnotationImpl<A extends Annotation> extends CtExpressionImpl<A>
 	public void setAnnotationType(
 			CtTypeReference<? extends Annotation> annotationType) {
 		this.annotationType = (CtTypeReference<A>) annotationType;
+		actualAnnotation = null;
+		if (getFactory() != null && isParentInitialized()) {
+			for (CtAnnotation<?> a : getParent().getAnnotations()) {
+				if (a == this) {
+					getFactory().Annotation().index(this);
+				}
+			}
+		}
 	}
 
 	public void setElementValues(Map<String, Object> values) {
+		actualAnnotation = null;
 		this.elementValues.clear();
 		for (Entry<String, Object> e : values.entrySet()) {
 			addValue(e.getKey(), e.getValue());
@@ -339,6 +339,11 @@ public abstract class CtElementImpl implements CtElement, Serializable , Compara
 
 	public void setAnnotations(
 			List<CtAnnotation<? extends Annotation>> annotations) {
+		if (getFactory() != null) {
+			for (CtAnnotation<?> annot : this.annotations) {
+				getFactory().Annotation().unindex(annot);
+			}
+		}
 		this.annotations.clear();
 		for (CtAnnotation annot: annotations) {
 			addAnnotation(annot);
@@ -351,13 +356,23 @@ public abstract class CtElementImpl implements CtElement, Serializable , Compara
 					ANNOTATIONS_CONTAINER_DEFAULT_CAPACITY);
 		}
 		annotation.setParent(this);
-		return this.annotations.add(annotation);
+		boolean added = this.annotations.add(annotation);
+		if (getFactory() != null) {
+			getFactory().Annotation().index(annotation);
+		}
+		return added;
 	}
 
 	public boolean removeAnnotation(
 			CtAnnotation<? extends Annotation> annotation) {
-		return (List<?>) annotations != (List<?>) EMPTY_LIST() &&
-				this.annotations.remove(annotation);
+		if ((List<?>) annotations != (List<?>) EMPTY_LIST() &&
+				this.annotations.remove(annotation)) {
+			if (getFactory() != null) {
+				getFactory().Annotation().unindex(annotation);
+			}
+			return true;
+		}
+		return false;
 	}
 
 	public void setDocComment(String docComment) {
@@ -392,9 +407,28 @@ public abstract class CtElementImpl implements CtElement, Serializable , Compara
 	@SuppressWarnings("unchecked")
 	public <E extends CtElement> List<E> getAnnotatedChildren(
 			Class<? extends Annotation> annotationType) {
-		return (List<E>) Query
-				.getElements(this, new AnnotationFilter<CtElement>(
-						CtElement.class, annotationType));
+		final AnnotationFilter<CtElement> filter = new AnnotationFilter<CtElement>(
+				CtElement.class, annotationType);
+		if (getFactory() == null || !getFactory().Annotation().isIndexed(this)) {
+			return (List<E>) Query.getElements(this, filter);
+		}
+		// only visits the parents of the indexed annotated elements
+		final Set<CtElement> paths = getFactory().Annotation()
+				.getAnnotatedPaths(
+						Collections.singleton(annotationType.getName()));
+		final List<E> result = new ArrayList<E>();
+		new CtScanner() {
+			@Override
+			public void scan(CtElement element) {
+				if (element != null && paths.contains(element)) {
+					if (filter.matches(element)) {
+						result.add((E) element);
+					}
+					super.scan(element);
+				}
+			}
+		}.scan(this);
+		return result;
 	}
 
 	boolean implicit = false;
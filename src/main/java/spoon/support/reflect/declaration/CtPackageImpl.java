@@ -26,6 +26,7 @@ import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.reference.CtPackageReference;
 import spoon.reflect.visitor.CtVisitor;
+import spoon.support.util.QualifiedName;
 
 /**
  * The implementation for {@link spoon.reflect.declaration.CtPackage}.
@@ -39,6 +40,8 @@ public class CtPackageImpl extends CtNamedElementImpl implements CtPackage {
 
 	private Set<CtType<?>> types = new TreeSet<CtType<?>>();
 
+	private transient QualifiedName qualifiedName;
+
 	public static CtPackage ROOT_PACKAGE = new CtPackageImpl() {
 		@Override
 		public String getSimpleName() {
@@ -94,9 +97,14 @@ public class CtPackageImpl extends CtNamedElementImpl implements CtPackage {
 	}
 
 	public String getQualifiedName() {
-		if (getDeclaringPackage() == null || getDeclaringPackage() == ROOT_PACKAGE)
+		CtPackage declaringPackage = getDeclaringPackage();
+		if (declaringPackage == null || declaringPackage == ROOT_PACKAGE)
 			return getSimpleName();
-		return getDeclaringPackage().getQualifiedName() + "." + getSimpleName();
+		QualifiedName name = QualifiedName.get(qualifiedName,
+				declaringPackage.getQualifiedName(), PACKAGE_SEPARATOR,
+				getSimpleName());
+		qualifiedName = name;
+		return name.toString();
 	}
 
 	@SuppressWarnings("unchecked")
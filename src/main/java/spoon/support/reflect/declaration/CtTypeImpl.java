@@ -39,6 +39,7 @@ import spoon.reflect.visitor.CtScanner;
 import spoon.reflect.visitor.Query;
 import spoon.reflect.visitor.filter.ReferenceTypeFilter;
 import spoon.support.compiler.SnippetCompilationHelper;
+import spoon.support.util.QualifiedName;
 
 import static spoon.reflect.ModelElementContainerDefaultCapacities.FIELDS_CONTAINER_DEFAULT_CAPACITY;
 import static spoon.reflect.ModelElementContainerDefaultCapacities.TYPE_TYPE_PARAMETERS_CONTAINER_DEFAULT_CAPACITY;
@@ -64,6 +65,8 @@ public abstract class CtTypeImpl<T> extends CtNamedElementImpl  implements
 
 	
 	Set<ModifierKind> modifiers = EMPTY_SET();
+
+	private transient QualifiedName qualifiedName;
 	
 	public CtTypeImpl() {
 		super();
@@ -530,17 +533,25 @@ public abstract class CtTypeImpl<T> extends CtNamedElementImpl  implements
 			if ((getPackage() != null)
 					&& !getPackage().getSimpleName().equals(
 					CtPackage.TOP_LEVEL_PACKAGE_NAME)) {
-				return getPackage().getQualifiedName() + "." + getSimpleName();
+				return getQualifiedName(getPackage().getQualifiedName(),
+						CtPackage.PACKAGE_SEPARATOR);
 			}
 			return getSimpleName();
 		}
 		if (getDeclaringType() != null) {
-			return getDeclaringType().getQualifiedName() + INNERTTYPE_SEPARATOR
-					+ getSimpleName();
+			return getQualifiedName(getDeclaringType().getQualifiedName(),
+					INNERTTYPE_SEPARATOR);
 		}
 		return getSimpleName();
 	}
 
+	private String getQualifiedName(String prefix, String separator) {
+		QualifiedName name = QualifiedName.get(qualifiedName, prefix,
+				separator, getSimpleName());
+		qualifiedName = name;
+		return name.toString();
+	}
+
 	public Set<CtTypeReference<?>> getSuperInterfaces() {
 		return interfaces;
 	}
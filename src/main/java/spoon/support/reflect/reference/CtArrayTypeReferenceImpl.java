@@ -51,6 +51,12 @@ public class CtArrayTypeReferenceImpl<T> extends CtTypeReferenceImpl<T>
 		visitor.visitCtArrayTypeReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		writeSignature(getComponentType(), sb);
+		sb.append("[]");
+	}
+
 	@Override
 	public String getQualifiedName() {
                  return Array.class.getCanonicalName();
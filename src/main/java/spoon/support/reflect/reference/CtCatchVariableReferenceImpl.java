@@ -35,6 +35,13 @@ public class CtCatchVariableReferenceImpl<T> extends CtVariableReferenceImpl<T>
 		visitor.visitCtCatchVariableReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		if (getDeclaration() != null) {
+			sb.append(getDeclaration().getSimpleName());
+		}
+	}
+
 	public CtCatchVariable<T> getDeclaration() {
 		return declaration;
 	}
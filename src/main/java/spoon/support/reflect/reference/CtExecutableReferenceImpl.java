@@ -64,6 +64,25 @@ public class CtExecutableReferenceImpl<T> extends CtReferenceImpl implements
 		visitor.visitCtExecutableReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		if (getDeclaringType() != null) {
+			sb.append(getDeclaringType().getQualifiedName());
+		}
+		sb.append(CtExecutable.EXECUTABLE_SEPARATOR);
+		sb.append(getSimpleName());
+		sb.append("(");
+		boolean first = true;
+		for (CtTypeReference<?> ref : getActualTypeArguments()) {
+			if (!first) {
+				sb.append(",");
+			}
+			writeSignature(ref, sb);
+			first = false;
+		}
+		sb.append(")");
+	}
+
 	public List<CtTypeReference<?>> getActualTypeArguments() {
 		return actualTypeArguments;
 	}
@@ -51,6 +51,21 @@ public class CtFieldReferenceImpl<T> extends CtVariableReferenceImpl<T>
 		visitor.visitCtFieldReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		if (getType() != null) {
+			sb.append(getType().getQualifiedName());
+		} else {
+			sb.append("<no type>");
+		}
+		sb.append(" ");
+		if (getDeclaringType() != null) {
+			sb.append(getDeclaringType().getQualifiedName());
+			sb.append(CtField.FIELD_SEPARATOR);
+		}
+		sb.append(getSimpleName());
+	}
+
 	public Member getActualField() {
 		try {
 			if (getDeclaringType().getActualClass().isAnnotation()) {
@@ -35,6 +35,12 @@ public class CtLocalVariableReferenceImpl<T> extends CtVariableReferenceImpl<T>
 		visitor.visitCtLocalVariableReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		sb.append(getType().getQualifiedName()).append(" ");
+		sb.append(getSimpleName());
+	}
+
 	public CtLocalVariable<T> getDeclaration() {
 		return declaration;
 	}
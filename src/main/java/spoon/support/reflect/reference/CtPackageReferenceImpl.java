@@ -39,6 +39,11 @@ public class CtPackageReferenceImpl extends CtReferenceImpl implements
 		visitor.visitCtPackageReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		sb.append(getSimpleName());
+	}
+
 	@Override
 	public Package getActualPackage() {
 		return Package.getPackage(getSimpleName());
@@ -61,5 +61,11 @@ public class CtParameterReferenceImpl<T> extends CtVariableReferenceImpl<T>
 	public void accept(CtVisitor visitor) {
 		visitor.visitCtParameterReference(this);
 	}
+
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		sb.append(getType().getQualifiedName()).append(" ");
+		sb.append(getSimpleName());
+	}
 	
 }
@@ -49,26 +49,63 @@ public abstract class CtReferenceImpl implements CtReference, Serializable, Comp
 	}
 
 	public int compareTo(CtReference o) {
-		SignaturePrinter pr = new SignaturePrinter();
-		pr.scan(this);
-		String current = pr.getSignature();
-		pr.reset();
-		pr.scan(o);
-		return current.compareTo(pr.getSignature());
+		return getSignature().compareTo(getSignature(o));
 	}
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return getSignature().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object object) {
+		if (object == this)
+			return true;
 		if (object instanceof CtReference)
 			return compareTo((CtReference) object) == 0;
 		return false;
 	}
 
+	/**
+	 * Gets the signature of this reference, which defines its equality. It
+	 * is the one computed by {@link SignaturePrinter}, but written directly
+	 * by {@link #writeSignature(StringBuilder)}.
+	 */
+	String getSignature() {
+		StringBuilder sb = new StringBuilder();
+		writeSignature(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the signature of this reference. Subclasses override it to
+	 * avoid a visit of the reference by a {@link SignaturePrinter}.
+	 */
+	protected void writeSignature(StringBuilder sb) {
+		SignaturePrinter pr = new SignaturePrinter();
+		pr.scan(this);
+		sb.append(pr.getSignature());
+	}
+
+	/**
+	 * Writes the signature of any reference, or nothing for null.
+	 */
+	static void writeSignature(CtReference reference, StringBuilder sb) {
+		if (reference instanceof CtReferenceImpl) {
+			((CtReferenceImpl) reference).writeSignature(sb);
+		} else if (reference != null) {
+			SignaturePrinter pr = new SignaturePrinter();
+			pr.scan(reference);
+			sb.append(pr.getSignature());
+		}
+	}
+
+	private static String getSignature(CtReference reference) {
+		StringBuilder sb = new StringBuilder();
+		writeSignature(reference, sb);
+		return sb.toString();
+	}
+
 	abstract protected AnnotatedElement getActualAnnotatedElement();
 
 	public String getSimpleName() {
@@ -0,0 +1,66 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package spoon.support.reflect.reference;
+
+import spoon.reflect.factory.Factory;
+
+/**
+ * A package reference which is shared by the type references of a package
+ * (see {@link spoon.reflect.factory.PackageFactory#getSharedReference(String)}).
+ * It cannot be modified, since the modification would apply to all the type
+ * references of the package: to change the package of a type reference, set
+ * it a new package reference.
+ */
+public class CtSharedPackageReferenceImpl extends CtPackageReferenceImpl {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Creates the shared reference to the package of the given name.
+	 */
+	public CtSharedPackageReferenceImpl(Factory factory, String name) {
+		super();
+		super.setFactory(factory);
+		super.setSimpleName(name);
+	}
+
+	/**
+	 * Throws an {@link UnsupportedOperationException} if the given factory is
+	 * not the one of this shared reference. A deserialized reference, which
+	 * has no factory, can be attached to one.
+	 */
+	@Override
+	public void setFactory(Factory factory) {
+		if (getFactory() == null) {
+			super.setFactory(factory);
+		} else if (factory != getFactory()) {
+			throw new UnsupportedOperationException("The shared reference to "
+					+ getSimpleName() + " belongs to another factory.");
+		}
+	}
+
+	/**
+	 * Throws an {@link UnsupportedOperationException}, since a shared
+	 * reference cannot be modified.
+	 */
+	@Override
+	public void setSimpleName(String simplename) {
+		throw new UnsupportedOperationException("The shared reference to "
+				+ getSimpleName()
+				+ " cannot be modified: set a new package reference instead.");
+	}
+
+}
@@ -45,6 +45,7 @@ import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.visitor.CtVisitor;
 import spoon.reflect.visitor.filter.AbstractFilter;
 import spoon.support.reflect.declaration.CtElementImpl;
+import spoon.support.util.QualifiedName;
 import spoon.support.util.RtHelper;
 
 import static spoon.reflect.ModelElementContainerDefaultCapacities.ANNOTATIONS_CONTAINER_DEFAULT_CAPACITY;
@@ -62,6 +63,8 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 
 	private CtPackageReference pack;
 
+	private transient QualifiedName qualifiedName;
+
 	public CtTypeReferenceImpl() {
 		super();
 	}
@@ -70,6 +73,11 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 		visitor.visitCtTypeReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		sb.append(getQualifiedName());
+	}
+
 	public CtTypeReference<?> box() {
 		if (!isPrimitive()) {
 			return this;
@@ -137,13 +145,14 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	 */
 	@SuppressWarnings("unchecked")
 	protected Class<T> findClass() {
-		try {
-			return (Class<T>) getFactory().getEnvironment().getClassLoader().loadClass(getQualifiedName());
-		} catch (java.lang.ClassNotFoundException cnfe) {
+		Class<T> c = (Class<T>) getFactory().Type().findClass(getQualifiedName());
+		if (c == null) {
 			throw new spoon.support.reflect.reference.SpoonClassNotFoundException("cannot load class: "
 					+ getQualifiedName() + " with class loader "
-					+ Thread.currentThread().getContextClassLoader(), cnfe);
+					+ getFactory().getEnvironment().getClassLoader(),
+					new java.lang.ClassNotFoundException(getQualifiedName()));
 		}
+		return c;
 	}
 
 	public List<CtTypeReference<?>> getActualTypeArguments() {
@@ -174,6 +183,24 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 		return null;
 	}
 
+	public CtType<T> getTypeDeclaration() {
+		CtType<T> t = getDeclaration();
+		if (t != null || isPrimitive() || isAnonymous()
+				|| this instanceof CtArrayTypeReference
+				|| this instanceof CtTypeParameterReference
+				|| NULL_TYPE_NAME.equals(getSimpleName())) {
+			return t;
+		}
+		if (getFactory().getEnvironment().isUsingClassFileTypes()) {
+			t = getFactory().Type().getBinaryType(this);
+		}
+		if (t == null && getFactory().getEnvironment().getNoClasspath()
+				&& getFactory().Type().findClass(getQualifiedName()) == null) {
+			t = getFactory().Type().getShadowType(this);
+		}
+		return t;
+	}
+
 	public CtTypeReference<?> getDeclaringType() {
 		return declaringType;
 	}
@@ -183,9 +210,11 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	}
 
 	public String getQualifiedName() {
+		String prefix;
+		String separator;
 		if (getDeclaringType() != null) {
-			return getDeclaringType().getQualifiedName()
-					+ CtType.INNERTTYPE_SEPARATOR + getSimpleName();
+			prefix = getDeclaringType().getQualifiedName();
+			separator = CtType.INNERTTYPE_SEPARATOR;
 		} else if (getPackage() != null && !getPackage().getSimpleName().equals(CtPackage.TOP_LEVEL_PACKAGE_NAME)) {
 			if (!getTypeAnnotations().isEmpty()) {
 				String qualifiedName = getPackage().getSimpleName() + CtPackage.PACKAGE_SEPARATOR;
@@ -195,10 +224,15 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 				qualifiedName += getSimpleName();
 				return qualifiedName;
 			}
-			return getPackage().getSimpleName() + CtPackage.PACKAGE_SEPARATOR + getSimpleName();
+			prefix = getPackage().getSimpleName();
+			separator = CtPackage.PACKAGE_SEPARATOR;
 		} else {
 			return getSimpleName();
 		}
+		QualifiedName name = QualifiedName.get(qualifiedName, prefix,
+				separator, getSimpleName());
+		qualifiedName = name;
+		return name.toString();
 	}
 
 	public boolean isAssignableFrom(CtTypeReference<?> type) {
@@ -234,8 +268,8 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 		if (isPrimitive() || type.isPrimitive()) {
 			return equals(type);
 		}
-		CtType<?> superTypeDecl = type.getDeclaration();
-		CtType<?> subTypeDecl = getDeclaration();
+		CtType<?> superTypeDecl = type.getTypeDeclaration();
+		CtType<?> subTypeDecl = getTypeDeclaration();
 		if ((subTypeDecl == null) && (superTypeDecl == null)) {
 			try {
 				if (((this instanceof CtArrayTypeReference) && (type instanceof CtArrayTypeReference))) {
@@ -311,10 +345,12 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 
 	public void setDeclaringType(CtTypeReference<?> declaringType) {
 		this.declaringType = declaringType;
+		this.qualifiedName = null;
 	}
 
 	public void setPackage(CtPackageReference pack) {
 		this.pack = pack;
+		this.qualifiedName = null;
 	}
 
 	public CtTypeReference<?> unbox() {
@@ -353,7 +389,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 
 	public Collection<CtFieldReference<?>> getDeclaredFields() {
 		Collection<CtFieldReference<?>> l = new ArrayList<CtFieldReference<?>>();
-		CtType<?> t = getDeclaration();
+		CtType<?> t = getTypeDeclaration();
 		if (t == null) {
 			for (Field f : getActualClass().getDeclaredFields()) {
 				l.add(getFactory().Field().createReference(f));
@@ -377,7 +413,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	
 	@Override
 	public Collection<CtExecutableReference<?>> getDeclaredExecutables() {
-		CtType<T> t = getDeclaration();
+		CtType<T> t = getTypeDeclaration();
 		if (t == null) {
 			return RtHelper.getAllExecutables(getActualClass(), getFactory());
 		} else {
@@ -386,7 +422,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	}
 
 	public Collection<CtFieldReference<?>> getAllFields() {
-		CtType<?> t = getDeclaration();
+		CtType<?> t = getTypeDeclaration();
 		if (t == null) {
 			return RtHelper.getAllFields(getActualClass(), getFactory());
 		} else {
@@ -396,7 +432,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 
 	public Collection<CtExecutableReference<?>> getAllExecutables() {
 		Collection<CtExecutableReference<?>> l = new ArrayList<CtExecutableReference<?>>();
-		CtType<T> t = getDeclaration();
+		CtType<T> t = getTypeDeclaration();
 		if (t == null) {
 			Class<?> c = getActualClass();
 			for (Method m : c.getDeclaredMethods()) {
@@ -417,7 +453,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	}
 
 	public Set<ModifierKind> getModifiers() {
-		CtType<T> t = getDeclaration();
+		CtType<T> t = getTypeDeclaration();
 		if (t != null) {
 			return t.getModifiers();
 		}
@@ -426,7 +462,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	}
 
 	public CtTypeReference<?> getSuperclass() {
-		CtType<T> t = getDeclaration();
+		CtType<T> t = getTypeDeclaration();
 		if (t != null) {
 			return t.getSuperclass();
 		} else {
@@ -441,7 +477,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 	}
 
 	public Set<CtTypeReference<?>> getSuperInterfaces() {
-		CtType<?> t = getDeclaration();
+		CtType<?> t = getTypeDeclaration();
 		if (t != null) {
 			return t.getSuperInterfaces();
 		} else {
@@ -488,7 +524,7 @@ public class CtTypeReferenceImpl<T> extends CtReferenceImpl implements
 
 	@Override
 	public boolean isInterface() {
-		CtType<T> t = getDeclaration();
+		CtType<T> t = getTypeDeclaration();
 		if (t == null) {
 			return getActualClass().isInterface();
 		} else {
@@ -13,5 +13,10 @@ public class CtUnboundVariableReferenceImpl<T> extends CtVariableReferenceImpl<T
 		visitor.visitCtUnboundVariableReference(this);
 	}
 
+	@Override
+	protected void writeSignature(StringBuilder sb) {
+		sb.append(getSimpleName());
+	}
+
 	
 }
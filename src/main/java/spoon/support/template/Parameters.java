@@ -72,17 +72,26 @@ public abstract class Parameters {
 	 */
 	public static Object getValue(Template<?> template, String parameterName,
 			Integer index) {
-		Object tparamValue = null;
-		try {
-			Field rtField = null;
-			for (Field f : RtHelper.getAllFields(template.getClass())) {
-				if (isParameterSource(f)) {
-					if (parameterName.equals(getParameterName(f))) {
-						rtField = f;
-						break;
-					}
+		Field rtField = null;
+		for (Field f : RtHelper.getAllFields(template.getClass())) {
+			if (isParameterSource(f)) {
+				if (parameterName.equals(getParameterName(f))) {
+					rtField = f;
+					break;
 				}
 			}
+		}
+		return getValue(template, rtField, parameterName, index);
+	}
+
+	/**
+	 * Gets a template field parameter value from the runtime field of the
+	 * parameter (see {@link #getParameterFields(Class)}).
+	 */
+	public static Object getValue(Template<?> template, Field rtField,
+			String parameterName, Integer index) {
+		Object tparamValue = null;
+		try {
 			if (Modifier.isFinal(rtField.getModifiers())) {
 				Map<String, Object> m = finals.get(template);
 				if (m == null) {
@@ -101,6 +110,24 @@ public abstract class Parameters {
 		return tparamValue;
 	}
 
+	/**
+	 * Gets the runtime fields of the template parameters of a template class
+	 * (including the ones defined by the super classes), indexed by parameter
+	 * name.
+	 */
+	public static Map<String, Field> getParameterFields(Class<?> templateClass) {
+		Map<String, Field> fields = new HashMap<String, Field>();
+		for (Field f : RtHelper.getAllFields(templateClass)) {
+			if (isParameterSource(f)) {
+				String name = getParameterName(f);
+				if (!fields.containsKey(name)) {
+					fields.put(name, f);
+				}
+			}
+		}
+		return fields;
+	}
+
 	static Map<Template<?>, Map<String, Object>> finals = new HashMap<Template<?>, Map<String, Object>>();
 
 	public static CtField<?> getParameterField(
@@ -20,6 +20,7 @@ package spoon.support.template;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
 import spoon.SpoonException;
@@ -61,6 +62,7 @@ import spoon.reflect.visitor.Query;
 import spoon.reflect.visitor.filter.VariableAccessFilter;
 import spoon.template.Local;
 import spoon.template.Parameter;
+import spoon.template.PreparedTemplate;
 import spoon.template.Template;
 import spoon.template.TemplateParameter;
 
@@ -101,8 +103,7 @@ public class SubstitutionVisitor extends CtScanner {
 				String name = parameter.getSimpleName();
 				for (String pname : parameterNames) {
 					if (name.equals(pname)) {
-						Object value = Parameters.getValue(template, pname,
-								null);
+						Object value = getValue(pname, null);
 						int i = parameter.getParent().getParameters()
 								.indexOf(parameter);
 						if (value instanceof List) {
@@ -128,8 +129,7 @@ public class SubstitutionVisitor extends CtScanner {
 		 */
 		@Override
 		public void scanCtElement(CtElement e) {
-			CtAnnotation<?> a = e.getAnnotation(e.getFactory().Type()
-					.createReference(Local.class));
+			CtAnnotation<?> a = e.getAnnotation(localAnnotationType);
 			if (a != null) {
 				e.removeAnnotation(a);
 			}
@@ -150,7 +150,7 @@ public class SubstitutionVisitor extends CtScanner {
 			String name = element.getSimpleName();
 			for (String pname : parameterNames) {
 				if (name.contains(pname)) {
-					Object value = Parameters.getValue(template, pname, null);
+					Object value = getValue(pname, null);
 					if (value instanceof String) {
 						// replace with the string value
 						name = name.replace(pname, (String) value);
@@ -170,7 +170,7 @@ public class SubstitutionVisitor extends CtScanner {
 		private String substituteInDocComment(String docComment) {
 			String result = docComment;
 			for (String pname : parameterNames) {
-				Object value = Parameters.getValue(template, pname, null);
+				Object value = getValue(pname, null);
 				if (value instanceof String) {
 					result = result.replace(pname, (String) value);
 				}
@@ -203,7 +203,7 @@ public class SubstitutionVisitor extends CtScanner {
 			}
 			for (CtField<?> field : new TreeSet<CtField<?>>(ctClass.getFields())) {
 				if ((field.getAnnotation(Local.class) != null)
-						|| Parameters.isParameterSource(field.getReference())) {
+						|| isParameterSource(field.getReference())) {
 					ctClass.removeField(field);
 					continue;
 				}
@@ -211,8 +211,7 @@ public class SubstitutionVisitor extends CtScanner {
 				String name = field.getSimpleName();
 				for (String pname : parameterNames) {
 					if (name.equals(pname)) {
-						Object value = Parameters.getValue(template, pname,
-								null);
+						Object value = getValue(pname, null);
 						int i = ctClass.getFields().indexOf(field);
 						if (value instanceof List) {
 							List<?> l = (List<?>) value;
@@ -234,11 +233,9 @@ public class SubstitutionVisitor extends CtScanner {
 		public void visitCtForEach(CtForEach foreach) {
 			if (foreach.getExpression() instanceof CtFieldAccess) {
 				CtFieldAccess<?> fa = (CtFieldAccess<?>) foreach.getExpression();
-				if (Parameters.isParameterSource(fa.getVariable())) {
-					Object[] value = (Object[]) Parameters.getValue(template,
-																	fa.getVariable()
-																	  .getSimpleName(),
-																	null);
+				if (isParameterSource(fa.getVariable())) {
+					Object[] value = (Object[]) getValue(fa
+							.getVariable().getSimpleName(), null);
 					CtStatementList l = foreach.getFactory().Core().createStatementList();
 					CtStatement body = foreach.getBody();
 					for (Object element : value) {
@@ -267,19 +264,17 @@ public class SubstitutionVisitor extends CtScanner {
 				if (fieldAccess.getTarget() instanceof CtFieldAccess) {
 					ref = ((CtFieldAccess<?>) fieldAccess.getTarget())
 							.getVariable();
-					if (Parameters.isParameterSource(ref)) {
-						Object[] value = (Object[]) Parameters.getValue(
-								template, ref.getSimpleName(), null);
+					if (isParameterSource(ref)) {
+						Object[] value = (Object[]) getValue(ref.getSimpleName(), null);
 						fieldAccess.replace(fieldAccess.getFactory()
 								.Code().createLiteral(value.length));
 						throw new SkipException(fieldAccess);
 					}
 				}
 			}
-			if (Parameters.isParameterSource(ref)) {
+			if (isParameterSource(ref)) {
 				// replace direct field parameter accesses
-				Object value = Parameters.getValue(template,
-						ref.getSimpleName(),
+				Object value = getValue(ref.getSimpleName(),
 						Parameters.getIndex(fieldAccess));
 				CtElement toReplace = fieldAccess;
 				if (fieldAccess.getParent() instanceof CtArrayAccess) {
@@ -344,9 +339,9 @@ public class SubstitutionVisitor extends CtScanner {
 							.getTarget()).getTarget();
 				}
 				if ((fa != null) && (fa.getTarget() == null)) {
-					TemplateParameter<?> tparamValue = (TemplateParameter<?>) Parameters
-							.getValue(template, fa.getVariable()
-									.getSimpleName(), Parameters.getIndex(fa));
+					TemplateParameter<?> tparamValue = (TemplateParameter<?>) getValue(
+							fa.getVariable().getSimpleName(),
+							Parameters.getIndex(fa));
 					CtCodeElement r = null;
 					if (tparamValue != null) {
 						r = (CtCodeElement) factory.Core().clone(tparamValue);
@@ -381,8 +376,7 @@ public class SubstitutionVisitor extends CtScanner {
 				if (parameterNames.contains(t.getSimpleName())) {
 					// replace type parameters
 					// TODO: this would probably not work with inner classes!!!
-					Object o = Parameters.getValue(template, t.getSimpleName(),
-							null);
+					Object o = getValue(t.getSimpleName(), null);
 					if (o instanceof Class) {
 						t = factory.Type().createReference(((Class<T>) o));
 					} else if (o instanceof CtTypeReference) {
@@ -402,8 +396,7 @@ public class SubstitutionVisitor extends CtScanner {
 						// replace type parameters
 						// TODO: this would probably not work with inner
 						// classes!!!
-						Object o = Parameters.getValue(template,
-								t.getSimpleName(), null);
+						Object o = getValue(t.getSimpleName(), null);
 						if (o instanceof Class) {
 							t = factory.Type().createReference(((Class<T>) o));
 						} else if (o instanceof CtTypeReference) {
@@ -427,8 +420,7 @@ public class SubstitutionVisitor extends CtScanner {
 				// replace type parameters
 				// TODO: this would probably not work with inner classes!!!
 				CtTypeReference<T> t;
-				Object o = Parameters.getValue(template, e.getType()
-						.getSimpleName(), null);
+				Object o = getValue(e.getType().getSimpleName(), null);
 				if (o instanceof Class) {
 					// TODO: CHECK THAT THIS IS STILL WORKING
 					o = factory.Type().createReference(((Class<T>) o));
@@ -486,8 +478,7 @@ public class SubstitutionVisitor extends CtScanner {
 				// replace type parameters
 				// TODO: this would probably not work with inner classes!!!
 				CtTypeReference<?> t;
-				Object o = Parameters.getValue(template,
-						reference.getSimpleName(), null);
+				Object o = getValue(reference.getSimpleName(), null);
 				if (o instanceof Class) {
 					t = factory.Type().createReference(((Class<?>) o));
 				} else if (o instanceof CtTypeReference) {
@@ -503,7 +494,7 @@ public class SubstitutionVisitor extends CtScanner {
 				reference.setPackage(t.getPackage());
 				reference.setSimpleName(t.getSimpleName());
 				reference.setDeclaringType(t.getDeclaringType());
-			} else if (templateTypeRef.isAssignableFrom(reference)) {
+			} else if (isTemplateType(reference)) {
 				// this can only be a template inheritance case (to be verified)
 				CtTypeReference<?> sc = targetRef.getSuperclass();
 				if (sc != null) {
@@ -526,7 +517,7 @@ public class SubstitutionVisitor extends CtScanner {
 			String name = variableAccess.getVariable().getSimpleName();
 			for (String pname : parameterNames) {
 				if (name.contains(pname)) {
-					Object value = Parameters.getValue(template, pname, null);
+					Object value = getValue(pname, null);
 					if ((value instanceof List) && name.equals(pname)) {
 						// replace list of CtParameter for generic access to the parameters
 						List<CtParameter<?>> l = (List<CtParameter<?>>) value;
@@ -555,7 +546,7 @@ public class SubstitutionVisitor extends CtScanner {
 			if ((parameterNames != null) && (reference != null) && parameterNames
 					.contains(reference.getSimpleName())) {
 				CtTypeReference<T> t;
-				Object o = Parameters.getValue(template, reference.getSimpleName(), null);
+				Object o = getValue(reference.getSimpleName(), null);
 				if (o instanceof Class) {
 					t = factory.Type().createReference(((Class<T>) o));
 				} else if (o instanceof CtTypeReference) {
@@ -594,12 +585,18 @@ public class SubstitutionVisitor extends CtScanner {
 
 	CtTypeReference<? extends Template> templateRef;
 
-	CtTypeReference<Template> templateTypeRef;
+	CtTypeReference<?> templateTypeRef;
 
 	CtClass<? extends Template<?>> templateType;
 
 	Collection<String> parameterNames;
 
+	CtTypeReference<Local> localAnnotationType;
+
+	PreparedTemplate prepared;
+
+	Map<CtElement, ?> skipped;
+
 	/**
 	 * Creates a new substitution visitor.
 	 * 
@@ -623,12 +620,67 @@ public class SubstitutionVisitor extends CtScanner {
 		templateType = f.Class().get(templateRef.getQualifiedName());
 		parameterNames = Parameters.getNames(templateType);
 		templateTypeRef = f.Type().createReference(Template.class);
+		localAnnotationType = f.Type().createReference(Local.class);
 		if (targetType != null) {
 		  targetRef = f.Type().createReference(targetType);
 		  // first substitute target ref
 		  targetRef.accept(this);
 		}
+	}
+
+	/**
+	 * Creates a new substitution visitor for a prepared template.
+	 *
+	 * @param prepared
+	 *            the prepared template
+	 * @param targetType
+	 *            the target type of the substitution
+	 * @param template
+	 *            the template that holds the parameter values
+	 * @param skipped
+	 *            the elements which contain no substitution site and are not
+	 *            visited (may be null)
+	 */
+	public SubstitutionVisitor(PreparedTemplate prepared, CtType<?> targetType,
+			Template<?> template, Map<CtElement, ?> skipped) {
+		inheritanceScanner = new InheritanceSustitutionScanner(this);
+		this.prepared = prepared;
+		this.skipped = skipped;
+		this.factory = prepared.getFactory();
+		this.template = template;
+		this.targetType = targetType;
+		S = prepared.getParameterMethod();
+		templateRef = factory.Type().createReference(template.getClass());
+		templateType = prepared.getTemplateType();
+		parameterNames = prepared.getParameterNames();
+		templateTypeRef = prepared.getTemplateInterface();
+		localAnnotationType = prepared.getLocalAnnotationType();
+		if (targetType != null) {
+			targetRef = factory.Type().createReference(targetType);
+			// first substitute target ref
+			targetRef.accept(this);
+		}
+	}
 
+	private Object getValue(String parameterName, Integer index) {
+		if (prepared != null) {
+			return prepared.getValue(template, parameterName, index);
+		}
+		return Parameters.getValue(template, parameterName, index);
+	}
+
+	private boolean isParameterSource(CtFieldReference<?> ref) {
+		if (prepared != null) {
+			return prepared.isParameterSource(ref);
+		}
+		return Parameters.isParameterSource(ref);
+	}
+
+	private boolean isTemplateType(CtTypeReference<?> reference) {
+		if (prepared != null) {
+			return prepared.isTemplateType(reference);
+		}
+		return templateTypeRef.isAssignableFrom(reference);
 	}
 
 	/**
@@ -642,6 +694,9 @@ public class SubstitutionVisitor extends CtScanner {
 
 	@Override
 	public void scan(CtElement element) {
+		if (skipped != null && element != null && skipped.containsKey(element)) {
+			return;
+		}
 		try {
 			inheritanceScanner.scan(element);
 			super.scan(element);
@@ -674,9 +729,8 @@ public class SubstitutionVisitor extends CtScanner {
 			String name = reference.getSimpleName();
 			for (String pname : parameterNames) {
 				if (name.contains(pname)) {
-					name = name.replace(pname,
-							Parameters.getValue(template, pname, null)
-									.toString());
+					name = name.replace(pname, getValue(pname, null)
+							.toString());
 					reference.setSimpleName(name);
 				}
 			}
@@ -0,0 +1,413 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects performance metrics of Spoon: timers (per phase, per processor,
+ * per built compilation unit and per printed file), counters (such as the
+ * number of elements visited by each processor) and snapshots of the memory
+ * and garbage collection state.
+ *
+ * <p>
+ * The metrics are disabled by default. When disabled, {@link #start()}
+ * returns immediately and the other recording methods do nothing, so that
+ * the instrumented code does not pay anything. A metrics instance can be
+ * used concurrently and exported as JSON with {@link #writeJson(Writer)}.
+ *
+ * <p>
+ * Typical use:
+ *
+ * <pre>
+ * long start = metrics.start();
+ * // ... measured code
+ * metrics.stop(Metrics.PHASE, &quot;build&quot;, start);
+ * </pre>
+ */
+public class Metrics {
+
+	/**
+	 * The category of the timers of the main phases (model building,
+	 * processing, printing, compiling).
+	 */
+	public static final String PHASE = "phase";
+
+	/**
+	 * The category of the timers of the processors.
+	 */
+	public static final String PROCESSOR = "processor";
+
+	/**
+	 * The category of the timers of the model building of each compilation
+	 * unit.
+	 */
+	public static final String BUILD = "build";
+
+	/**
+	 * The category of the timers of the printing of each output file.
+	 */
+	public static final String PRINT = "print";
+
+	/**
+	 * The category of the counters of the elements visited by each
+	 * processor.
+	 */
+	public static final String VISITS = "visits";
+
+	private static final long DISABLED = Long.MIN_VALUE;
+
+	private volatile boolean enabled;
+
+	private final ConcurrentMap<String, ConcurrentMap<String, Timing>> timings = new ConcurrentHashMap<String, ConcurrentMap<String, Timing>>();
+
+	private final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> counters = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+
+	private final List<Snapshot> snapshots = new ArrayList<Snapshot>();
+
+	/**
+	 * Tells if the metrics are recorded.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the recording of the metrics.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Starts a measure.
+	 *
+	 * @return the start time, to be given to
+	 *         {@link #stop(String, String, long)}
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+
+	/**
+	 * Stops a measure started with {@link #start()} and adds its duration to
+	 * the given timer.
+	 *
+	 * @param category
+	 *            the category of the timer (for instance {@link #PHASE})
+	 * @param name
+	 *            the name of the timer in its category
+	 * @param start
+	 *            the value returned by {@link #start()}
+	 */
+	public void stop(String category, String name, long start) {
+		if (start != DISABLED && enabled) {
+			record(category, name, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Adds a duration to the given timer.
+	 */
+	public void record(String category, String name, long nanos) {
+		if (!enabled) {
+			return;
+		}
+		ConcurrentMap<String, Timing> m = get(timings, category);
+		Timing t = m.get(name);
+		if (t == null) {
+			t = new Timing();
+			Timing previous = m.putIfAbsent(name, t);
+			if (previous != null) {
+				t = previous;
+			}
+		}
+		t.add(nanos);
+	}
+
+	/**
+	 * Adds a value to the given counter.
+	 */
+	public void increment(String category, String name, long delta) {
+		if (!enabled) {
+			return;
+		}
+		ConcurrentMap<String, AtomicLong> m = get(counters, category);
+		AtomicLong c = m.get(name);
+		if (c == null) {
+			c = new AtomicLong();
+			AtomicLong previous = m.putIfAbsent(name, c);
+			if (previous != null) {
+				c = previous;
+			}
+		}
+		c.addAndGet(delta);
+	}
+
+	/**
+	 * Records a snapshot of the heap usage and of the garbage collections
+	 * since the start of the virtual machine.
+	 *
+	 * @param name
+	 *            the name of the snapshot (for instance the name of the phase
+	 *            that just ended)
+	 */
+	public void snapshot(String name) {
+		if (!enabled) {
+			return;
+		}
+		Snapshot s = new Snapshot(name);
+		synchronized (snapshots) {
+			snapshots.add(s);
+		}
+	}
+
+	/**
+	 * Gets the total time recorded by a timer, in nanoseconds.
+	 */
+	public long getTime(String category, String name) {
+		Timing t = get(timings, category).get(name);
+		return t == null ? 0 : t.total.get();
+	}
+
+	/**
+	 * Gets the number of measures recorded by a timer.
+	 */
+	public long getCount(String category, String name) {
+		Timing t = get(timings, category).get(name);
+		return t == null ? 0 : t.count.get();
+	}
+
+	/**
+	 * Gets the value of a counter.
+	 */
+	public long getCounter(String category, String name) {
+		AtomicLong c = get(counters, category).get(name);
+		return c == null ? 0 : c.get();
+	}
+
+	/**
+	 * Gets the names of the timers of a category.
+	 */
+	public List<String> getTimerNames(String category) {
+		return new ArrayList<String>(new TreeMap<String, Timing>(get(timings,
+				category)).keySet());
+	}
+
+	/**
+	 * Gets the number of recorded snapshots.
+	 */
+	public int getSnapshotCount() {
+		synchronized (snapshots) {
+			return snapshots.size();
+		}
+	}
+
+	/**
+	 * Discards all the recorded metrics.
+	 */
+	public void reset() {
+		timings.clear();
+		counters.clear();
+		synchronized (snapshots) {
+			snapshots.clear();
+		}
+	}
+
+	/**
+	 * Writes all the recorded metrics as a JSON object, with a
+	 * <code>timers</code>, a <code>counters</code> and a
+	 * <code>snapshots</code> member. The times are given in milliseconds.
+	 */
+	public void writeJson(Writer out) throws IOException {
+		out.write("{\n  \"timers\": {");
+		boolean firstCategory = true;
+		for (Map.Entry<String, ConcurrentMap<String, Timing>> c : new TreeMap<String, ConcurrentMap<String, Timing>>(
+				timings).entrySet()) {
+			out.write(firstCategory ? "\n" : ",\n");
+			firstCategory = false;
+			out.write("    " + quote(c.getKey()) + ": {");
+			boolean first = true;
+			for (Map.Entry<String, Timing> t : new TreeMap<String, Timing>(
+					c.getValue()).entrySet()) {
+				out.write(first ? "\n" : ",\n");
+				first = false;
+				Timing timing = t.getValue();
+				out.write("      " + quote(t.getKey()) + ": {\"count\": "
+						+ timing.count.get() + ", \"totalMs\": "
+						+ millis(timing.total.get()) + ", \"maxMs\": "
+						+ millis(timing.max.get()) + "}");
+			}
+			out.write(first ? "}" : "\n    }");
+		}
+		out.write(firstCategory ? "},\n" : "\n  },\n");
+
+		out.write("  \"counters\": {");
+		firstCategory = true;
+		for (Map.Entry<String, ConcurrentMap<String, AtomicLong>> c : new TreeMap<String, ConcurrentMap<String, AtomicLong>>(
+				counters).entrySet()) {
+			out.write(firstCategory ? "\n" : ",\n");
+			firstCategory = false;
+			out.write("    " + quote(c.getKey()) + ": {");
+			boolean first = true;
+			for (Map.Entry<String, AtomicLong> t : new TreeMap<String, AtomicLong>(
+					c.getValue()).entrySet()) {
+				out.write(first ? "\n" : ",\n");
+				first = false;
+				out.write("      " + quote(t.getKey()) + ": "
+						+ t.getValue().get());
+			}
+			out.write(first ? "}" : "\n    }");
+		}
+		out.write(firstCategory ? "},\n" : "\n  },\n");
+
+		out.write("  \"snapshots\": [");
+		List<Snapshot> l;
+		synchronized (snapshots) {
+			l = new ArrayList<Snapshot>(snapshots);
+		}
+		for (int i = 0; i < l.size(); i++) {
+			Snapshot s = l.get(i);
+			out.write(i == 0 ? "\n" : ",\n");
+			out.write("    {\"name\": " + quote(s.name) + ", \"uptimeMs\": "
+					+ s.uptime + ", \"heapUsed\": " + s.heapUsed
+					+ ", \"heapCommitted\": " + s.heapCommitted
+					+ ", \"gcCount\": " + s.gcCount + ", \"gcTimeMs\": "
+					+ s.gcTime + "}");
+		}
+		out.write(l.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+		out.flush();
+	}
+
+	private static <V> ConcurrentMap<String, V> get(
+			ConcurrentMap<String, ConcurrentMap<String, V>> maps,
+			String category) {
+		ConcurrentMap<String, V> m = maps.get(category);
+		if (m == null) {
+			m = new ConcurrentHashMap<String, V>();
+			ConcurrentMap<String, V> previous = maps.putIfAbsent(category, m);
+			if (previous != null) {
+				m = previous;
+			}
+		}
+		return m;
+	}
+
+	private static String millis(long nanos) {
+		return String.valueOf(nanos / 1000000.0);
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * The statistics of a timer.
+	 */
+	private static class Timing {
+		final AtomicLong count = new AtomicLong();
+
+		final AtomicLong total = new AtomicLong();
+
+		final AtomicLong max = new AtomicLong();
+
+		void add(long nanos) {
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			long m;
+			while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+				// retry
+			}
+		}
+	}
+
+	/**
+	 * The memory and garbage collection state at a given time.
+	 */
+	private static class Snapshot {
+		final String name;
+
+		final long uptime;
+
+		final long heapUsed;
+
+		final long heapCommitted;
+
+		long gcCount;
+
+		long gcTime;
+
+		Snapshot(String name) {
+			this.name = name;
+			this.uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+			MemoryUsage heap = ManagementFactory.getMemoryMXBean()
+					.getHeapMemoryUsage();
+			this.heapUsed = heap.getUsed();
+			this.heapCommitted = heap.getCommitted();
+			for (GarbageCollectorMXBean gc : ManagementFactory
+					.getGarbageCollectorMXBeans()) {
+				if (gc.getCollectionCount() > 0) {
+					gcCount += gc.getCollectionCount();
+				}
+				if (gc.getCollectionTime() > 0) {
+					gcTime += gc.getCollectionTime();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/* 
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ * 
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify 
+ * and/or redistribute the software under the terms of the CeCILL-C license as 
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info. 
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *  
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.support.util;
+
+/**
+ * An immutable qualified name, made of a prefix (the qualified name of the
+ * enclosing element), a separator and a simple name. It is used to cache the
+ * qualified names of the model elements and references: the cached value is
+ * valid as long as its parts are the same instances, which is checked by
+ * identity and without any allocation, because the simple names and the
+ * qualified names of the enclosing elements are themselves cached.
+ */
+public final class QualifiedName {
+
+	private final String prefix;
+
+	private final String separator;
+
+	private final String simpleName;
+
+	private final String name;
+
+	private QualifiedName(String prefix, String separator, String simpleName) {
+		this.prefix = prefix;
+		this.separator = separator;
+		this.simpleName = simpleName;
+		this.name = prefix + separator + simpleName;
+	}
+
+	/**
+	 * Gets a qualified name for the given parts, which is the cached one if
+	 * it was built from the same parts, or a new one otherwise.
+	 *
+	 * @param cached
+	 *            the cached qualified name (can be null)
+	 */
+	public static QualifiedName get(QualifiedName cached, String prefix,
+			String separator, String simpleName) {
+		if (cached != null && cached.prefix == prefix
+				&& cached.separator == separator
+				&& cached.simpleName == simpleName) {
+			return cached;
+		}
+		return new QualifiedName(prefix, separator, simpleName);
+	}
+
+	/**
+	 * Gets the full qualified name.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -23,7 +23,11 @@ import java.util.Stack;
 
 /**
  * A utility class for performance statistics of Spoon.
+ * 
+ * @deprecated this class is not thread-safe and is no longer used by Spoon;
+ *             use the {@link Metrics} of the environment instead
  */
+@Deprecated
 public class Timer {
 	private static List<Timer> timestamps = new ArrayList<Timer>();
 
@@ -19,7 +19,9 @@ package spoon.support.visitor;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Set;
 
+import spoon.processing.AbstractAnnotationProcessor;
 import spoon.processing.Processor;
 import spoon.processing.TraversalStrategy;
 import spoon.reflect.declaration.CtElement;
@@ -36,6 +38,26 @@ public class ProcessingVisitor extends CtScanner {
 
 	Processor<?> processor;
 
+	/**
+	 * The only elements to be visited for an annotation processor, or null.
+	 */
+	Set<CtElement> annotatedPaths;
+
+	long annotatedPathsVersion;
+
+	/**
+	 * The depth of the currently scanned element.
+	 */
+	int depth;
+
+	/**
+	 * Tells if the currently scanned tree is not part of the model, and thus
+	 * not covered by the annotation index.
+	 */
+	boolean detached;
+
+	long visitedCount;
+
 	/**
 	 * The constructor.
 	 */
@@ -80,23 +102,65 @@ public class ProcessingVisitor extends CtScanner {
 		if (e == null) {
 			return;
 		}
+		visitedCount++;
 		Processor<CtElement> p=(Processor<CtElement>)processor;
-		if (p.getTraversalStrategy() == TraversalStrategy.PRE_ORDER
-				&& canBeProcessed(p, e)) {
-			if (p.isToBeProcessed(e)) {
-				p.process(e);
+		if (p instanceof AbstractAnnotationProcessor) {
+			if (depth == 0) {
+				detached = !factory.Annotation().isIndexed(e);
+			}
+			if (!detached && !getAnnotatedPaths().contains(e)) {
+				// no annotated element to be processed in this subtree
+				return;
 			}
 		}
-		super.scan(e);
-		if (p.getTraversalStrategy() == TraversalStrategy.POST_ORDER
-				&& canBeProcessed(p, e)) {
-			if (p.isToBeProcessed(e)) {
-				p.process(e);
+		depth++;
+		try {
+			if (p.getTraversalStrategy() == TraversalStrategy.PRE_ORDER
+					&& canBeProcessed(p, e)) {
+				if (p.isToBeProcessed(e)) {
+					p.process(e);
+				}
 			}
+			super.scan(e);
+			if (p.getTraversalStrategy() == TraversalStrategy.POST_ORDER
+					&& canBeProcessed(p, e)) {
+				if (p.isToBeProcessed(e)) {
+					p.process(e);
+				}
+			}
+		} finally {
+			depth--;
 		}
 	}
 
+	/**
+	 * Gets the number of elements visited by this visitor since its creation.
+	 */
+	public long getVisitedCount() {
+		return visitedCount;
+	}
+
 	public void setProcessor(Processor<?> processor) {
 		this.processor = processor;
+		annotatedPaths = null;
+	}
+
+	/**
+	 * Gets the elements annotated with the annotation types of the current
+	 * annotation processor and their parents, from the annotation index.
+	 * They are computed again when annotations are added to the model.
+	 */
+	private Set<CtElement> getAnnotatedPaths() {
+		long version = factory.Annotation().getIndexVersion();
+		if (annotatedPaths == null || annotatedPathsVersion != version) {
+			Collection<String> names = new ArrayList<String>();
+			for (Class<?> c : ((AbstractAnnotationProcessor<?, ?>) processor)
+					.getProcessedAnnotationTypes()) {
+				names.add(c.getName());
+			}
+			annotatedPaths = factory.Annotation().getAnnotatedPaths(names);
+			annotatedPathsVersion = factory.Annotation().getIndexVersion();
+		}
+		return annotatedPaths;
 	}
 }
@@ -0,0 +1,117 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.template;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.visitor.CtScanner;
+
+/**
+ * This class matches several templates to pieces of code in a single
+ * traversal of the code. The templates are indexed by the class of their root
+ * element, so that each element of the code is only matched against the
+ * templates which may match it.
+ *
+ * <p>
+ * The elements found for a template are added to the finds of its
+ * {@link TemplateMatcher} (see {@link TemplateMatcher#getFinds()}).
+ */
+public class MultiTemplateMatcher {
+
+	private final List<TemplateMatcher.MatchPlan> plans = new ArrayList<TemplateMatcher.MatchPlan>();
+
+	private final Map<Class<?>, List<TemplateMatcher.MatchPlan>> plansByClass = new HashMap<Class<?>, List<TemplateMatcher.MatchPlan>>();
+
+	private final List<TemplateMatcher.MatchPlan> anyPlans = new ArrayList<TemplateMatcher.MatchPlan>();
+
+	/**
+	 * Adds a template to be matched.
+	 *
+	 * @param matcher
+	 *            the matcher of the template type
+	 * @param templateRoot
+	 *            the root of the template code to be matched
+	 */
+	public MultiTemplateMatcher add(TemplateMatcher matcher,
+			CtElement templateRoot) {
+		TemplateMatcher.MatchPlan plan = matcher.new MatchPlan(templateRoot);
+		plans.add(plan);
+		if (plan.rootClass == null) {
+			anyPlans.add(plan);
+		} else {
+			List<TemplateMatcher.MatchPlan> l = plansByClass
+					.get(plan.rootClass);
+			if (l == null) {
+				l = new ArrayList<TemplateMatcher.MatchPlan>();
+				plansByClass.put(plan.rootClass, l);
+			}
+			l.add(plan);
+		}
+		return this;
+	}
+
+	/**
+	 * Finds all the elements of the given root that match one of the added
+	 * templates.
+	 *
+	 * @return true if at least one element was found
+	 */
+	public boolean find(CtElement targetRoot) {
+		final boolean[] found = new boolean[1];
+		new CtScanner() {
+			@Override
+			public void scan(CtElement element) {
+				if (element != null) {
+					List<TemplateMatcher.MatchPlan> l = plansByClass
+							.get(element.getClass());
+					if (l != null) {
+						found[0] |= match(l, element);
+					}
+					found[0] |= match(anyPlans, element);
+				}
+				super.scan(element);
+			}
+		}.scan(targetRoot);
+		return found[0];
+	}
+
+	private boolean match(List<TemplateMatcher.MatchPlan> l, CtElement element) {
+		boolean found = false;
+		for (TemplateMatcher.MatchPlan plan : l) {
+			TemplateMatcher matcher = plan.getMatcher();
+			if (plan.accepts(element)
+					&& matcher.match(element, plan.templateRoot)) {
+				matcher.getFinds().add(element);
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the number of templates added to this matcher.
+	 */
+	public int size() {
+		return plans.size();
+	}
+
+}
@@ -0,0 +1,414 @@
+/*
+ * Spoon - http://spoon.gforge.inria.fr/
+ * Copyright (C) 2006 INRIA Futurs <renaud.pawlak@inria.fr>
+ *
+ * This software is governed by the CeCILL-C License under French law and
+ * abiding by the rules of distribution of free software. You can use, modify
+ * and/or redistribute the software under the terms of the CeCILL-C license as
+ * circulated by CEA, CNRS and INRIA at http://www.cecill.info.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the CeCILL-C License for more details.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C license and that you accept its terms.
+ */
+
+package spoon.template;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import spoon.reflect.code.CtFieldAccess;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtLiteral;
+import spoon.reflect.code.CtVariableAccess;
+import spoon.reflect.declaration.CtAnnotation;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtNamedElement;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypedElement;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtFieldReference;
+import spoon.reflect.reference.CtReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.CtScanner;
+import spoon.support.template.Parameters;
+import spoon.support.template.SubstitutionVisitor;
+
+/**
+ * A template type analyzed once for many substitutions. It holds the template
+ * parameter names and runtime fields, caches the reflective lookups done by
+ * the {@link SubstitutionVisitor}, and records the substitution sites of each
+ * substituted template element: at substitution time, only the parts of the
+ * copy which contain a site are visited.
+ *
+ * <p>
+ * Prepared templates are obtained from (and cached by) the template
+ * sub-factory: see {@link spoon.reflect.factory.TemplateFactory#prepare(Class)}.
+ * A prepared template assumes that the template source code is not modified
+ * in the model after it has been prepared.
+ */
+public class PreparedTemplate {
+
+	private final Factory factory;
+
+	private final CtClass<? extends Template<?>> templateType;
+
+	private final Collection<String> parameterNames;
+
+	private final Map<String, Field> parameterFields;
+
+	private final CtExecutableReference<?> parameterMethod;
+
+	private final CtTypeReference<?> templateReference;
+
+	private final CtTypeReference<?> templateInterface;
+
+	private final CtTypeReference<Local> localAnnotationType;
+
+	private final Map<String, Boolean> parameterSources = new HashMap<String, Boolean>();
+
+	private final Map<String, Boolean> templateTypes = new HashMap<String, Boolean>();
+
+	private final Map<CtElement, boolean[]> sites = new IdentityHashMap<CtElement, boolean[]>();
+
+	/**
+	 * Analyzes the given template class.
+	 *
+	 * @param factory
+	 *            the factory that holds the template source code
+	 * @param templateClass
+	 *            the template class
+	 */
+	public PreparedTemplate(Factory factory, Class<?> templateClass) {
+		if (!Template.class.isAssignableFrom(templateClass)) {
+			throw new IllegalArgumentException(templateClass.getName()
+					+ " is not a template");
+		}
+		this.factory = factory;
+		templateType = factory.Class().get(templateClass);
+		if (templateType == null) {
+			throw new TemplateException("template " + templateClass.getName()
+					+ " not in template classpath");
+		}
+		parameterNames = Parameters.getNames(templateType);
+		parameterFields = Parameters.getParameterFields(templateClass);
+		parameterMethod = factory.Executable().createReference(
+				factory.Type().createReference(TemplateParameter.class),
+				factory.Type().createTypeParameterReference("T"), "S");
+		templateReference = factory.Type().createReference(templateClass);
+		templateInterface = factory.Type().createReference(Template.class);
+		localAnnotationType = factory.Type().createReference(Local.class);
+	}
+
+	/**
+	 * Gets the factory of this template.
+	 */
+	public Factory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Gets the template type.
+	 */
+	public CtClass<? extends Template<?>> getTemplateType() {
+		return templateType;
+	}
+
+	/**
+	 * Gets the names of the template parameters (including the ones defined
+	 * by the super types).
+	 */
+	public Collection<String> getParameterNames() {
+		return parameterNames;
+	}
+
+	/**
+	 * Gets the reference to the {@link TemplateParameter#S()} method.
+	 */
+	public CtExecutableReference<?> getParameterMethod() {
+		return parameterMethod;
+	}
+
+	/**
+	 * Gets the reference to the {@link Template} interface.
+	 */
+	public CtTypeReference<?> getTemplateInterface() {
+		return templateInterface;
+	}
+
+	/**
+	 * Gets the reference to the {@link Local} annotation type.
+	 */
+	public CtTypeReference<Local> getLocalAnnotationType() {
+		return localAnnotationType;
+	}
+
+	/**
+	 * Gets the value of a template parameter in a template instance.
+	 *
+	 * @see Parameters#getValue(Template, String, Integer)
+	 */
+	public Object getValue(Template<?> template, String parameterName,
+			Integer index) {
+		Field f = parameterFields.get(parameterName);
+		if (f == null || !f.getDeclaringClass().isInstance(template)) {
+			return Parameters.getValue(template, parameterName, index);
+		}
+		return Parameters.getValue(template, f, parameterName, index);
+	}
+
+	/**
+	 * Tells if a field reference is a template parameter (cached version of
+	 * {@link Parameters#isParameterSource(CtFieldReference)}).
+	 */
+	public synchronized boolean isParameterSource(CtFieldReference<?> ref) {
+		String key = getQualifiedName(ref.getDeclaringType()) + "#"
+				+ ref.getSimpleName() + ":" + getQualifiedName(ref.getType());
+		Boolean b = parameterSources.get(key);
+		if (b == null) {
+			b = Parameters.isParameterSource(ref);
+			parameterSources.put(key, b);
+		}
+		return b;
+	}
+
+	private static String getQualifiedName(CtTypeReference<?> ref) {
+		return ref == null ? null : ref.getQualifiedName();
+	}
+
+	/**
+	 * Tells if a type reference is a subtype of {@link Template} (cached).
+	 */
+	public synchronized boolean isTemplateType(CtTypeReference<?> ref) {
+		String key = ref.getQualifiedName();
+		Boolean b = templateTypes.get(key);
+		if (b == null) {
+			b = templateInterface.isAssignableFrom(ref);
+			templateTypes.put(key, b);
+		}
+		return b;
+	}
+
+	/**
+	 * Substitutes all the template parameters in a copy of a piece of the
+	 * template code.
+	 *
+	 * @param targetType
+	 *            the target type (null if the template code does not refer to
+	 *            the target type)
+	 * @param template
+	 *            the template instance, which holds the parameter values
+	 * @param code
+	 *            the template code
+	 * @return the copy of the code where all the template parameters have
+	 *         been substituted by their values
+	 * @see Substitution#substitute(CtType, Template, CtElement)
+	 */
+	public <E extends CtElement> E substitute(CtType<?> targetType,
+			Template<?> template, E code) {
+		if (code == null) {
+			return null;
+		}
+		E result = factory.Core().clone(code);
+		substituteCopy(targetType, template, code, result);
+		return result;
+	}
+
+	/**
+	 * Substitutes all the template parameters in a copy of a template type.
+	 *
+	 * @see Substitution#substitute(Template, CtType)
+	 */
+	public <T extends CtType<?>> T substitute(Template<?> template,
+			T templateType) {
+		T result = factory.Core().clone(templateType);
+		result.setPositions(null);
+		substituteCopy(result, template, templateType, result);
+		return result;
+	}
+
+	private void substituteCopy(CtType<?> targetType, Template<?> template,
+			CtElement code, CtElement copy) {
+		boolean[] dirty = getSites(code);
+		if (!dirty[0]) {
+			return;
+		}
+		List<CtElement> elements = preOrder(copy);
+		Map<CtElement, Object> skipped = null;
+		if (elements.size() == dirty.length) {
+			skipped = new IdentityHashMap<CtElement, Object>();
+			for (int i = 0; i < dirty.length; i++) {
+				if (!dirty[i]) {
+					skipped.put(elements.get(i), Boolean.TRUE);
+				}
+			}
+		}
+		new SubstitutionVisitor(this, targetType, template, skipped)
+				.scan(copy);
+	}
+
+	private static List<CtElement> preOrder(CtElement root) {
+		final List<CtElement> elements = new ArrayList<CtElement>();
+		new CtScanner() {
+			@Override
+			protected void enter(CtElement e) {
+				elements.add(e);
+			}
+		}.scan(root);
+		return elements;
+	}
+
+	/**
+	 * Gets the substitution sites of a template element: for each element of
+	 * its subtree, in scanning order, tells if it contains a site.
+	 */
+	private synchronized boolean[] getSites(CtElement code) {
+		boolean[] dirty = sites.get(code);
+		if (dirty == null) {
+			SiteScanner scanner = new SiteScanner();
+			scanner.scan(code);
+			dirty = Arrays.copyOf(scanner.dirty, Math.max(1, scanner.count));
+			if (scanner.count == 0) {
+				dirty[0] = true;
+			}
+			sites.put(code, dirty);
+		}
+		return dirty;
+	}
+
+	private boolean containsParameterName(String s) {
+		if (s != null) {
+			for (String pname : parameterNames) {
+				if (s.contains(pname)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks the elements which contain some code that may be changed by the
+	 * {@link SubstitutionVisitor}. This is a conservative approximation.
+	 */
+	private class SiteScanner extends CtScanner {
+		boolean[] dirty = new boolean[64];
+
+		int count;
+
+		int[] stack = new int[16];
+
+		int depth;
+
+		@Override
+		protected void enter(CtElement e) {
+			if (count == dirty.length) {
+				dirty = Arrays.copyOf(dirty, count * 2);
+			}
+			if (depth == stack.length) {
+				stack = Arrays.copyOf(stack, depth * 2);
+			}
+			stack[depth++] = count;
+			dirty[count++] = isSite(e);
+		}
+
+		@Override
+		protected void exit(CtElement e) {
+			int i = stack[--depth];
+			if (dirty[i] && depth > 0) {
+				dirty[stack[depth - 1]] = true;
+			}
+		}
+
+		@Override
+		public void scan(CtReference reference) {
+			if (reference != null && depth > 0 && isSite(reference)) {
+				dirty[stack[depth - 1]] = true;
+			}
+			super.scan(reference);
+		}
+
+		private boolean isSite(CtElement e) {
+			try {
+				if (e instanceof CtClass) {
+					return true;
+				}
+				if (e instanceof CtNamedElement
+						&& (containsParameterName(((CtNamedElement) e)
+								.getSimpleName()) || containsParameterName(e
+								.getDocComment()))) {
+					return true;
+				}
+				if (e instanceof CtAnnotation
+						&& localAnnotationType.equals(((CtAnnotation<?>) e)
+								.getAnnotationType())) {
+					return true;
+				}
+				if (e instanceof CtFieldAccess) {
+					CtFieldReference<?> ref = ((CtFieldAccess<?>) e)
+							.getVariable();
+					if (ref != null && isParameterSource(ref)) {
+						return true;
+					}
+				}
+				if (e instanceof CtInvocation) {
+					CtExecutableReference<?> ref = ((CtInvocation<?>) e)
+							.getExecutable();
+					if (ref != null && ref.isOverriding(parameterMethod)) {
+						return true;
+					}
+				}
+				if (e instanceof CtLiteral
+						&& ((CtLiteral<?>) e).getValue() instanceof CtReference
+						&& isSite((CtReference) ((CtLiteral<?>) e).getValue())) {
+					return true;
+				}
+				if (e instanceof CtVariableAccess
+						&& ((CtVariableAccess<?>) e).getType() != null
+						&& isSite(((CtVariableAccess<?>) e).getType())) {
+					return true;
+				}
+				if (e instanceof CtTypedElement
+						&& ((CtTypedElement<?>) e).getType() != null
+						&& isSite(((CtTypedElement<?>) e).getType())) {
+					return true;
+				}
+				return false;
+			} catch (RuntimeException ex) {
+				return true;
+			}
+		}
+
+		private boolean isSite(CtReference ref) {
+			try {
+				if (containsParameterName(ref.getSimpleName())) {
+					return true;
+				}
+				if (ref instanceof CtExecutableReference
+						&& ((CtExecutableReference<?>) ref).getDeclaringType() != null) {
+					return isSite(((CtExecutableReference<?>) ref)
+							.getDeclaringType());
+				}
+				if (ref instanceof CtTypeReference) {
+					CtTypeReference<?> t = (CtTypeReference<?>) ref;
+					return t.equals(templateReference) || isTemplateType(t);
+				}
+				return false;
+			} catch (RuntimeException ex) {
+				return true;
+			}
+		}
+	}
+
+}
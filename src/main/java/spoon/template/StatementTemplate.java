@@ -21,7 +21,6 @@ import spoon.reflect.code.CtStatement;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.factory.Factory;
-import spoon.support.template.SubstitutionVisitor;
 
 /**
  * This class represents a template parameter that defines a statement list
@@ -59,10 +58,9 @@ public abstract class StatementTemplate extends AbstractTemplate<CtStatement> {
 			c = factory.Class().get(this.getClass());
 		}
 		// we substitute the first statement of method statement
-		CtStatement result = factory.Core().clone(c.getMethod("statement").getBody().getStatements().get(0));
-		new SubstitutionVisitor(factory, targetType, this)
-				.scan(result);
-		return result;
+		CtStatement statement = c.getMethod("statement").getBody().getStatements().get(0);
+		return factory.Template().prepare(getClass()).substitute(targetType,
+				this, statement);
 	}
 
 	public Void S() {
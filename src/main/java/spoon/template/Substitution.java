@@ -36,10 +36,11 @@ import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.visitor.Query;
 import spoon.reflect.visitor.filter.ReferenceTypeFilter;
 import spoon.support.template.Parameters;
-import spoon.support.template.SubstitutionVisitor;
 
 /**
  * This class defines the substitution API for templates (see {@link Template}).
+ * The substitutions use the prepared templates of the factory (see
+ * {@link PreparedTemplate}).
  */
 public abstract class Substitution {
 
@@ -456,10 +457,8 @@ public abstract class Substitution {
 			return null;
 		if (targetType == null)
 			throw new RuntimeException("target is null in substitution");
-		E result = targetType.getFactory().Core().clone(code);
-		new SubstitutionVisitor(targetType.getFactory(), targetType, template)
-				.scan(result);
-		return result;
+		return targetType.getFactory().Template().prepare(template.getClass())
+				.substitute(targetType, template, code);
 	}
 
 	/**
@@ -503,12 +502,8 @@ public abstract class Substitution {
 	 */
 	public static <T extends CtType<?>> T substitute(Template<?> template,
 			T templateType) {
-		T result = templateType.getFactory().Core().clone(templateType);
-		result.setPositions(null);
-		// result.setParent(templateType.getParent());
-		new SubstitutionVisitor(templateType.getFactory(), result, template)
-				.scan(result);
-		return result;
+		return templateType.getFactory().Template()
+				.prepare(template.getClass()).substitute(template, templateType);
 	}
 
 	/**
@@ -29,10 +29,13 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import spoon.Launcher;
+import spoon.reflect.code.CtBinaryOperator;
 import spoon.reflect.code.CtFieldAccess;
 import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtLiteral;
 import spoon.reflect.code.CtStatement;
 import spoon.reflect.code.CtStatementList;
+import spoon.reflect.code.CtUnaryOperator;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtField;
@@ -142,6 +145,8 @@ public class TemplateMatcher {
 
 	private List<CtInvocation<?>> variables;
 
+	private MatchPlan plan;
+
 	/**
 	 * Constructs a matcher for a given template.
 	 * 
@@ -204,10 +209,12 @@ public class TemplateMatcher {
 	 */
 	public boolean find(CtElement targetRoot, final CtElement templateRoot) {
 		found = false;
+		final MatchPlan plan = getPlan(templateRoot);
 		new CtScanner() {
 			@Override
 			public void scan(CtElement element) {
-				if (match(element, templateRoot)) {
+				if (element != null && plan.accepts(element)
+						&& match(element, templateRoot)) {
 					finds.add(element);
 					found = true;
 					// matches.clear();
@@ -219,6 +226,17 @@ public class TemplateMatcher {
 		return found;
 	}
 
+	/**
+	 * Gets the match plan of a template root. The plan of the last used root
+	 * is kept, so that it is compiled only once.
+	 */
+	MatchPlan getPlan(CtElement templateRoot) {
+		if (plan == null || plan.templateRoot != templateRoot) {
+			plan = new MatchPlan(templateRoot);
+		}
+		return plan;
+	}
+
 	private ParameterMatcher findParameterMatcher(CtElement declaration,
 			String name) throws InstantiationException, IllegalAccessException {
 		if (declaration == null) {
@@ -397,6 +415,10 @@ public class TemplateMatcher {
 				if (Modifier.isStatic(f.getModifiers())) {
 					continue;
 				}
+				// transient fields are caches, not part of the model
+				if (Modifier.isTransient(f.getModifiers())) {
+					continue;
+				}
 				if (f.getName().equals("parent")) {
 					continue;
 				}
@@ -579,6 +601,15 @@ public class TemplateMatcher {
 		return true;
 	}
 
+	private boolean containsParameterName(String name) {
+		for (String pname : names) {
+			if (name.contains(pname)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private boolean matchNames(String name, String tname) {
 
 		try {
@@ -628,4 +659,102 @@ public class TemplateMatcher {
 		return checkListStatements(teList2);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A template root precompiled into a set of cheap checks, which reject
+	 * most of the candidate targets before the deep, reflective
+	 * {@link TemplateMatcher#match(CtElement, CtElement)}. Each check is
+	 * implied by the deep match: the plan never rejects a matching target.
+	 */
+	class MatchPlan {
+		final CtElement templateRoot;
+
+		/**
+		 * The exact class of the matching targets, or null if the root is a
+		 * template parameter (which matches any element).
+		 */
+		final Class<?> rootClass;
+
+		private boolean checkValue;
+
+		private Object value;
+
+		private String name;
+
+		MatchPlan(CtElement templateRoot) {
+			this.templateRoot = templateRoot;
+			if (variables.contains(templateRoot)
+					|| typeVariables.contains(templateRoot)) {
+				rootClass = null;
+				return;
+			}
+			rootClass = templateRoot.getClass();
+			if (templateRoot instanceof CtLiteral) {
+				value = ((CtLiteral<?>) templateRoot).getValue();
+				checkValue = !(value instanceof String)
+						|| !containsParameterName((String) value);
+			} else if (templateRoot instanceof CtBinaryOperator) {
+				value = ((CtBinaryOperator<?>) templateRoot).getKind();
+				checkValue = true;
+			} else if (templateRoot instanceof CtUnaryOperator) {
+				value = ((CtUnaryOperator<?>) templateRoot).getKind();
+				checkValue = true;
+			}
+			String n = null;
+			if (templateRoot instanceof CtInvocation) {
+				CtExecutableReference<?> e = ((CtInvocation<?>) templateRoot)
+						.getExecutable();
+				n = e == null ? null : e.getSimpleName();
+			} else if (templateRoot instanceof CtNamedElement) {
+				n = ((CtNamedElement) templateRoot).getSimpleName();
+			}
+			if (n != null && !containsParameterName(n)) {
+				name = n;
+			}
+		}
+
+		TemplateMatcher getMatcher() {
+			return TemplateMatcher.this;
+		}
+
+		/**
+		 * Tells if the given target may match the template root.
+		 */
+		boolean accepts(CtElement target) {
+			if (rootClass == null) {
+				return true;
+			}
+			if (target.getClass() != rootClass) {
+				return false;
+			}
+			if (checkValue && !equals(value, valueOf(target))) {
+				return false;
+			}
+			if (name != null) {
+				String targetName = null;
+				if (target instanceof CtInvocation) {
+					CtExecutableReference<?> e = ((CtInvocation<?>) target)
+							.getExecutable();
+					targetName = e == null ? null : e.getSimpleName();
+				} else {
+					targetName = ((CtNamedElement) target).getSimpleName();
+				}
+				return name.equals(targetName);
+			}
+			return true;
+		}
+
+		private Object valueOf(CtElement target) {
+			if (target instanceof CtLiteral) {
+				return ((CtLiteral<?>) target).getValue();
+			} else if (target instanceof CtBinaryOperator) {
+				return ((CtBinaryOperator<?>) target).getKind();
+			}
+			return ((CtUnaryOperator<?>) target).getKind();
+		}
+
+		private boolean equals(Object o1, Object o2) {
+			return o1 == null ? o2 == null : o1.equals(o2);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package spoon.support.compiler.jdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import spoon.Launcher;
+
+public class ConcurrentCompilationTest {
+
+	@Test
+	public void testConcurrentCompilation() throws Exception {
+		File classes = new File("target/spooned-concurrent-classes");
+		FileUtils.deleteDirectory(classes);
+		Launcher launcher = new Launcher();
+		launcher.getEnvironment().setCompilationThreads(4);
+		launcher.getEnvironment().setComplianceLevel(8);
+
+		final List<JDTBatchCompiler> batchCompilers = new ArrayList<JDTBatchCompiler>();
+		final List<Thread> printingThreads = Collections
+				.synchronizedList(new ArrayList<Thread>());
+		final List<String> printedDuringCompilation = Collections
+				.synchronizedList(new ArrayList<String>());
+		JDTBasedSpoonCompiler compiler = new JDTBasedSpoonCompiler(
+				launcher.getFactory()) {
+			@Override
+			protected JDTBatchCompiler createBatchCompiler(boolean useFactory) {
+				JDTBatchCompiler batchCompiler = super
+						.createBatchCompiler(useFactory);
+				if (useFactory) {
+					batchCompilers.add(batchCompiler);
+				}
+				return batchCompiler;
+			}
+
+			@Override
+			protected char[] getCompilationUnitContents(String path) {
+				printingThreads.add(Thread.currentThread());
+				if (batchCompilers.get(0).batchCompiler != null) {
+					printedDuringCompilation.add(path);
+				}
+				return super.getCompilationUnitContents(path);
+			}
+		};
+		// enough compilation units for JDT to read them in parallel
+		compiler.addInputSource(new File(
+				"src/test/java/spoon/test/annotation/testclasses/"));
+		compiler.setDestinationDirectory(classes);
+		assertTrue(compiler.build());
+		int units = launcher.getFactory().CompilationUnit().getMap().size();
+		assertTrue(units >= 10);
+
+		assertTrue(compiler.compile());
+		assertTrue(new File(classes,
+				"spoon/test/annotation/testclasses/Main.class").exists());
+
+		// JDT ran with its concurrent pipeline
+		assertEquals(1, batchCompilers.size());
+		assertFalse(batchCompilers.get(0).batchCompiler.useSingleThread);
+
+		// each unit was printed once up front by the printing threads, and
+		// then served to JDT without being printed again
+		assertEquals(units, printingThreads.size());
+		assertFalse(printingThreads.contains(Thread.currentThread()));
+		assertTrue(printedDuringCompilation.isEmpty());
+
+		// the threading mode does not leak to other compilers
+		assertNull(System.getProperty("jdt.compiler.useSingleThread"));
+	}
+}
@@ -10,13 +10,18 @@ import java.io.File;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import spoon.Launcher;
+import spoon.processing.AbstractAnnotationProcessor;
+import spoon.processing.AbstractProcessor;
 import spoon.reflect.code.CtBlock;
 import spoon.reflect.code.CtConstructorCall;
 import spoon.reflect.code.CtExpression;
@@ -29,6 +34,7 @@ import spoon.reflect.declaration.CtAnnotation;
 import spoon.reflect.declaration.CtAnnotationType;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtEnum;
 import spoon.reflect.declaration.CtField;
 import spoon.reflect.declaration.CtInterface;
@@ -39,11 +45,16 @@ import spoon.reflect.declaration.CtType;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+import spoon.reflect.visitor.Query;
+import spoon.reflect.visitor.filter.AnnotationFilter;
 import spoon.reflect.visitor.filter.AbstractFilter;
 import spoon.reflect.visitor.filter.NameFilter;
 import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.QueueProcessingManager;
+import spoon.template.Substitution;
 import spoon.test.TestUtils;
 import spoon.test.annotation.testclasses.AnnotArray;
+import spoon.test.annotation.testclasses.AnnotatedTemplate;
 import spoon.test.annotation.testclasses.AnnotParamTypeEnum;
 import spoon.test.annotation.testclasses.AnnotParamTypes;
 import spoon.test.annotation.testclasses.AnnotationDefaultAnnotation;
@@ -56,6 +67,7 @@ import spoon.test.annotation.testclasses.Foo.MiddleAnnotation;
 import spoon.test.annotation.testclasses.Foo.OuterAnnotation;
 import spoon.test.annotation.testclasses.InnerAnnot;
 import spoon.test.annotation.testclasses.Main;
+import spoon.test.annotation.testclasses.TestAnnotation;
 import spoon.test.annotation.testclasses.TestInterface;
 import spoon.test.annotation.testclasses.TypeAnnotation;
 
@@ -709,4 +721,123 @@ public class AnnotationTest {
 	private CtAnnotation<?> getMiddleAnnotation(CtNewArray<?> arrayAnnotations, int index) {
 		return (CtAnnotation<?>) arrayAnnotations.getElements().get(index);
 	}
+
+	@Test
+	public void testAnnotationIndex() throws Exception {
+		final CtClass<?> main = (CtClass<?>) factory.Type().get(Main.class);
+		final CtMethod<?> m1 = main.getMethodsByName("m1").get(0);
+		final CtParameter<?> a = main.getMethodsByName("m").get(0).getParameters().get(0);
+
+		// same result as a query of the whole model
+		assertEquals(Query.getElements(factory, new AnnotationFilter<CtElement>(Bound.class)),
+				factory.Annotation().getAnnotatedElements(Bound.class));
+		assertEquals(Query.getElements(main, new AnnotationFilter<CtElement>(TestAnnotation.class)),
+				main.getAnnotatedChildren(TestAnnotation.class));
+		final int count = main.getAnnotatedChildren(TestAnnotation.class).size();
+
+		// the index follows the changes of the model
+		factory.Annotation().annotate(m1, TestAnnotation.class);
+		assertEquals(count + 1, main.getAnnotatedChildren(TestAnnotation.class).size());
+		assertTrue(factory.Annotation().getAnnotatedElements(TestAnnotation.class).contains(m1));
+		assertTrue(factory.Annotation().getAnnotatedElements(Bound.class).contains(a));
+		a.removeAnnotation(a.getAnnotation(factory.Type().createReference(Bound.class)));
+		assertTrue(!factory.Annotation().getAnnotatedElements(Bound.class).contains(a));
+		assertEquals(0, main.getAnnotatedChildren(Bound.class).size());
+
+		// annotation processors only visit the annotated elements
+		final List<CtElement> expected = Query.getElements(factory, new AnnotationFilter<CtElement>(TestAnnotation.class));
+		final List<CtElement> processed = new ArrayList<CtElement>();
+		QueueProcessingManager manager = new QueueProcessingManager(factory);
+		manager.addProcessor(new AbstractAnnotationProcessor<TestAnnotation, CtElement>() {
+			@Override
+			public void process(TestAnnotation annotation, CtElement element) {
+				processed.add(element);
+			}
+		});
+		manager.process();
+		assertEquals(expected.size(), processed.size());
+		assertTrue(processed.containsAll(expected));
+		assertTrue(processed.contains(m1));
+	}
+
+	@Test
+	public void testAnnotationIndexWithInsertedCode() throws Exception {
+		final CtClass<?> main = (CtClass<?>) factory.Type().get(Main.class);
+		final CtMethod<?> toString = main.getMethodsByName("toString").get(0);
+
+		// cloned before the index is built
+		final CtMethod<?> copy = factory.Core().clone(toString);
+		copy.setSimpleName("toString2");
+		main.addMethod(copy);
+		assertEquals(2, main.getAnnotatedChildren(Override.class).size());
+
+		// cloned after the index is built, and added after a query
+		final CtMethod<?> copy2 = factory.Core().clone(toString);
+		copy2.setSimpleName("toString3");
+		assertEquals(2, main.getAnnotatedChildren(Override.class).size());
+		main.addMethod(copy2);
+		assertEquals(3, main.getAnnotatedChildren(Override.class).size());
+
+		// not part of the model
+		final CtClass<?> clone = factory.Core().clone(main);
+		assertEquals(3, clone.getAnnotatedChildren(Override.class).size());
+		assertEquals(main.getAnnotatedChildren(TestAnnotation.class).size(),
+				clone.getAnnotatedChildren(TestAnnotation.class).size());
+
+		// code inserted by a template in an earlier processor
+		final int count = Query.getElements(factory, new AnnotationFilter<CtElement>(TestAnnotation.class)).size();
+		final List<CtElement> processed = new ArrayList<CtElement>();
+		QueueProcessingManager manager = new QueueProcessingManager(factory);
+		manager.addProcessor(new AbstractProcessor<CtClass<?>>() {
+			@Override
+			public boolean isToBeProcessed(CtClass<?> candidate) {
+				return candidate == main;
+			}
+
+			@Override
+			public void process(CtClass<?> element) {
+				Substitution.insertAllMethods(element, new AnnotatedTemplate());
+				final CtMethod<?> inserted = element.getMethodsByName("inserted").get(0);
+				assertTrue(element.getAnnotatedChildren(TestAnnotation.class).contains(inserted));
+			}
+		});
+		manager.addProcessor(new AbstractAnnotationProcessor<TestAnnotation, CtElement>() {
+			@Override
+			public void process(TestAnnotation annotation, CtElement element) {
+				processed.add(element);
+			}
+		});
+		manager.process();
+		assertTrue(processed.contains(main.getMethodsByName("inserted").get(0)));
+		assertEquals(count + 1, processed.size());
+	}
+
+	@Test
+	public void testCachedActualAnnotation() throws Exception {
+		final CtClass<?> main = (CtClass<?>) factory.Type().get(Main.class);
+		final CtMethod<?> m1 = main.getMethodsByName("m1").get(0);
+		final CtAnnotation<AnnotParamTypes> a = m1.getAnnotation(factory.Type().createReference(AnnotParamTypes.class));
+
+		// the proxy and its values are reused
+		final AnnotParamTypes annot = a.getActualAnnotation();
+		assertTrue(annot == a.getActualAnnotation());
+		assertEquals(42, annot.integer());
+		assertArrayEquals(new int[] { 42 }, annot.integers());
+
+		// the returned arrays are copies
+		annot.integers()[0] = 0;
+		assertArrayEquals(new int[] { 42 }, annot.integers());
+
+		// a modification of the annotation gives a new proxy
+		final CtAnnotation<AnnotParamTypes> b = factory.Core().clone(a);
+		assertTrue(annot != b.getActualAnnotation());
+		final AnnotParamTypes cloned = b.getActualAnnotation();
+		assertTrue(cloned == b.getActualAnnotation());
+		final Map<String, Object> values = new HashMap<String, Object>(b.getElementValues());
+		values.put("c", 'd');
+		b.setElementValues(values);
+		assertTrue(cloned != b.getActualAnnotation());
+		assertEquals('d', b.getActualAnnotation().c());
+		assertEquals('c', annot.c());
+	}
 }
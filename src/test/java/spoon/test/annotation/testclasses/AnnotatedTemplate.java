@@ -0,0 +1,10 @@
+package spoon.test.annotation.testclasses;
+
+import spoon.template.ExtensionTemplate;
+
+public class AnnotatedTemplate extends ExtensionTemplate {
+
+	@TestAnnotation
+	public void inserted() {
+	}
+}
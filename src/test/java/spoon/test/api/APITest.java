@@ -7,6 +7,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -16,6 +17,7 @@ import spoon.reflect.declaration.CtPackage;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.factory.Factory;
 import spoon.support.JavaOutputProcessor;
+import spoon.support.util.Metrics;
 
 public class APITest {
 
@@ -63,6 +65,56 @@ public class APITest {
 		Assert.assertEquals(2, l.size());
 	}
 	
+	@Test
+	public void testMetrics() throws Exception {
+		// the metrics are disabled by default
+		Launcher spoon = new Launcher();
+		Metrics metrics = spoon.getEnvironment().getMetrics();
+		Assert.assertFalse(metrics.isEnabled());
+		metrics.stop(Metrics.PHASE, "foo", metrics.start());
+		Assert.assertEquals(0, metrics.getCount(Metrics.PHASE, "foo"));
+
+		File json = new File("target/spooned-apitest/metrics.json");
+		spoon.run(new String[] {
+				"-i", "src/test/resources/spoon/test/api/",
+				"-o", "target/spooned-apitest",
+				"--metrics", json.getPath()
+				});
+		assertTrue(metrics.isEnabled());
+		for (String phase : new String[] { "jdt", "build", "process", "print" }) {
+			Assert.assertEquals(phase, 1, metrics.getCount(Metrics.PHASE, phase));
+		}
+		// one compilation unit with two top-level types
+		Assert.assertEquals(1, metrics.getTimerNames(Metrics.BUILD).size());
+		Assert.assertEquals(2, metrics.getTimerNames(Metrics.PRINT).size());
+		Assert.assertEquals(3, metrics.getSnapshotCount());
+
+		String content = FileUtils.readFileToString(json);
+		assertTrue(content.contains("\"timers\""));
+		assertTrue(content.contains("\"phase\""));
+		assertTrue(content.contains("\"snapshots\""));
+		assertTrue(content.contains("\"heapUsed\""));
+	}
+
+	@Test
+	public void testConcurrentCompilation() throws Exception {
+		File classes = new File("target/spooned-apitest-classes");
+		FileUtils.deleteDirectory(classes);
+		Launcher spoon = new Launcher();
+		spoon.run(new String[] {
+				"-i", "src/test/resources/spoon/test/api/",
+				"-o", "target/spooned-apitest",
+				"-d", classes.getPath(),
+				"--compile",
+				"--compile-threads", "4"
+				});
+		Assert.assertEquals(4, spoon.getEnvironment().getCompilationThreads());
+		assertTrue(new File(classes, "Foo.class").exists());
+		assertTrue(new File(classes, "Bar.class").exists());
+		// the threading mode does not leak to other compilers
+		Assert.assertNull(System.getProperty("jdt.compiler.useSingleThread"));
+	}
+
 	@Test
 	public void testDuplicateEntry() throws Exception {
 		// it's possible to pass twice the same file as parameter
@@ -1,10 +1,13 @@
 package spoon.test.api;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
 import spoon.compiler.SpoonFolder;
@@ -19,4 +22,27 @@ public class FileSystemFolderTest {
 		List<SpoonFolder> subFolders = folder.getSubFolders();
 		assertTrue(subFolders.isEmpty());
 	}
+
+	@Test
+	public void testSnapshotRefresh() throws Exception {
+		File dir = new File("target/spooned-folder");
+		FileUtils.deleteDirectory(dir);
+		File sub = new File(dir, "p");
+		sub.mkdirs();
+		FileUtils.writeStringToFile(new File(sub, "A.java"), "class A {}");
+		FileUtils.writeStringToFile(new File(dir, "README"), "");
+
+		FileSystemFolder folder = new FileSystemFolder(dir);
+		assertEquals(2, folder.getAllFiles().size());
+		assertEquals(1, folder.getAllJavaFiles().size());
+		assertFalse(folder.refresh());
+
+		// the snapshot does not see the new file until it is refreshed
+		FileUtils.writeStringToFile(new File(sub, "B.java"), "class B {}");
+		sub.setLastModified(sub.lastModified() + 2000);
+		assertEquals(1, folder.getAllJavaFiles().size());
+		assertTrue(folder.refresh());
+		assertEquals(2, folder.getAllJavaFiles().size());
+		assertFalse(folder.refresh());
+	}
 }
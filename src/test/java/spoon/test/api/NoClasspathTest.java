@@ -1,8 +1,10 @@
 package spoon.test.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -18,6 +20,7 @@ import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.code.CtReturn;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.reference.CtExecutableReference;
 import spoon.reflect.reference.CtTypeReference;
@@ -100,6 +103,41 @@ public class NoClasspathTest {
 
 	}
 	
+	@Test
+	public void testShadowTypes() throws Exception {
+		Launcher spoon = new Launcher();
+		spoon.getEnvironment().setNoClasspath(true);
+		spoon.addInputResource("./src/test/resources/spoon/test/noclasspath");
+		spoon.buildModel();
+		Factory factory = spoon.getFactory();
+		CtClass<Object> clazz = factory.Class().get("Foo");
+		CtTypeReference<?> superclass = clazz.getSuperclass();
+
+		CtType<?> shadow = superclass.getTypeDeclaration();
+		assertNotNull(shadow);
+		assertSame(shadow, superclass.getTypeDeclaration());
+		assertTrue(factory.Type().isShadowType(shadow));
+		assertEquals("Unknown", shadow.getQualifiedName());
+		assertFalse(factory.Type().getAll().contains(shadow));
+		assertNull(superclass.getDeclaration());
+		assertFalse(factory.Type().isShadowType(clazz));
+
+		// no exception on the unresolved types
+		assertTrue(superclass.getAllExecutables().isEmpty());
+		assertTrue(superclass.getModifiers().isEmpty());
+		assertFalse(superclass.isInterface());
+		assertTrue(superclass.isSubtypeOf(factory.Type().OBJECT));
+		assertFalse(superclass.isSubtypeOf(factory.Type().STRING));
+		assertTrue(clazz.getReference().isSubtypeOf(superclass));
+		assertEquals(clazz.getDeclaredExecutables().size(), clazz
+				.getAllExecutables().size());
+
+		// the types of the classpath are not shadowed
+		assertNull(factory.Type().STRING.getTypeDeclaration());
+		assertNotNull(factory.Type().findClass("java.lang.String"));
+		assertNull(factory.Type().findClass("Unknown"));
+	}
+
 	@Test
 	public void testBug20141021() {
 		// 2014/10/21 NPE is noclasspath mode on a large open-source project
@@ -0,0 +1,152 @@
+package spoon.test.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import spoon.SpoonServer;
+import spoon.test.api.testclasses.Bar;
+
+public class SpoonServerTest {
+
+	@Test
+	public void testModelReuse() throws Exception {
+		File src = new File("target/spooned-server-src");
+		File out = new File("target/spooned-server");
+		FileUtils.deleteDirectory(src);
+		FileUtils.deleteDirectory(out);
+		File foo = new File(src, "Foo.java");
+		FileUtils.copyFile(new File("src/test/resources/spoon/test/api/Foo.java"), foo);
+
+		SpoonServer server = new SpoonServer(new String[] {
+				"-i", src.getPath(), "-o", out.getPath() });
+		try {
+			StringWriter answers = new StringWriter();
+			server.serve(new StringReader("build\nbuild\nprint Foo\nstop\nbuild\n"),
+					answers);
+			String[] lines = answers.toString().split("\r?\n");
+			assertEquals(5, lines.length);
+			assertEquals("ok 2 types", lines[0]);
+			assertEquals("ok 2 types", lines[1]);
+			assertTrue(lines[2].endsWith("Foo.java"));
+			assertEquals("ok", lines[3]);
+			assertEquals("ok", lines[4]);
+			assertTrue(new File(out, "Foo.java").exists());
+			// the model was built once
+			assertEquals(1, server.getBuildCount());
+
+			// a modified input file is built again once notified
+			FileUtils.writeStringToFile(foo, "public class Foo{} class Bar{} class Baz{}");
+			answers = new StringWriter();
+			server.handle("changed pom.xml", new PrintWriter(answers));
+			server.handle("build", new PrintWriter(answers));
+			assertEquals("ok\nok 2 types", answers.toString().trim()
+					.replace("\r", ""));
+			assertEquals(1, server.getBuildCount());
+			answers = new StringWriter();
+			server.handle("changed " + foo.getPath(), new PrintWriter(answers));
+			server.handle("build", new PrintWriter(answers));
+			assertEquals("ok\nok 3 types", answers.toString().trim()
+					.replace("\r", ""));
+			assertEquals(2, server.getBuildCount());
+
+			// a created input file is detected
+			FileUtils.writeStringToFile(new File(src, "Qux.java"), "class Qux{}");
+			answers = new StringWriter();
+			server.handle("build", new PrintWriter(answers));
+			assertEquals("ok 4 types", answers.toString().trim());
+			assertEquals(3, server.getBuildCount());
+
+			// the processed model is not reused
+			answers = new StringWriter();
+			server.handle("process", new PrintWriter(answers));
+			assertEquals("ok", answers.toString().trim());
+			server.handle("build", new PrintWriter(new StringWriter()));
+			assertEquals(4, server.getBuildCount());
+
+			answers = new StringWriter();
+			server.handle("print Unknown", new PrintWriter(answers));
+			assertTrue(answers.toString().startsWith("error"));
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testClasspathChange() throws Exception {
+		File src = new File("target/spooned-server-src");
+		File lib = new File("target/spooned-server-lib");
+		File jar = new File("target/spooned-server-lib.jar");
+		FileUtils.deleteDirectory(src);
+		FileUtils.deleteDirectory(lib);
+		lib.mkdirs();
+		InputStream in = Bar.class.getResourceAsStream("Bar.class");
+		byte[] bytes;
+		try {
+			bytes = IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+		writeJar(jar, "Empty.txt", bytes);
+		FileUtils.writeStringToFile(new File(src, "Foo.java"),
+				"class Foo { spoon.test.api.testclasses.Bar bar; }");
+
+		String entry = Bar.class.getName().replace('.', '/') + ".class";
+		SpoonServer server = new SpoonServer(new String[] { "-i",
+				src.getPath(), "--source-classpath",
+				lib.getPath() + File.pathSeparator + jar.getPath() });
+		try {
+			StringWriter answers = new StringWriter();
+			server.handle("build", new PrintWriter(answers));
+			assertTrue(answers.toString().startsWith("error"));
+
+			// a class appears in a classpath directory
+			File bar = new File(lib, entry);
+			FileUtils.writeByteArrayToFile(bar, bytes);
+			answers = new StringWriter();
+			server.handle("changed", new PrintWriter(answers));
+			server.handle("build", new PrintWriter(answers));
+			assertEquals("ok\nok 1 types", answers.toString().trim()
+					.replace("\r", ""));
+
+			// it disappears: the build is detected from the classpath
+			bar.delete();
+			answers = new StringWriter();
+			server.handle("build", new PrintWriter(answers));
+			assertTrue(answers.toString().startsWith("error"));
+
+			// it appears in a rebuilt jar, which is opened again
+			writeJar(jar, entry, bytes);
+			jar.setLastModified(jar.lastModified() + 2000);
+			answers = new StringWriter();
+			server.handle("build", new PrintWriter(answers));
+			assertEquals("ok 1 types", answers.toString().trim());
+		} finally {
+			server.close();
+		}
+	}
+
+	private static void writeJar(File jar, String entry, byte[] bytes)
+			throws Exception {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new ZipEntry(entry));
+			out.write(bytes);
+			out.closeEntry();
+		} finally {
+			out.close();
+		}
+	}
+}
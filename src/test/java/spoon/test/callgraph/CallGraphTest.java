@@ -0,0 +1,106 @@
+package spoon.test.callgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import spoon.Launcher;
+import spoon.compiler.SpoonCompiler;
+import spoon.reflect.code.CtLambda;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.CallGraph;
+import spoon.reflect.visitor.CallGraphBuilder;
+import spoon.reflect.visitor.Query;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.test.callgraph.testclasses.Shapes;
+
+public class CallGraphTest {
+
+	private Factory factory;
+
+	private CallGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		final Launcher launcher = new Launcher();
+		factory = launcher.createFactory();
+		factory.getEnvironment().setComplianceLevel(8);
+		SpoonCompiler compiler = launcher.createCompiler(factory);
+		compiler.addInputSource(new File("./src/test/java/spoon/test/callgraph/testclasses/"));
+		compiler.build();
+		graph = new CallGraphBuilder(factory).build();
+	}
+
+	private CtType<?> type(String name) {
+		CtType<?> t = factory.Type().get(Shapes.class.getName() + "$" + name);
+		return t == null ? factory.Type().get(Shapes.class) : t;
+	}
+
+	private CtMethod<?> method(String type, String name) {
+		return type(type).getMethodsByName(name).get(0);
+	}
+
+	@Test
+	public void testClassHierarchyAnalysis() throws Exception {
+		CtMethod<?> main = method("Shapes", "main");
+		List<CtElement> callees = graph.getCallees(main);
+
+		assertTrue(graph.isCalling(main, ((CtClass<?>) type("Square")).getConstructors().iterator().next()));
+		assertTrue(graph.isCalling(main, method("Square", "area")));
+		assertTrue(graph.isCalling(main, method("Circle", "area")));
+		assertFalse(graph.isCalling(main, method("Square", "helper")));
+		assertTrue(graph.isReachable(main, method("Square", "helper")));
+		assertTrue(graph.getCallers(method("Square", "helper")).contains(method("Square", "area")));
+
+		CtLambda<?> lambda = Query.getElements(main, new TypeFilter<CtLambda<?>>(CtLambda.class)).get(0);
+		assertTrue(callees.contains(lambda));
+		assertTrue(graph.isCalling(lambda, method("Shapes", "log")));
+		// the call to a static method initializes its class
+		assertTrue(graph.isCalling(lambda, type("Shapes")));
+		assertTrue(graph.isCalling(type("Shapes"), method("Shapes", "init")));
+	}
+
+	@Test
+	public void testDeadCode() throws Exception {
+		List<CtElement> dead = graph.getUnreachable(Collections.singletonList(method("Shapes", "main")));
+
+		assertTrue(containsIdentical(dead, method("Unused", "dead")));
+		assertTrue(containsIdentical(dead, type("Unused")));
+		assertFalse(containsIdentical(dead, method("Square", "helper")));
+		assertFalse(containsIdentical(dead, method("Shapes", "init")));
+		assertEquals(graph.size(), dead.size() + graph.getReachable(Collections.singletonList(method("Shapes", "main"))).size());
+	}
+
+	@Test
+	public void testParallelConstruction() throws Exception {
+		CallGraph sequential = new CallGraphBuilder(factory).setThreads(1).build();
+		CallGraph parallel = new CallGraphBuilder(factory).setThreads(4).build();
+
+		assertEquals(sequential.size(), parallel.size());
+		assertEquals(sequential.getEdgeCount(), parallel.getEdgeCount());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.getNode(i), parallel.getNode(i));
+			assertTrue(java.util.Arrays.equals(sequential.getCalleeIds(i), parallel.getCalleeIds(i)));
+		}
+	}
+
+	private static boolean containsIdentical(List<CtElement> elements, CtElement element) {
+		for (CtElement e : elements) {
+			if (e == element) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
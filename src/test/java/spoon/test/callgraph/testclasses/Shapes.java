@@ -0,0 +1,45 @@
+package spoon.test.callgraph.testclasses;
+
+public class Shapes {
+
+	interface Shape {
+		double area();
+	}
+
+	static class Square implements Shape {
+		public double area() {
+			return helper();
+		}
+
+		private double helper() {
+			return 1;
+		}
+	}
+
+	static class Circle implements Shape {
+		public double area() {
+			return 3;
+		}
+	}
+
+	static class Unused {
+		void dead() {
+		}
+	}
+
+	static int counter = init();
+
+	static int init() {
+		return 0;
+	}
+
+	static void log() {
+	}
+
+	public static void main(String[] args) {
+		Shape s = new Square();
+		s.area();
+		Runnable r = () -> log();
+		r.run();
+	}
+}
@@ -0,0 +1,215 @@
+package spoon.test.compilation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import spoon.Launcher;
+import spoon.SpoonModelBuilder;
+import spoon.reflect.code.CtExpression;
+import spoon.support.compiler.ClassFileStore;
+import spoon.support.compiler.OutputManifest;
+import spoon.support.compiler.PrintedSourceCache;
+import spoon.support.compiler.jdt.NameEnvironmentCache;
+
+public class CompilationTest {
+
+	@Test
+	public void testInMemoryCompilation() throws Exception {
+		File classes = new File("target/spooned-compilation-classes");
+		FileUtils.deleteDirectory(classes);
+		Launcher spoon = new Launcher();
+		spoon.addInputResource("src/test/resources/spoon/test/api");
+		spoon.buildModel();
+		SpoonModelBuilder builder = spoon.getModelBuilder();
+		builder.setDestinationDirectory(classes);
+		ClassFileStore store = new ClassFileStore();
+		builder.setClassFileStore(store);
+
+		assertTrue(builder.compile());
+		// nothing is written to the destination directory
+		assertFalse(classes.exists());
+		assertEquals(2, store.size());
+		assertTrue(store.getMemorySize() > 0);
+		Map<String, byte[]> classFiles = store.getClassFiles();
+		assertNotNull(classFiles.get("Foo"));
+		assertNotNull(classFiles.get("Bar"));
+		assertNull(classFiles.get("Baz"));
+
+		Class<?> foo = store.createClassLoader(getClass().getClassLoader())
+				.loadClass("Foo");
+		assertEquals("Foo", foo.getName());
+		assertNotNull(foo.newInstance());
+
+		// the input sources go to the same store
+		store.clear();
+		assertTrue(builder.compileInputSources());
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void testNameEnvironmentCache() throws Exception {
+		NameEnvironmentCache cache = new NameEnvironmentCache();
+		try {
+			Launcher first = new Launcher();
+			first.getEnvironment().setNameEnvironmentCache(cache);
+			first.addInputResource("src/test/resources/spoon/test/api");
+			first.buildModel();
+			assertEquals(1, cache.size());
+
+			// another build and a snippet compilation with the same
+			// classpath reuse the opened classpath
+			Launcher second = new Launcher();
+			second.getEnvironment().setNameEnvironmentCache(cache);
+			second.addInputResource("src/test/resources/spoon/test/api");
+			second.buildModel();
+			CtExpression<Integer> e = second.getFactory().Code()
+					.<Integer> createCodeSnippetExpression("1 + 2").compile();
+			assertEquals("1 + 2", e.toString());
+			assertEquals(1, cache.size());
+
+			SpoonModelBuilder builder = second.getModelBuilder();
+			ClassFileStore store = new ClassFileStore();
+			builder.setClassFileStore(store);
+			assertTrue(builder.compile());
+			assertEquals(2, store.size());
+			assertEquals(1, cache.size());
+		} finally {
+			cache.close();
+		}
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSharedPrintPass() throws Exception {
+		File classes = new File("target/spooned-compilation-classes");
+		FileUtils.deleteDirectory(classes);
+		Launcher spoon = new Launcher();
+		spoon.run(new String[] {
+				"-i", "src/test/java/spoon/test/arrays/ArrayClass.java",
+				"-o", "target/spooned-compilation",
+				"-d", classes.getPath(),
+				"--compile"
+				});
+		PrintedSourceCache cache = spoon.getEnvironment()
+				.getPrintedSourceCache();
+		assertTrue(cache.isEnabled());
+		// the compiler reused the source printed by the output processor
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0, cache.size());
+		assertTrue(new File(classes, "spoon/test/arrays/ArrayClass.class")
+				.exists());
+	}
+
+	@Test
+	public void testBuildOnlyOutdatedFiles() throws Exception {
+		File src = new File("target/spooned-outdated-src");
+		File out = new File("target/spooned-outdated");
+		FileUtils.deleteDirectory(src);
+		FileUtils.deleteDirectory(out);
+		FileUtils.writeStringToFile(new File(src, "p/A.java"),
+				"package p; class A {}");
+		FileUtils.writeStringToFile(new File(src, "p/B.java"),
+				"package p; class B {}");
+		String[] args = { "-i", src.getPath(), "-o", out.getPath(),
+				"--buildOnlyOutdatedFiles" };
+		// this mode sets a compiler class loader as context class loader
+		ClassLoader contextClassLoader = Thread.currentThread()
+				.getContextClassLoader();
+		try {
+			checkBuildOnlyOutdatedFiles(src, out, args);
+		} finally {
+			Thread.currentThread().setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	private void checkBuildOnlyOutdatedFiles(File src, File out, String[] args)
+			throws Exception {
+		File a = new File(src, "p/A.java");
+		File b = new File(src, "p/B.java");
+		Launcher spoon = new Launcher();
+		spoon.run(args);
+		assertEquals(2, spoon.getFactory().Type().getAll().size());
+		assertEquals(2, new OutputManifest(out).size());
+
+		// nothing has changed
+		spoon = new Launcher();
+		spoon.run(args);
+		assertEquals(0, spoon.getFactory().Type().getAll().size());
+
+		// a new timestamp with the same contents, as after a checkout
+		a.setLastModified(a.lastModified() + 10000);
+		spoon = new Launcher();
+		spoon.run(args);
+		assertEquals(0, spoon.getFactory().Type().getAll().size());
+
+		// new contents
+		FileUtils.writeStringToFile(b, "package p; class B { int i; }");
+		spoon = new Launcher();
+		spoon.run(args);
+		assertEquals(1, spoon.getFactory().Type().getAll().size());
+		assertNotNull(spoon.getFactory().Type().get("p.B"));
+		assertEquals(2, new OutputManifest(out).size());
+
+		// a deleted output makes its source outdated
+		new File(out, "p/A.java").delete();
+		spoon = new Launcher();
+		spoon.run(args);
+		assertNotNull(spoon.getFactory().Type().get("p.A"));
+	}
+
+	@Test
+	public void testOutputManifestPackage() throws Exception {
+		File src = new File("target/spooned-manifest-src");
+		File out = new File("target/spooned-manifest");
+		FileUtils.deleteDirectory(src);
+		FileUtils.deleteDirectory(out);
+		File a = new File(src, "A.java");
+		File pa = new File(src, "p/A.java");
+		FileUtils.writeStringToFile(a, "/* an A */ class A {}");
+		FileUtils.writeStringToFile(pa, "package p; class A {}");
+		a.setLastModified(1000000);
+		pa.setLastModified(1000000);
+		assertEquals(a.length(), pa.length());
+		FileUtils.writeStringToFile(new File(out, "A.java"), "class A {}");
+
+		OutputManifest manifest = new OutputManifest(out);
+		manifest.put("A.java", a, Collections.singletonList("A.java"));
+		assertTrue(manifest.isUpToDate(a));
+		// the entry of the default package is not the one of p/A.java
+		assertFalse(manifest.isUpToDate(pa));
+		assertTrue(manifest.getOutputs(pa).isEmpty());
+	}
+
+	@Test
+	public void testClassFileStoreSpill() throws Exception {
+		File spill = new File("target/spooned-compilation-spill");
+		FileUtils.deleteDirectory(spill);
+		ClassFileStore store = new ClassFileStore(10, spill);
+		store.put("p.A", new byte[8]);
+		store.put("p.B", new byte[8]);
+		store.put("p.A$C", new byte[4]);
+
+		assertEquals(3, store.size());
+		assertEquals(8, store.getMemorySize());
+		assertEquals(2, store.getSpilledCount());
+		assertTrue(new File(spill, "p/B.class").exists());
+		assertEquals(8, store.get("p.B").length);
+		assertEquals(4, store.getClassFiles().get("p.A$C").length);
+		assertEquals(3, store.getClassFiles().entrySet().size());
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertFalse(new File(spill, "p/B.class").exists());
+	}
+
+}
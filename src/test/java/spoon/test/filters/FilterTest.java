@@ -1,6 +1,7 @@
 package spoon.test.filters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -11,9 +12,12 @@ import org.junit.Test;
 
 import spoon.Launcher;
 import spoon.compiler.SpoonResourceHelper;
+import spoon.reflect.code.CtBinaryOperator;
 import spoon.reflect.code.CtCFlowBreak;
 import spoon.reflect.code.CtExpression;
 import spoon.reflect.code.CtFieldAccess;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.code.CtNewClass;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
@@ -27,7 +31,11 @@ import spoon.reflect.visitor.filter.AnnotationFilter;
 import spoon.reflect.visitor.filter.CompositeFilter;
 import spoon.reflect.visitor.filter.FieldAccessFilter;
 import spoon.reflect.visitor.filter.FilteringOperator;
+import spoon.reflect.visitor.filter.InvocationTargetFilter;
+import spoon.reflect.visitor.filter.LiteralFilter;
 import spoon.reflect.visitor.filter.NameFilter;
+import spoon.reflect.visitor.filter.NamePatternFilter;
+import spoon.reflect.visitor.filter.ReferenceNamePatternFilter;
 import spoon.reflect.visitor.filter.RegexFilter;
 import spoon.reflect.visitor.filter.ReturnOrThrowFilter;
 import spoon.reflect.visitor.filter.TypeFilter;
@@ -53,6 +61,32 @@ public class FilterTest {
 		assertEquals(2, expressions.size());
 	}
 
+	@Test
+	public void testStructuralFilters() throws Exception {
+		CtClass<?> foo = factory.Package().get("spoon.test.filters").getType("Foo");
+
+		List<CtLocalVariable<?>> variables = foo.getElements(new NamePatternFilter<CtLocalVariable<?>>("[xz]"));
+		assertEquals(2, variables.size());
+
+		List<CtFieldReference<?>> fieldRefs = Query.getReferences(foo,
+				new ReferenceNamePatternFilter<CtFieldReference<?>>(CtFieldReference.class, "i"));
+		assertEquals(2, fieldRefs.size());
+
+		assertEquals(1, foo.getElements(new LiteralFilter(3)).size());
+		assertEquals(0, foo.getElements(new LiteralFilter(4)).size());
+
+		List<CtInvocation<?>> prints = foo.getElements(new InvocationTargetFilter("java\\.io\\.PrintStream", "print(ln)?"));
+		assertEquals(1, prints.size());
+		assertEquals(0, foo.getElements(new InvocationTargetFilter(null, "foo")).size());
+
+		// the regex filter can match the original source code instead of the printed code
+		List<CtBinaryOperator<?>> additions = foo.getElements(new RegexFilter<CtBinaryOperator<?>>("x\\+i", true));
+		assertEquals(1, additions.size());
+		assertEquals("x+i", additions.get(0).getPosition().getSourceText());
+		assertSame(additions.get(0).getPosition().getSourceText(), additions.get(0).getPosition().getSourceText());
+		assertEquals(0, foo.getElements(new RegexFilter<CtBinaryOperator<?>>("x\\+i")).size());
+	}
+
 	@Test
 	public void testReturnOrThrowFilter() throws Exception {
 		CtClass<?> foo = factory.Package().get("spoon.test.filters").getType("Foo");
@@ -2,19 +2,27 @@ package spoon.test.intercession;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
 
 import org.junit.Test;
 
+import spoon.SpoonException;
 import spoon.reflect.code.CtBlock;
 import spoon.reflect.code.CtCodeSnippetStatement;
 import spoon.reflect.code.CtExpression;
 import spoon.reflect.code.CtIf;
+import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.code.CtReturn;
 import spoon.reflect.code.CtStatement;
 import spoon.reflect.code.CtThrow;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.reflect.code.BlockEditor;
 import spoon.test.TestUtils;
 
 public class IntercessionTest {
@@ -123,4 +131,55 @@ public class IntercessionTest {
 		assertSame(stmt, body.getStatements().get(3));
 	}
 
+	@Test
+	public void testBlockEditor() {
+		CtClass<?> clazz = factory
+				.Code()
+				.createCodeSnippetStatement(
+						"" + "class X {" + "public void foo() {" + " int x=0;"
+								+ " int y=0;" + " int z=x+y;" + "}" + "};")
+				.compile();
+		CtMethod<?> foo = (CtMethod<?>) clazz.getMethods().toArray()[0];
+		CtBlock<?> body = foo.getBody();
+		CtStatement x = body.getStatement(0);
+		CtStatement y = body.getStatement(1);
+		CtStatement z = body.getStatement(2);
+
+		CtCodeSnippetStatement first = factory.Code().createCodeSnippetStatement("first()");
+		CtCodeSnippetStatement beforeZ = factory.Code().createCodeSnippetStatement("beforeZ()");
+		CtCodeSnippetStatement afterX1 = factory.Code().createCodeSnippetStatement("afterX1()");
+		CtCodeSnippetStatement afterX2 = factory.Code().createCodeSnippetStatement("afterX2()");
+		CtCodeSnippetStatement last = factory.Code().createCodeSnippetStatement("last()");
+
+		BlockEditor editor = new BlockEditor(body);
+		editor.insertAfter(x, afterX1).insertAfter(x, afterX2)
+				.insertBefore(z, beforeZ).remove(y).insertBegin(first)
+				.insertEnd(last);
+		// nothing is changed before apply
+		assertEquals(3, body.getStatements().size());
+		editor.apply();
+		assertTrue(editor.isEmpty());
+
+		assertEquals(Arrays.asList(first, x, afterX1, afterX2, beforeZ, z,
+				last), body.getStatements());
+		for (CtStatement s : body.getStatements()) {
+			assertSame(body, s.getParent());
+		}
+
+		// only direct children can be edited
+		try {
+			editor.remove(factory.Code().createCodeSnippetStatement("a()"));
+			fail();
+		} catch (SpoonException e) {
+		}
+
+		// the filter based insertions use the editor for the direct children
+		CtCodeSnippetStatement log = factory.Code().createCodeSnippetStatement("log()");
+		body.insertAfter(new TypeFilter<CtLocalVariable<?>>(CtLocalVariable.class), log);
+		assertEquals(9, body.getStatements().size());
+		assertSame(log, body.getStatement(2));
+		assertSame(log, body.getStatement(7));
+		assertSame(last, body.getStatement(8));
+	}
+
 }
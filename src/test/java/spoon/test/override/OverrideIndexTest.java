@@ -0,0 +1,119 @@
+package spoon.test.override;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import spoon.Launcher;
+import spoon.compiler.SpoonCompiler;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.OverrideIndex;
+import spoon.reflect.visitor.Query;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.test.override.testclasses.Animal;
+import spoon.test.override.testclasses.Base;
+import spoon.test.override.testclasses.Dog;
+import spoon.test.override.testclasses.Puppy;
+import spoon.test.override.testclasses.Walker;
+
+public class OverrideIndexTest {
+
+	private Factory factory;
+
+	private OverrideIndex index;
+
+	@Before
+	public void setUp() throws Exception {
+		final Launcher launcher = new Launcher();
+		factory = launcher.createFactory();
+		SpoonCompiler compiler = launcher.createCompiler(factory);
+		compiler.addInputSource(new File("./src/test/java/spoon/test/override/testclasses/"));
+		compiler.build();
+		index = new OverrideIndex(factory);
+	}
+
+	private CtMethod<?> method(Class<?> type, String name, int arity) {
+		for (CtMethod<?> m : factory.Type().get(type).getMethodsByName(name)) {
+			if (m.getParameters().size() == arity
+					&& (arity == 0 || !m.getParameters().get(0).getType().getSimpleName().equals("Integer"))) {
+				return m;
+			}
+		}
+		throw new AssertionError(name);
+	}
+
+	@Test
+	public void testOverridingWithTypeArguments() throws Exception {
+		CtMethod<?> animalEat = method(Animal.class, "eat", 1);
+		CtMethod<?> dogEat = method(Dog.class, "eat", 1);
+
+		assertEquals(1, index.getOverridingMethods(animalEat).size());
+		assertSame(dogEat, index.getOverridingMethods(animalEat).get(0));
+		assertTrue(index.isOverriding(dogEat, animalEat));
+		assertSame(animalEat, index.getOverriddenMethods(dogEat).get(0));
+	}
+
+	@Test
+	public void testStaticPrivateAndOverloadedMethodsDoNotOverride() throws Exception {
+		CtClass<?> dog = (CtClass<?>) factory.Type().get(Dog.class);
+		assertTrue(index.getOverriddenMethods(method(Dog.class, "create", 0)).isEmpty());
+		assertTrue(index.getOverriddenMethods(method(Dog.class, "secret", 0)).isEmpty());
+		for (CtMethod<?> m : dog.getMethodsByName("eat")) {
+			if (m.getParameters().get(0).getType().getSimpleName().equals("Integer")) {
+				assertTrue(index.getOverriddenMethods(m).isEmpty());
+			}
+		}
+		assertTrue(index.getOverridingMethods(method(Animal.class, "sleep", 0))
+				.contains(method(Dog.class, "sleep", 0)));
+	}
+
+	@Test
+	public void testInheritedImplementation() throws Exception {
+		CtMethod<?> walk = method(Walker.class, "walk", 0);
+		CtMethod<?> baseWalk = method(Base.class, "walk", 0);
+
+		assertTrue(index.isOverriding(baseWalk, walk));
+		assertTrue(index.isSubtypeOf(factory.Type().get(Puppy.class), factory.Type().get(Walker.class)));
+		assertFalse(index.isSubtypeOf(factory.Type().get(Base.class), factory.Type().get(Walker.class)));
+	}
+
+	@Test
+	public void testDispatchTargets() throws Exception {
+		CtMethod<?> run = method(Puppy.class, "run", 2);
+		List<CtInvocation<?>> invocations = Query.getElements(run,
+				new TypeFilter<CtInvocation<?>>(CtInvocation.class));
+		assertEquals(2, invocations.size());
+
+		for (CtInvocation<?> invocation : invocations) {
+			List<CtExecutable<?>> targets = index.getDispatchTargets(invocation.getExecutable());
+			assertSame(index.getDeclaration(invocation.getExecutable()).getParent(),
+					invocation.getExecutable().getDeclaration().getParent());
+			if ("sleep".equals(invocation.getExecutable().getSimpleName())) {
+				assertEquals(2, targets.size());
+				assertTrue(targets.contains(method(Animal.class, "sleep", 0)));
+				assertTrue(targets.contains(method(Dog.class, "sleep", 0)));
+			} else {
+				assertEquals(1, targets.size());
+				assertSame(method(Base.class, "walk", 0), targets.get(0));
+			}
+		}
+	}
+
+	@Test
+	public void testDispatchOnExternalType() throws Exception {
+		CtMethod<?> toString = method(Dog.class, "toString", 0);
+		assertTrue(index.getDispatchTargets(factory.Method().createReference(
+				Object.class.getMethod("toString"))).contains(toString));
+	}
+}
@@ -0,0 +1,15 @@
+package spoon.test.override.testclasses;
+
+public abstract class Animal<T> {
+
+	public abstract void eat(T food);
+
+	public void sleep() {
+	}
+
+	public static void create() {
+	}
+
+	private void secret() {
+	}
+}
@@ -0,0 +1,7 @@
+package spoon.test.override.testclasses;
+
+public class Base {
+
+	public void walk() {
+	}
+}
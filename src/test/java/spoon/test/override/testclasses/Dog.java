@@ -0,0 +1,26 @@
+package spoon.test.override.testclasses;
+
+public class Dog extends Animal<String> {
+
+	@Override
+	public void eat(String food) {
+	}
+
+	public void eat(Integer quantity) {
+	}
+
+	@Override
+	public void sleep() {
+	}
+
+	public static void create() {
+	}
+
+	private void secret() {
+	}
+
+	@Override
+	public String toString() {
+		return "dog";
+	}
+}
@@ -0,0 +1,9 @@
+package spoon.test.override.testclasses;
+
+public class Puppy extends Base implements Walker {
+
+	public void run(Animal<String> animal, Walker walker) {
+		animal.sleep();
+		walker.walk();
+	}
+}
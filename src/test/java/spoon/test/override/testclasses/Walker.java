@@ -0,0 +1,6 @@
+package spoon.test.override.testclasses;
+
+public interface Walker {
+
+	void walk();
+}
@@ -1,12 +1,15 @@
 package spoon.test.processing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static spoon.test.TestUtils.build;
 
 import org.junit.Test;
 
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtConstructor;
+import spoon.processing.XMLAnnotationProcessor;
 import spoon.reflect.declaration.CtMethod;
 
 public class ProcessingTest {
@@ -41,4 +44,20 @@ public class ProcessingTest {
 		}
 	}
 
+	@Test
+	public void testXMLAnnotationProcessor() throws Exception {
+		CtClass<?> type = build("spoon.test.processing",
+				"SampleForInsertBefore");
+		XMLAnnotationProcessor processor = new XMLAnnotationProcessor();
+		processor.setFactory(type.getFactory());
+		processor.xmlPath = "spoon/test/processing/annotations.xml";
+		processor.init();
+		processor.process();
+
+		assertNotNull(type.getAnnotation(Deprecated.class));
+		assertNotNull(type.getMethod("method2").getAnnotation(Deprecated.class));
+		assertNotNull(type.getMethod("method3").getAnnotation(Deprecated.class));
+		assertNull(type.getMethod("method").getAnnotation(Deprecated.class));
+	}
+
 }
@@ -5,21 +5,38 @@ import spoon.Launcher;
 import spoon.compiler.SpoonCompiler;
 import spoon.compiler.SpoonResource;
 import spoon.compiler.SpoonResourceHelper;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtField;
 import spoon.reflect.declaration.CtInterface;
+import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.reference.CtExecutableReference;
 import spoon.reflect.reference.CtFieldReference;
+import spoon.reflect.reference.CtPackageReference;
+import spoon.reflect.reference.CtReference;
 import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.visitor.Query;
 import spoon.reflect.visitor.filter.ReferenceTypeFilter;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.visitor.SignaturePrinter;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Lionel Seinturier
@@ -173,4 +190,211 @@ public class TypeReferenceTest {
         CtTypeReference<Boolean> boxedBoolean = factory.Class().createReference(Boolean.class);
         assertEquals(boxedBoolean.unbox().getActualClass(), boolean.class);
     }
+
+	@Test
+	public void testReferenceEquality() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		spoon.createCompiler(
+				factory,
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/reference/"))
+				.build();
+
+		// the equality is the same as with the signature printer
+		List<CtReference> refs = Query.getReferences(factory,
+				new ReferenceTypeFilter<CtReference>(CtReference.class));
+		Map<String, CtReference> bySignature = new HashMap<String, CtReference>();
+		SignaturePrinter pr = new SignaturePrinter();
+		for (CtReference ref : refs) {
+			pr.reset();
+			pr.scan(ref);
+			CtReference other = bySignature.get(pr.getSignature());
+			if (other == null) {
+				bySignature.put(pr.getSignature(), ref);
+			} else {
+				assertEquals(other, ref);
+				assertEquals(other.hashCode(), ref.hashCode());
+			}
+		}
+		assertTrue(bySignature.size() > 10);
+
+		// the type arguments are not part of the signature
+		CtTypeReference<?> l1 = factory.Type().createReference(List.class);
+		l1.addActualTypeArgument(factory.Type().createReference(String.class));
+		CtTypeReference<?> l2 = factory.Type().createReference(List.class);
+		l2.addActualTypeArgument(factory.Type().createReference(Integer.class));
+		assertEquals(l1, l2);
+		assertEquals(l1.hashCode(), l2.hashCode());
+		assertNotEquals(l1, factory.Type().createReference(Map.class));
+
+		// the model shares the package references
+		CtPackageReference p = factory.Type().get(Foo.class).getReference()
+				.getPackage();
+		assertSame(factory.Package().getSharedReference("spoon.test.reference"), p);
+		for (CtTypeReference<?> t : Query.getReferences(factory,
+				new ReferenceTypeFilter<CtTypeReference<?>>(CtTypeReference.class))) {
+			if (t.getPackage() != null
+					&& "spoon.test.reference".equals(t.getPackage().getSimpleName())) {
+				assertSame(p, t.getPackage());
+			}
+		}
+	}
+
+	@Test
+	public void testSharedPackageReference() throws Exception {
+		Factory factory = new Launcher().createFactory();
+		CtTypeReference<?> c = factory.Type().createReference("a.b.C");
+		CtPackageReference p = c.getPackage();
+		assertSame(p, factory.Type().createReference("a.b.D").getPackage());
+
+		// the shared reference cannot be modified
+		try {
+			p.setSimpleName("x.y");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals("a.b", p.getSimpleName());
+		assertEquals("a.b.C", c.getQualifiedName());
+
+		// the clones share it too
+		CtTypeReference<?> clone = factory.Core().clone(c);
+		assertNotSame(c, clone);
+		assertSame(p, clone.getPackage());
+
+		// the created references can be modified
+		CtPackageReference created = factory.Package().createReference("a.b");
+		assertNotSame(p, created);
+		created.setSimpleName("x.y");
+		assertEquals("x.y", created.getSimpleName());
+	}
+
+	@Test
+	public void testCachedReferencesAreNotShared() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		spoon.createCompiler(
+				factory,
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/reference/MyClass.java"))
+				.build();
+		CtClass<?> c = factory.Class().get(MyClass.class);
+
+		// the references built from the same binding are equal copies
+		CtExecutableReference<?> call1 = c.getMethod("method1", factory.Type().createTypeParameterReference("T"))
+				.getElements(new TypeFilter<CtInvocation<?>>(CtInvocation.class)).get(0).getExecutable();
+		CtExecutableReference<?> call3 = c.getMethod("method3")
+				.getElements(new TypeFilter<CtInvocation<?>>(CtInvocation.class)).get(0).getExecutable();
+		assertEquals(call1, call3);
+		assertNotSame(call1, call3);
+		assertNotSame(call1.getDeclaringType(), call3.getDeclaringType());
+		assertSame(call1.getDeclaringType().getPackage(), call3.getDeclaringType().getPackage());
+
+		CtTypeReference<?> string1 = c.getMethod("method4", factory.Type().STRING)
+				.getParameters().get(0).getType();
+		CtTypeReference<?> string2 = c.getMethod("method5", factory.Type().createTypeParameterReference("S"), factory.Type().STRING)
+				.getParameters().get(1).getType();
+		assertEquals(string1, string2);
+		assertNotSame(string1, string2);
+	}
+
+	@Test
+	public void testCachedQualifiedName() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		spoon.createCompiler(
+				factory,
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/reference/Foo.java"))
+				.build();
+
+		// references
+		CtTypeReference<?> outer = factory.Type().createReference("a.b.Outer");
+		CtTypeReference<?> inner = factory.Core().createTypeReference();
+		inner.setSimpleName("Inner");
+		inner.setDeclaringType(outer);
+		assertEquals("a.b.Outer$Inner", inner.getQualifiedName());
+		assertSame(inner.getQualifiedName(), inner.getQualifiedName());
+		outer.setSimpleName("Other");
+		assertEquals("a.b.Other$Inner", inner.getQualifiedName());
+		outer.setPackage(factory.Package().createReference("c"));
+		assertEquals("c.Other$Inner", inner.getQualifiedName());
+		inner.setSimpleName("Renamed");
+		assertEquals("c.Other$Renamed", inner.getQualifiedName());
+		inner.setDeclaringType(null);
+		inner.setPackage(factory.Package().createReference("d"));
+		assertEquals("d.Renamed", inner.getQualifiedName());
+
+		// declarations
+		CtType<?> foo = factory.Type().get(Foo.class);
+		assertSame(foo.getQualifiedName(), foo.getQualifiedName());
+		foo.setSimpleName("Bar");
+		assertEquals("spoon.test.reference.Bar", foo.getQualifiedName());
+		foo.getPackage().setSimpleName("renamed");
+		assertEquals("spoon.test.renamed.Bar", foo.getQualifiedName());
+	}
+
+	@Test
+	public void testClassFileTypes() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		CtTypeReference<?> list = factory.Type().createReference(
+				"java.util.ArrayList");
+
+		// the types of the classpath are not read by default
+		assertNull(list.getTypeDeclaration());
+
+		factory.getEnvironment().useClassFileTypes(true);
+		CtType<?> decl = list.getTypeDeclaration();
+		assertNotNull(decl);
+		assertSame(decl, list.getTypeDeclaration());
+		assertTrue(factory.Type().isBinaryType(decl));
+		assertFalse(factory.Type().getAll().contains(decl));
+		assertEquals("java.util.ArrayList", decl.getQualifiedName());
+		assertTrue(decl.getModifiers().contains(ModifierKind.PUBLIC));
+		assertEquals("java.util.AbstractList",
+				((CtClass<?>) decl).getSuperclass().getQualifiedName());
+		assertNotNull(decl.getField("size"));
+		assertTrue(decl.getField("size").getModifiers()
+				.contains(ModifierKind.PRIVATE));
+		assertEquals(3, ((CtClass<?>) decl).getConstructors().size());
+
+		// the signatures are erased
+		CtMethod<?> add = decl.getMethod("add", factory.Type().INTEGER_PRIMITIVE,
+				factory.Type().OBJECT);
+		assertNotNull(add);
+		assertEquals("void", add.getType().getSimpleName());
+		assertEquals(2, add.getParameters().size());
+
+		// the super types are read on demand
+		boolean found = false;
+		for (CtExecutableReference<?> e : list.getAllExecutables()) {
+			if ("iterator".equals(e.getSimpleName())) {
+				found = true;
+			}
+		}
+		assertTrue(found);
+		assertTrue(list.isSubtypeOf(factory.Type().createReference(
+				"java.util.List")));
+
+		// the nested types are added to their declaring type
+		CtTypeReference<?> entry = factory.Type().createReference(
+				"java.util.Map$Entry");
+		CtType<?> entryDecl = entry.getTypeDeclaration();
+		assertTrue(entryDecl instanceof CtInterface);
+		assertSame(entry.getDeclaringType().getTypeDeclaration(),
+				entryDecl.getDeclaringType());
+
+		// the unknown types are neither read nor shadowed
+		assertNull(factory.Type().createReference("a.b.Unknown")
+				.getTypeDeclaration());
+
+		// the classpath is opened again after being closed
+		factory.Type().closeBinaryTypes();
+		assertSame(decl, list.getTypeDeclaration());
+		assertNotNull(factory.Type().createReference("java.util.LinkedList")
+				.getTypeDeclaration());
+		factory.Type().closeBinaryTypes();
+	}
 }
@@ -1,13 +1,26 @@
 package spoon.test.snippets;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.List;
+
 import org.junit.Test;
 
+import spoon.reflect.code.CtBinaryOperator;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtCodeElement;
+import spoon.reflect.code.CtCodeSnippetExpression;
+import spoon.reflect.code.CtCodeSnippetStatement;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.factory.Factory;
+import spoon.support.compiler.SnippetCompilationBatch;
 import spoon.test.TestUtils;
 
 public class SnippetTest {
@@ -38,4 +51,34 @@ public class SnippetTest {
 		}
 	}
 
+	@Test
+	public void testSnippetBatch() {
+		CtCodeSnippetStatement s1 = factory.Code().createCodeSnippetStatement("int x = 3");
+		CtCodeSnippetExpression<Integer> e1 = factory.Code().createCodeSnippetExpression("1 + 2");
+		CtCodeSnippetStatement s2 = factory.Code().createCodeSnippetStatement("java.util.List<String> l = new java.util.ArrayList<String>()");
+		CtBlock<?> block = factory.Core().createBlock();
+		block.addStatement(s1);
+		block.addStatement(s2);
+
+		SnippetCompilationBatch batch = new SnippetCompilationBatch(factory);
+		batch.add(s1).add(e1).add(s2);
+		assertEquals(3, batch.size());
+		List<CtCodeElement> compiled = batch.compileAndReplace();
+		assertEquals(0, batch.size());
+		assertEquals(3, compiled.size());
+
+		assertTrue(compiled.get(0) instanceof CtLocalVariable);
+		assertTrue(compiled.get(1) instanceof CtBinaryOperator);
+		assertTrue(compiled.get(2) instanceof CtLocalVariable);
+		assertSame(compiled.get(0), block.getStatement(0));
+		assertSame(compiled.get(2), block.getStatement(1));
+		assertEquals("java.util.List<java.lang.String>",
+				((CtLocalVariable<?>) compiled.get(2)).getType().toString());
+		assertNull(factory.Type().get("Wrapper"));
+
+		// the following compilations reuse the name environment
+		assertTrue(factory.Code().createCodeSnippetStatement("int y = 4").compile() instanceof CtLocalVariable);
+		assertTrue(factory.Code().createCodeSnippetExpression("\"a\".length()").compile() instanceof CtInvocation);
+	}
+
 }
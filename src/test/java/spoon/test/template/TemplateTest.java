@@ -3,25 +3,42 @@ package spoon.test.template;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
 import spoon.Launcher;
+import spoon.compiler.SpoonCompiler;
 import spoon.compiler.SpoonResourceHelper;
 import spoon.reflect.code.CtIf;
+import spoon.reflect.code.CtLiteral;
 import spoon.reflect.code.CtStatement;
 import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtField;
 import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtTypeMember;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.visitor.ModelConsistencyChecker;
 import spoon.reflect.visitor.filter.NameFilter;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.compiler.TemplateModelCache;
 import spoon.support.template.Parameters;
+import spoon.support.template.SubstitutionVisitor;
+import spoon.template.MultiTemplateMatcher;
+import spoon.template.PreparedTemplate;
 import spoon.template.Substitution;
+import spoon.template.TemplateMatcher;
 
 public class TemplateTest {
 
@@ -57,6 +74,83 @@ public class TemplateTest {
 
 	}
 
+	@Test
+	public void testTemplateModelCache() throws Exception {
+		File dir = new File("target/spooned-template-cache");
+		FileUtils.deleteDirectory(dir);
+		TemplateModelCache cache = new TemplateModelCache(dir);
+		for (int run = 0; run < 2; run++) {
+			Launcher spoon = new Launcher();
+			Factory factory = spoon.createFactory();
+			SpoonCompiler compiler = spoon.createCompiler(
+					factory,
+					SpoonResourceHelper
+							.resources("./src/test/java/spoon/test/template/C1.java"),
+					SpoonResourceHelper
+							.resources(
+									"./src/test/java/spoon/test/template/TemplateWithConstructor.java",
+									"./src/test/java/spoon/test/template/TemplateWithFieldsAndMethods.java"));
+			compiler.setTemplateModelCache(cache);
+			assertTrue(compiler.build());
+			File[] cached = dir.listFiles();
+			assertEquals(1, cached.length);
+			if (run == 0) {
+				cached[0].setLastModified(1000);
+			} else {
+				// the second run restored the templates without storing them
+				assertEquals(1000, cached[0].lastModified());
+			}
+
+			CtClass<?> template = factory.Class().get(
+					TemplateWithConstructor.class);
+			assertNotNull(template);
+			assertSame(factory.Package().get("spoon.test.template"),
+					template.getPackage());
+			assertSame(factory, template.getFactory());
+			assertSame(factory.Package().getSharedReference("spoon.template"),
+					template.getSuperclass().getPackage());
+			assertTrue(template.getPosition().getCompilationUnit()
+					.getDeclaredTypes().contains(template));
+
+			CtClass<?> c1 = factory.Class().get(C1.class);
+			new TemplateWithConstructor(factory.Type()
+					.createReference(Date.class)).apply(c1);
+			assertEquals(3, c1.getConstructors().size());
+		}
+	}
+
+	@Test
+	public void testTemplateModelCacheTruncated() throws Exception {
+		File dir = new File("target/spooned-template-cache-truncated");
+		FileUtils.deleteDirectory(dir);
+		TemplateModelCache cache = new TemplateModelCache(dir);
+		Launcher spoon = new Launcher();
+		SpoonCompiler compiler = spoon.createCompiler(
+				spoon.createFactory(),
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/template/C1.java"),
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/template/TemplateWithConstructor.java"));
+		compiler.setTemplateModelCache(cache);
+		assertTrue(compiler.build());
+
+		// a file cut in the middle of the types
+		File cached = dir.listFiles()[0];
+		byte[] content = FileUtils.readFileToByteArray(cached);
+		FileUtils.writeByteArrayToFile(cached,
+				Arrays.copyOf(content, content.length / 2));
+		String key = cached.getName().substring(0,
+				cached.getName().length()
+						- TemplateModelCache.FILE_EXTENSION.length());
+
+		// the factory is left as it was
+		Factory factory = spoon.createFactory();
+		assertFalse(cache.load(key, factory));
+		assertTrue(factory.CompilationUnit().getMap().isEmpty());
+		assertNull(factory.Package().get("spoon.test.template"));
+		assertTrue(factory.Type().getAll().isEmpty());
+	}
+
 	@Test
 	public void testTemplateC1() throws Exception {
 		Launcher spoon = new Launcher();
@@ -159,4 +253,89 @@ public class TemplateTest {
 		method.getBody().insertBegin(injectedCode);		
 		assertEquals(injectedCode, method.getBody().getStatement(0));
 	}
+
+	@Test
+	public void testTemplateMatcher() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		spoon.createCompiler(
+				factory,
+				SpoonResourceHelper.resources(
+						"./src/test/java/spoon/test/template/FooBound.java"),
+				SpoonResourceHelper
+						.resources(
+								"./src/test/java/spoon/test/template/CheckBoundTemplate.java"))
+				.build();
+
+		CtClass<?> c = factory.Class().get(FooBound.class);
+		CtMethod<?> method = c.getMethodsByName("method").get(0);
+		CheckBoundTemplate t = new CheckBoundTemplate();
+		t.setVariable(method.getParameters().get(0));
+		method.getBody().insertBegin((CtStatement) t.apply(null));
+
+		CtClass<CheckBoundTemplate> templateType = factory.Class().get(CheckBoundTemplate.class);
+		CtIf templateRoot = (CtIf) templateType.getMethod("statement").getBody().getStatement(0);
+		CtLiteral<?> literal = templateRoot.getElements(
+				new TypeFilter<CtLiteral<?>>(CtLiteral.class)).get(0);
+
+		TemplateMatcher matcher = new TemplateMatcher(templateType);
+		assertTrue(matcher.find(c, templateRoot));
+		assertEquals(1, matcher.getFinds().size());
+		assertSame(method.getBody().getStatement(0), matcher.getFinds().get(0));
+
+		// several templates in a single traversal
+		TemplateMatcher ifMatcher = new TemplateMatcher(templateType);
+		TemplateMatcher literalMatcher = new TemplateMatcher(templateType);
+		TemplateMatcher missingMatcher = new TemplateMatcher(templateType);
+		MultiTemplateMatcher multi = new MultiTemplateMatcher()
+				.add(ifMatcher, templateRoot)
+				.add(literalMatcher, literal)
+				.add(missingMatcher, factory.Code().createLiteral(42));
+		assertEquals(3, multi.size());
+		assertTrue(multi.find(c));
+		assertEquals(1, ifMatcher.getFinds().size());
+		assertSame(method.getBody().getStatement(0), ifMatcher.getFinds().get(0));
+		assertEquals(1, literalMatcher.getFinds().size());
+		assertEquals(10, ((CtLiteral<?>) literalMatcher.getFinds().get(0)).getValue());
+		assertTrue(missingMatcher.getFinds().isEmpty());
+	}
+
+	@Test
+	public void testPreparedTemplate() throws Exception {
+		Launcher spoon = new Launcher();
+		Factory factory = spoon.createFactory();
+		spoon.createCompiler(
+				factory,
+				SpoonResourceHelper
+						.resources("./src/test/java/spoon/test/template/C1.java"),
+				SpoonResourceHelper
+						.resources(
+								"./src/test/java/spoon/test/template/TemplateWithConstructor.java",
+								"./src/test/java/spoon/test/template/TemplateWithFieldsAndMethods.java"))
+				.build();
+
+		CtClass<?> c1 = factory.Class().get(C1.class);
+		PreparedTemplate prepared = factory.Template().prepare(TemplateWithFieldsAndMethods.class);
+		assertSame(prepared, factory.Template().prepare(TemplateWithFieldsAndMethods.class));
+		assertTrue(prepared.getParameterNames().contains("PARAM"));
+		assertTrue(prepared.getParameterNames().contains("PARAM2"));
+
+		// the prepared substitution gives the same code as a full scan
+		TemplateWithFieldsAndMethods template = new TemplateWithFieldsAndMethods(
+				"testparam", factory.Code().createLiteral("testparam2"));
+		CtClass<?> templateType = factory.Class().get(TemplateWithFieldsAndMethods.class);
+		List<CtTypeMember> members = new ArrayList<CtTypeMember>();
+		members.addAll(templateType.getFields());
+		members.addAll(templateType.getMethods());
+		for (CtTypeMember member : members) {
+			CtElement legacy = factory.Core().clone(member);
+			new SubstitutionVisitor(factory, c1, template).scan(legacy);
+			for (int i = 0; i < 2; i++) {
+				assertEquals(legacy.toString(),
+						Substitution.substitute(c1, template, member).toString());
+			}
+		}
+		assertEquals("return \"testparam\"", Substitution.substitute(c1, template,
+				templateType.getMethod("methodToBeInserted")).getBody().getStatement(0).toString());
+	}
 }